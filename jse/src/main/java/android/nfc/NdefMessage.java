@@ -100,6 +100,52 @@ public final class NdefMessage implements Parcelable {
         }
     }
 
+    /**
+     * Parse raw bytes into one or more {@link NdefRecordView}s.<p>
+     * Performs the same strict validation as {@link #NdefMessage(byte[])},
+     * but the type, id and payload fields of the returned views refer
+     * to the input data rather than to copies.
+     *
+     * <p class="note">
+     * The data byte array must not be modified while the views are in use.
+     *
+     * @param data raw bytes to parse
+     * @return one or more record views
+     * @throws FormatException if the data cannot be parsed
+     */
+    public static NdefRecordView[] parseViews(byte[] data) throws FormatException {
+        if (data == null) throw new NullPointerException("data is null");
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+
+        NdefRecordView[] records = NdefRecord.parseViews(buffer, false);
+
+        if (buffer.remaining() > 0) {
+            throw new FormatException("trailing data");
+        }
+        return records;
+    }
+
+    /**
+     * Parse a single NDEF Message into one or more {@link NdefRecordView}s,
+     * starting at the current position of the buffer.<p>
+     * Performs the same strict validation as {@link #NdefMessage(byte[])}.
+     * The buffer position is advanced to the end of the message, and any
+     * trailing data is left in the buffer. Both heap and direct buffers
+     * are supported.
+     *
+     * <p class="note">
+     * The buffer content must not be modified while the views are in use.
+     *
+     * @param buffer buffer to parse
+     * @return one or more record views
+     * @throws FormatException if the data cannot be parsed
+     */
+    public static NdefRecordView[] parseViews(ByteBuffer buffer) throws FormatException {
+        if (buffer == null) throw new NullPointerException("buffer is null");
+
+        return NdefRecord.parseViews(buffer, false);
+    }
+
     /**
      * Construct an NDEF Message from one or more NDEF Records.
      *
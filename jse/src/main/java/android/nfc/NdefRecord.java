@@ -780,13 +780,36 @@ public final class NdefRecord implements Parcelable {
      * @throws FormatException on any parsing error
      */
     static NdefRecord[] parse(ByteBuffer buffer, boolean ignoreMbMe) throws FormatException {
-        List<NdefRecord> records = new ArrayList<NdefRecord>();
+        NdefRecordView[] views = parseViews(buffer, ignoreMbMe);
+
+        NdefRecord[] records = new NdefRecord[views.length];
+        for (int i = 0; i < views.length; i++) {
+            records[i] = views[i].toNdefRecord();
+        }
+        return records;
+    }
+
+    /**
+     * Record parsing method which does not copy the type, id and payload fields.<p>
+     * Performs the same validation as {@link #parse(ByteBuffer, boolean)}, but
+     * returns views backed by the input buffer. Only the payload of chunked
+     * records is copied, as it must be flattened.
+     *
+     * @param buffer ByteBuffer to read from
+     * @param ignoreMbMe ignore MB and ME flags, and read only 1 complete record
+     * @return one or more record views
+     * @throws FormatException on any parsing error
+     */
+    static NdefRecordView[] parseViews(ByteBuffer buffer, boolean ignoreMbMe) throws FormatException {
+        List<NdefRecordView> records = new ArrayList<NdefRecordView>();
 
         try {
-            byte[] type = null;
-            byte[] id = null;
-            byte[] payload = null;
-            ArrayList<byte[]> chunks = new ArrayList<byte[]>();
+            int typeOffset = 0;
+            int typeLength = 0;
+            int idOffset = 0;
+            int idLength = 0;
+            long[] chunks = null; // packed offset and length of each chunk payload
+            int chunkCount = 0;
             boolean inChunk = false;
             short chunkTnf = -1;
             boolean me = false;
@@ -816,50 +839,58 @@ public final class NdefRecord implements Parcelable {
                             "unexpected TNF_UNCHANGED in first chunk or unchunked record");
                 }
 
-                int typeLength = buffer.get() & 0xFF;
-                long payloadLength = sr ? (buffer.get() & 0xFF) : (buffer.getInt() & 0xFFFFFFFFL);
-                int idLength = il ? (buffer.get() & 0xFF) : 0;
+                int chunkTypeLength = buffer.get() & 0xFF;
+                long payloadLength = sr ? (buffer.get() & 0xFF) : getUnsignedInt(buffer);
+                int chunkIdLength = il ? (buffer.get() & 0xFF) : 0;
 
-                if (inChunk && typeLength != 0) {
+                if (inChunk && chunkTypeLength != 0) {
                     throw new FormatException("expected zero-length type in non-leading chunk");
                 }
 
                 if (!inChunk) {
-                    type = (typeLength > 0 ? new byte[typeLength] : EMPTY_BYTE_ARRAY);
-                    id = (idLength > 0 ? new byte[idLength] : EMPTY_BYTE_ARRAY);
-                    buffer.get(type);
-                    buffer.get(id);
+                    typeLength = chunkTypeLength;
+                    idLength = chunkIdLength;
+                    typeOffset = skip(buffer, typeLength);
+                    idOffset = skip(buffer, idLength);
                 }
 
                 ensureSanePayloadSize(payloadLength);
-                payload = (payloadLength > 0 ? new byte[(int)payloadLength] : EMPTY_BYTE_ARRAY);
-                buffer.get(payload);
+                int payloadOffset = skip(buffer, (int)payloadLength);
+                ByteBuffer payloadBuffer = buffer;
 
                 if (cf && !inChunk) {
                     // first chunk
-                    if (typeLength == 0 && tnf != NdefRecord.TNF_UNKNOWN) {
+                    if (chunkTypeLength == 0 && tnf != NdefRecord.TNF_UNKNOWN) {
                         throw new FormatException("expected non-zero type length in first chunk");
                     }
-                    chunks.clear();
+                    chunkCount = 0;
                     chunkTnf = tnf;
                 }
                 if (cf || inChunk) {
                     // any chunk
-                    chunks.add(payload);
+                    if (chunks == null) {
+                        chunks = new long[4];
+                    } else if (chunkCount == chunks.length) {
+                        chunks = Arrays.copyOf(chunks, chunks.length * 2);
+                    }
+                    chunks[chunkCount++] = ((long)payloadOffset << 32) | payloadLength;
                 }
                 if (!cf && inChunk) {
                     // last chunk, flatten the payload
                     payloadLength = 0;
-                    for (byte[] p : chunks) {
-                        payloadLength += p.length;
+                    for (int i = 0; i < chunkCount; i++) {
+                        payloadLength += (int)chunks[i];
                     }
                     ensureSanePayloadSize(payloadLength);
-                    payload = new byte[(int)payloadLength];
+                    byte[] payload = new byte[(int)payloadLength];
                     int i = 0;
-                    for (byte[] p : chunks) {
-                        System.arraycopy(p, 0, payload, i, p.length);
-                        i += p.length;
+                    for (int k = 0; k < chunkCount; k++) {
+                        int length = (int)chunks[k];
+                        NdefRecordView.copy(buffer, (int)(chunks[k] >>> 32), payload, i, length);
+                        i += length;
                     }
+                    payloadBuffer = ByteBuffer.wrap(payload);
+                    payloadOffset = 0;
                     tnf = chunkTnf;
                 }
                 if (cf) {
@@ -870,11 +901,12 @@ public final class NdefRecord implements Parcelable {
                     inChunk = false;
                 }
 
-                String error = validateTnf(tnf, type, id, payload);
+                String error = validateTnf(tnf, typeLength, idLength, (int)payloadLength);
                 if (error != null) {
                     throw new FormatException(error);
                 }
-                records.add(new NdefRecord(tnf, type, id, payload));
+                records.add(new NdefRecordView(tnf, buffer, typeOffset, typeLength, idOffset, idLength,
+                        payloadBuffer, payloadOffset, (int)payloadLength));
                 if (ignoreMbMe) {  // for parsing a single NdefRecord
                     break;
                 }
@@ -882,7 +914,32 @@ public final class NdefRecord implements Parcelable {
         } catch (BufferUnderflowException e) {
             throw new FormatException("expected more data", e);
         }
-        return records.toArray(new NdefRecord[records.size()]);
+        return records.toArray(new NdefRecordView[records.size()]);
+    }
+
+    /**
+     * Read a big-endian unsigned int, regardless of the byte order of the buffer.
+     */
+    private static long getUnsignedInt(ByteBuffer buffer) {
+        if (buffer.remaining() < 4) {
+            throw new BufferUnderflowException();
+        }
+        return ((long)(buffer.get() & 0xFF) << 24) | ((buffer.get() & 0xFF) << 16)
+                | ((buffer.get() & 0xFF) << 8) | (buffer.get() & 0xFF);
+    }
+
+    /**
+     * Advance the buffer position past a field.
+     *
+     * @return the absolute offset of the field
+     */
+    private static int skip(ByteBuffer buffer, int length) {
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        int offset = buffer.position();
+        buffer.position(offset + length);
+        return offset;
     }
 
     private static void ensureSanePayloadSize(long size) throws FormatException {
@@ -905,9 +962,13 @@ public final class NdefRecord implements Parcelable {
      * @return null if valid, or a string error if invalid.
      */
     static String validateTnf(short tnf, byte[] type, byte[] id, byte[] payload) {
+        return validateTnf(tnf, type.length, id.length, payload.length);
+    }
+
+    static String validateTnf(short tnf, int typeLength, int idLength, int payloadLength) {
         switch (tnf) {
             case TNF_EMPTY:
-                if (type.length != 0 || id.length != 0 || payload.length != 0) {
+                if (typeLength != 0 || idLength != 0 || payloadLength != 0) {
                     return "unexpected data in TNF_EMPTY record";
                 }
                 return null;
@@ -918,7 +979,7 @@ public final class NdefRecord implements Parcelable {
                 return null;
             case TNF_UNKNOWN:
             case TNF_RESERVED:
-                if (type.length != 0) {
+                if (typeLength != 0) {
                     return "unexpected type field in TNF_UNKNOWN or TNF_RESERVEd record";
                 }
                 return null;
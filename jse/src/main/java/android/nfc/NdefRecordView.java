@@ -0,0 +1,237 @@
+/*
+ * Copyright (C) 2010 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.nfc;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Represents a read-only view of a logical NDEF Record, backed by
+ * the {@link ByteBuffer} it was parsed from.
+ * <p>
+ * The type, id and payload fields are kept as offset and length into
+ * the source buffer, so that parsing does not copy any record fields.
+ * Arrays are only created when explicitly requested, for example
+ * via {@link #getPayload()} or {@link #toNdefRecord()}.
+ * <p>
+ * Use {@link NdefMessage#parseViews(ByteBuffer)} to parse views.
+ * <p class="note">
+ * The content of the source buffer must not be modified while views are
+ * in use. The payload of chunked records is the exception, it is flattened
+ * into a private buffer during parsing.
+ *
+ * @see NdefRecord
+ */
+public final class NdefRecordView {
+
+    private static final byte[] EMPTY_BYTE_ARRAY = new byte[0];
+
+    private final short mTnf;
+    private final ByteBuffer mBuffer;
+    private final int mTypeOffset;
+    private final int mTypeLength;
+    private final int mIdOffset;
+    private final int mIdLength;
+    /** source buffer, or a private buffer for chunked records */
+    private final ByteBuffer mPayloadBuffer;
+    private final int mPayloadOffset;
+    private final int mPayloadLength;
+
+    NdefRecordView(short tnf, ByteBuffer buffer, int typeOffset, int typeLength, int idOffset, int idLength,
+            ByteBuffer payloadBuffer, int payloadOffset, int payloadLength) {
+        mTnf = tnf;
+        mBuffer = buffer;
+        mTypeOffset = typeOffset;
+        mTypeLength = typeLength;
+        mIdOffset = idOffset;
+        mIdLength = idLength;
+        mPayloadBuffer = payloadBuffer;
+        mPayloadOffset = payloadOffset;
+        mPayloadLength = payloadLength;
+    }
+
+    /**
+     * Returns the 3-bit TNF.
+     *
+     * @return tnf
+     */
+    public short getTnf() {
+        return mTnf;
+    }
+
+    /**
+     * Returns the number of bytes in the type field.
+     *
+     * @return type length
+     */
+    public int getTypeLength() {
+        return mTypeLength;
+    }
+
+    /**
+     * Returns the number of bytes in the id field.
+     *
+     * @return id length
+     */
+    public int getIdLength() {
+        return mIdLength;
+    }
+
+    /**
+     * Returns the number of bytes in the payload field.
+     *
+     * @return payload length
+     */
+    public int getPayloadLength() {
+        return mPayloadLength;
+    }
+
+    /**
+     * Returns a copy of the variable length Type field.
+     *
+     * @return type field, or empty array
+     */
+    public byte[] getType() {
+        return copy(mBuffer, mTypeOffset, mTypeLength);
+    }
+
+    /**
+     * Returns a copy of the variable length ID.
+     *
+     * @return id field, or empty array
+     */
+    public byte[] getId() {
+        return copy(mBuffer, mIdOffset, mIdLength);
+    }
+
+    /**
+     * Returns a copy of the variable length payload.
+     *
+     * @return payload field, or empty array
+     */
+    public byte[] getPayload() {
+        return copy(mPayloadBuffer, mPayloadOffset, mPayloadLength);
+    }
+
+    /**
+     * Returns a read-only buffer spanning the type field, without copying.
+     *
+     * @return type field buffer, with position zero
+     */
+    public ByteBuffer getTypeBuffer() {
+        return slice(mBuffer, mTypeOffset, mTypeLength);
+    }
+
+    /**
+     * Returns a read-only buffer spanning the id field, without copying.
+     *
+     * @return id field buffer, with position zero
+     */
+    public ByteBuffer getIdBuffer() {
+        return slice(mBuffer, mIdOffset, mIdLength);
+    }
+
+    /**
+     * Returns a read-only buffer spanning the payload field, without copying.
+     *
+     * @return payload field buffer, with position zero
+     */
+    public ByteBuffer getPayloadBuffer() {
+        return slice(mPayloadBuffer, mPayloadOffset, mPayloadLength);
+    }
+
+    /**
+     * Returns a single byte of the payload.
+     *
+     * @param index index within the payload
+     * @return payload byte
+     * @throws IndexOutOfBoundsException if the index is not within the payload
+     */
+    public byte getPayloadByte(int index) {
+        if (index < 0 || index >= mPayloadLength) {
+            throw new IndexOutOfBoundsException("index " + index + " not within payload of " + mPayloadLength + " bytes");
+        }
+        return mPayloadBuffer.get(mPayloadOffset + index);
+    }
+
+    /**
+     * Compares the type field to the given bytes, without copying.
+     *
+     * @param type type to compare with, for example {@link NdefRecord#RTD_URI}
+     * @return true if the type field is equal to the given bytes
+     */
+    public boolean typeEquals(byte[] type) {
+        if (type.length != mTypeLength) {
+            return false;
+        }
+        for (int i = 0; i < mTypeLength; i++) {
+            if (mBuffer.get(mTypeOffset + i) != type[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copy this view into an {@link NdefRecord}.
+     *
+     * @return a new record with copies of the type, id and payload fields
+     */
+    public NdefRecord toNdefRecord() {
+        byte[] payload;
+        if (mPayloadBuffer != mBuffer) {
+            // private flattened chunk payload, no need to copy again
+            payload = mPayloadBuffer.array();
+        } else {
+            payload = getPayload();
+        }
+        return new NdefRecord(mTnf, getType(), getId(), payload);
+    }
+
+    static void copy(ByteBuffer buffer, int offset, byte[] destination, int destinationOffset, int length) {
+        if (buffer.hasArray()) {
+            System.arraycopy(buffer.array(), buffer.arrayOffset() + offset, destination, destinationOffset, length);
+        } else {
+            ByteBuffer duplicate = buffer.duplicate();
+            duplicate.clear();
+            duplicate.position(offset);
+            duplicate.get(destination, destinationOffset, length);
+        }
+    }
+
+    private static byte[] copy(ByteBuffer buffer, int offset, int length) {
+        if (length == 0) {
+            return EMPTY_BYTE_ARRAY;
+        }
+        byte[] bytes = new byte[length];
+        copy(buffer, offset, bytes, 0, length);
+        return bytes;
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer duplicate = buffer.asReadOnlyBuffer();
+        duplicate.clear();
+        duplicate.limit(offset + length);
+        duplicate.position(offset);
+        return duplicate.slice();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("NdefRecordView tnf=%X typeLength=%d idLength=%d payloadLength=%d",
+                mTnf, mTypeLength, mIdLength, mPayloadLength);
+    }
+}
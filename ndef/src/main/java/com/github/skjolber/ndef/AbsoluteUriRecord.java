@@ -19,7 +19,7 @@
 
 package com.github.skjolber.ndef;
 
-import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 
 import android.nfc.NdefRecord;
 
@@ -38,7 +38,12 @@ public class AbsoluteUriRecord extends Record {
 
 	public static AbsoluteUriRecord parse(NdefRecord ndefRecord) {
 		// http://www.ietf.org/rfc/rfc2046.txt point 4.1.2
-		return new AbsoluteUriRecord(new String(ndefRecord.getPayload(), Charset.forName("US-ASCII")));
+		return new AbsoluteUriRecord(new String(ndefRecord.getPayload(), StandardCharsets.US_ASCII));
+	}
+
+	public static AbsoluteUriRecord parse(byte[] type, int typeOffset, int typeLength, byte[] payload, int payloadOffset, int payloadLength) {
+		// http://www.ietf.org/rfc/rfc2046.txt point 4.1.2
+		return new AbsoluteUriRecord(toAsciiString(payload, payloadOffset, payloadLength));
 	}
 	
 	private String uri;
@@ -60,6 +65,7 @@ public class AbsoluteUriRecord extends Record {
 
 	public void setUri(String uri) {
 		this.uri = uri;
+		clearOriginalEncoding();
 	}
 
 	@Override
@@ -94,6 +100,6 @@ public class AbsoluteUriRecord extends Record {
 			throw new IllegalArgumentException("Expected URI");
 		}
 		
-		return new NdefRecord(NdefRecord.TNF_ABSOLUTE_URI, AbsoluteUriRecord.TYPE, id != null ? id : EMPTY, uri.getBytes(Charset.forName("US-ASCII")));
+		return new NdefRecord(NdefRecord.TNF_ABSOLUTE_URI, AbsoluteUriRecord.TYPE, id != null ? id : EMPTY, uri.getBytes(StandardCharsets.US_ASCII));
 	}
 }
\ No newline at end of file
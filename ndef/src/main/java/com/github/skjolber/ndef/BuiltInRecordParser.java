@@ -0,0 +1,196 @@
+/***************************************************************************
+ *
+ * This file is part of the 'NDEF Tools for Android' project at
+ * http://code.google.com/p/ndef-tools-for-android/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ****************************************************************************/
+
+package com.github.skjolber.ndef;
+
+import com.github.skjolber.ndef.externaltype.AndroidApplicationRecord;
+import com.github.skjolber.ndef.wellknown.ActionRecord;
+import com.github.skjolber.ndef.wellknown.GcActionRecord;
+import com.github.skjolber.ndef.wellknown.GcDataRecord;
+import com.github.skjolber.ndef.wellknown.GcTargetRecord;
+import com.github.skjolber.ndef.wellknown.GenericControlRecord;
+import com.github.skjolber.ndef.wellknown.SignatureRecord;
+import com.github.skjolber.ndef.wellknown.SmartPosterRecord;
+import com.github.skjolber.ndef.wellknown.TextRecord;
+import com.github.skjolber.ndef.wellknown.UriRecord;
+import com.github.skjolber.ndef.wellknown.handover.AlternativeCarrierRecord;
+import com.github.skjolber.ndef.wellknown.handover.CollisionResolutionRecord;
+import com.github.skjolber.ndef.wellknown.handover.ErrorRecord;
+import com.github.skjolber.ndef.wellknown.handover.HandoverCarrierRecord;
+import com.github.skjolber.ndef.wellknown.handover.HandoverRequestRecord;
+import com.github.skjolber.ndef.wellknown.handover.HandoverSelectRecord;
+
+import android.nfc.FormatException;
+import android.nfc.NdefRecord;
+
+/**
+ *
+ * Parser for the record types supported by this library. A single class for all types, so that
+ * the default registry does not need a class per type.
+ *
+ * @author Thomas Rorvik Skjolberg (skjolber@gmail.com)
+ *
+ */
+
+final class BuiltInRecordParser implements RecordParser {
+
+	static final int URI = 0;
+	static final int TEXT = 1;
+	static final int GC_TARGET = 2;
+	static final int GC_DATA = 3;
+	static final int GC_ACTION = 4;
+	static final int SMART_POSTER = 5;
+	static final int GENERIC_CONTROL = 6;
+	static final int ALTERNATIVE_CARRIER = 7;
+	static final int COLLISION_RESOLUTION = 8;
+	static final int HANDOVER_CARRIER = 9;
+	static final int HANDOVER_SELECT = 10;
+	static final int HANDOVER_REQUEST = 11;
+	static final int ACTION = 12;
+	static final int ERROR = 13;
+	static final int SIGNATURE = 14;
+	static final int ANDROID_APPLICATION = 15;
+
+	static void register(RecordParserRegistry registry) {
+		registry.register(NdefRecord.TNF_WELL_KNOWN, "U", new BuiltInRecordParser(URI));
+		registry.register(NdefRecord.TNF_WELL_KNOWN, "T", new BuiltInRecordParser(TEXT));
+		registry.register(NdefRecord.TNF_WELL_KNOWN, "t", new BuiltInRecordParser(GC_TARGET));
+		registry.register(NdefRecord.TNF_WELL_KNOWN, "d", new BuiltInRecordParser(GC_DATA));
+		registry.register(NdefRecord.TNF_WELL_KNOWN, "a", new BuiltInRecordParser(GC_ACTION));
+		registry.register(NdefRecord.TNF_WELL_KNOWN, "Sp", new BuiltInRecordParser(SMART_POSTER));
+		registry.register(NdefRecord.TNF_WELL_KNOWN, "Gc", new BuiltInRecordParser(GENERIC_CONTROL));
+		registry.register(NdefRecord.TNF_WELL_KNOWN, "ac", new BuiltInRecordParser(ALTERNATIVE_CARRIER));
+		registry.register(NdefRecord.TNF_WELL_KNOWN, "cr", new BuiltInRecordParser(COLLISION_RESOLUTION));
+		registry.register(NdefRecord.TNF_WELL_KNOWN, "Hc", new BuiltInRecordParser(HANDOVER_CARRIER));
+		registry.register(NdefRecord.TNF_WELL_KNOWN, "Hs", new BuiltInRecordParser(HANDOVER_SELECT));
+		registry.register(NdefRecord.TNF_WELL_KNOWN, "Hr", new BuiltInRecordParser(HANDOVER_REQUEST));
+		registry.register(NdefRecord.TNF_WELL_KNOWN, "act", new BuiltInRecordParser(ACTION));
+		registry.register(NdefRecord.TNF_WELL_KNOWN, "err", new BuiltInRecordParser(ERROR));
+		registry.register(NdefRecord.TNF_WELL_KNOWN, "Sig", new BuiltInRecordParser(SIGNATURE));
+
+		registry.register(NdefRecord.TNF_EXTERNAL_TYPE, AndroidApplicationRecord.DOMAIN + ":" + AndroidApplicationRecord.TYPE, new BuiltInRecordParser(ANDROID_APPLICATION));
+	}
+
+	private final int kind;
+
+	private BuiltInRecordParser(int kind) {
+		this.kind = kind;
+	}
+
+	int getKind() {
+		return kind;
+	}
+
+	@Override
+	public Record parse(NdefDecoder decoder, byte[] type, int typeOffset, int typeLength, byte[] payload, int payloadOffset, int payloadLength) throws FormatException {
+		switch(kind) {
+			case URI : return UriRecord.parsePayload(payload, payloadOffset, payloadLength);
+			case TEXT : return TextRecord.parsePayload(payload, payloadOffset, payloadLength);
+			case GC_TARGET : return GcTargetRecord.parsePayload(decoder, payload, payloadOffset, payloadLength);
+			case GC_DATA : return GcDataRecord.parsePayload(decoder, payload, payloadOffset, payloadLength);
+			case GC_ACTION : return GcActionRecord.parsePayload(decoder, payload, payloadOffset, payloadLength);
+			case SMART_POSTER : return SmartPosterRecord.parsePayload(decoder, payload, payloadOffset, payloadLength);
+			case GENERIC_CONTROL : return GenericControlRecord.parsePayload(decoder, payload, payloadOffset, payloadLength);
+			case ALTERNATIVE_CARRIER : return AlternativeCarrierRecord.parsePayload(payload, payloadOffset, payloadLength);
+			case COLLISION_RESOLUTION : return CollisionResolutionRecord.parsePayload(payload, payloadOffset, payloadLength);
+			case HANDOVER_CARRIER : return HandoverCarrierRecord.parsePayload(decoder, payload, payloadOffset, payloadLength);
+			case HANDOVER_SELECT : return HandoverSelectRecord.parsePayload(decoder, payload, payloadOffset, payloadLength);
+			case HANDOVER_REQUEST : return HandoverRequestRecord.parsePayload(decoder, payload, payloadOffset, payloadLength);
+			case ACTION : return ActionRecord.parsePayload(payload, payloadOffset, payloadLength);
+			case ERROR : return ErrorRecord.parsePayload(payload, payloadOffset, payloadLength);
+			case SIGNATURE : return SignatureRecord.parsePayload(payload, payloadOffset, payloadLength);
+			case ANDROID_APPLICATION : return AndroidApplicationRecord.parsePayload(payload, payloadOffset, payloadLength);
+			default : throw new IllegalStateException("Unknown record type " + kind);
+		}
+	}
+
+	/**
+	 * Check whether a payload would be accepted by {@link #parse(NdefDecoder, byte[], int, int, byte[], int, int)},
+	 * without throwing exceptions. Nested messages and records are checked using the decoder.
+	 *
+	 * @return true if the payload can be parsed
+	 */
+
+	boolean isValid(NdefDecoder decoder, byte[] payload, int payloadOffset, int payloadLength) {
+		int end = payloadOffset + payloadLength;
+		switch(kind) {
+			case URI : return true;
+			case TEXT : return TextRecord.isValidPayload(payload, payloadOffset, payloadLength);
+			case GC_TARGET : return decoder.checkNested(payload, payloadOffset, end, kind) == 1;
+			case GC_DATA : return decoder.checkNested(payload, payloadOffset, end, kind) != -1;
+			case GC_ACTION : {
+				if(!GcActionRecord.isValidPayload(payload, payloadOffset, payloadLength)) {
+					return false;
+				}
+				if((payload[payloadOffset] & GcActionRecord.NUMERIC_CODE) != 0) {
+					return true;
+				}
+				return decoder.checkNested(payload, payloadOffset + 1, end, kind) == 1;
+			}
+			case SMART_POSTER : return decoder.checkNested(payload, payloadOffset, end, kind) != -1;
+			case GENERIC_CONTROL : return GenericControlRecord.isValidPayload(payload, payloadOffset, payloadLength) && decoder.checkNested(payload, payloadOffset + 1, end, kind) != -1;
+			case ALTERNATIVE_CARRIER : return AlternativeCarrierRecord.isValidPayload(payload, payloadOffset, payloadLength);
+			case COLLISION_RESOLUTION : return CollisionResolutionRecord.isValidPayload(payload, payloadOffset, payloadLength);
+			case HANDOVER_CARRIER : {
+				if(!HandoverCarrierRecord.isValidPayload(payload, payloadOffset, payloadLength)) {
+					return false;
+				}
+				int carrierTypeFormat = payload[payloadOffset] & 0x7;
+				if(carrierTypeFormat == NdefRecord.TNF_WELL_KNOWN || carrierTypeFormat == NdefRecord.TNF_EXTERNAL_TYPE) {
+					// carrier type is a single record
+					return decoder.checkNested(payload, payloadOffset + 2, payloadOffset + 2 + (payload[payloadOffset + 1] & 0xFF), kind) == 1;
+				}
+				return true;
+			}
+			case HANDOVER_SELECT : return HandoverSelectRecord.isValidPayload(payload, payloadOffset, payloadLength) && decoder.checkNested(payload, payloadOffset + 1, end, kind) != -1;
+			case HANDOVER_REQUEST : return HandoverRequestRecord.isValidPayload(payload, payloadOffset, payloadLength) && decoder.checkNested(payload, payloadOffset + 1, end, kind) != -1;
+			case ACTION : return ActionRecord.isValidPayload(payload, payloadOffset, payloadLength);
+			case ERROR : return ErrorRecord.isValidPayload(payload, payloadOffset, payloadLength);
+			case SIGNATURE : return SignatureRecord.isValidPayload(payload, payloadOffset, payloadLength);
+			case ANDROID_APPLICATION : return true;
+			default : return false;
+		}
+	}
+
+	/**
+	 * Parse a record into an existing record of the same class, for the types which support it.
+	 *
+	 * @param target record to reuse
+	 * @return the target record, or null if the target cannot be reused for this type
+	 * @throws FormatException if the payload cannot be parsed
+	 */
+
+	Record parse(byte[] payload, int payloadOffset, int payloadLength, Record target) throws FormatException {
+		switch(kind) {
+			case URI : {
+				if(target.getClass() == UriRecord.class) {
+					return UriRecord.parsePayload(payload, payloadOffset, payloadLength, (UriRecord)target);
+				}
+				return null;
+			}
+			case TEXT : {
+				if(target.getClass() == TextRecord.class) {
+					return TextRecord.parsePayload(payload, payloadOffset, payloadLength, (TextRecord)target);
+				}
+				return null;
+			}
+			default : return null;
+		}
+	}
+}
@@ -0,0 +1,117 @@
+/***************************************************************************
+ *
+ * This file is part of the 'NDEF Tools for Android' project at
+ * http://code.google.com/p/ndef-tools-for-android/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ****************************************************************************/
+
+package com.github.skjolber.ndef;
+
+/**
+ *
+ * Result of {@link NdefDecoder#tryDecode(byte[], int, int)}: either a {@link Message}, or a status code and the offset
+ * at which decoding failed.<br><br>
+ *
+ * Junk input is detected without creating exceptions, so that failing is no more expensive than succeeding.
+ *
+ * @author Thomas Rorvik Skjolberg (skjolber@gmail.com)
+ *
+ */
+
+public final class DecodeResult {
+
+	public static enum Status {
+		OK(null),
+		EXPECTED_MORE_DATA("expected more data"),
+		TRAILING_DATA("trailing data"),
+		EXPECTED_MB("expected MB flag"),
+		UNEXPECTED_MB("unexpected MB flag"),
+		UNEXPECTED_IL("unexpected IL flag in non-leading chunk"),
+		UNEXPECTED_ME("unexpected ME flag in non-trailing chunk"),
+		EXPECTED_TNF_UNCHANGED("expected TNF_UNCHANGED in non-leading chunk"),
+		UNEXPECTED_TNF_UNCHANGED("unexpected TNF_UNCHANGED in first chunk or unchunked record"),
+		UNEXPECTED_CHUNK_TYPE("expected zero-length type in non-leading chunk"),
+		EXPECTED_CHUNK_TYPE("expected non-zero type length in first chunk"),
+		PAYLOAD_TOO_LARGE("payload above max limit"),
+		INVALID_TNF("invalid TNF for record fields"),
+		/** the record headers are valid, but the contents of a record could not be parsed */
+		INVALID_RECORD("invalid record");
+
+		private final String message;
+
+		private Status(String message) {
+			this.message = message;
+		}
+
+		public String getMessage() {
+			return message;
+		}
+	}
+
+	static DecodeResult success(Message message) {
+		return new DecodeResult(message, Status.OK, -1);
+	}
+
+	static DecodeResult failure(Status status, int offset) {
+		return new DecodeResult(null, status, offset);
+	}
+
+	private final Message message;
+	private final Status status;
+	private final int offset;
+
+	private DecodeResult(Message message, Status status, int offset) {
+		this.message = message;
+		this.status = status;
+		this.offset = offset;
+	}
+
+	public boolean isSuccess() {
+		return status == Status.OK;
+	}
+
+	/**
+	 * Get the decoded message.
+	 *
+	 * @return message, or null if decoding failed
+	 */
+
+	public Message getMessage() {
+		return message;
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	/**
+	 * Get the offset of the failure, relative to the start of the input array. For {@link Status#INVALID_RECORD}, this is
+	 * the offset of the record type field.
+	 *
+	 * @return offset, or -1 if decoding succeeded
+	 */
+
+	public int getOffset() {
+		return offset;
+	}
+
+	@Override
+	public String toString() {
+		if(isSuccess()) {
+			return "DecodeResult[" + message + "]";
+		}
+		return "DecodeResult[" + status + " at offset " + offset + "]";
+	}
+}
@@ -0,0 +1,53 @@
+/***************************************************************************
+ *
+ * This file is part of the 'NDEF Tools for Android' project at
+ * http://code.google.com/p/ndef-tools-for-android/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ****************************************************************************/
+
+package com.github.skjolber.ndef;
+
+import android.nfc.FormatException;
+
+/**
+ *
+ * {@link NdefHandler} which does nothing, for overriding only the callbacks of interest.
+ *
+ * @author Thomas Rorvik Skjolberg (skjolber@gmail.com)
+ *
+ */
+
+public class DefaultNdefHandler implements NdefHandler {
+
+	@Override
+	public void onMessageStart() throws FormatException {
+	}
+
+	@Override
+	public void onRecord(short tnf, byte[] data, int typeOffset, int typeLength, int idOffset, int idLength, byte[] payload, int payloadOffset, int payloadLength) throws FormatException {
+	}
+
+	@Override
+	public void onNestedMessageStart() throws FormatException {
+	}
+
+	@Override
+	public void onNestedMessageEnd() throws FormatException {
+	}
+
+	@Override
+	public void onMessageEnd() throws FormatException {
+	}
+}
@@ -48,6 +48,20 @@ public class EmptyRecord extends Record {
 		
 		return new EmptyRecord();
 	}
+
+	public static EmptyRecord parse(byte[] type, int typeOffset, int typeLength, byte[] payload, int payloadOffset, int payloadLength) {
+		// check that type is zero length
+		if(typeLength > 0) {
+			throw new IllegalArgumentException(EmptyRecord.class.getSimpleName() + " type not expected");
+		}
+	
+		// check that type is zero length
+		if(payloadLength > 0) {
+			throw new IllegalArgumentException(EmptyRecord.class.getSimpleName() + " payload not expected");
+		}
+		
+		return new EmptyRecord();
+	}
 	
 	@Override
 	public NdefRecord getNdefRecord() {
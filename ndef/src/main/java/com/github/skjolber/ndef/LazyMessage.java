@@ -0,0 +1,440 @@
+/***************************************************************************
+ *
+ * This file is part of the 'NDEF Tools for Android' project at
+ * http://code.google.com/p/ndef-tools-for-android/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ****************************************************************************/
+
+package com.github.skjolber.ndef;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+import android.annotation.SuppressLint;
+import android.nfc.FormatException;
+import android.nfc.NdefMessage;
+import android.nfc.NdefRecord;
+
+/**
+ *
+ * {@link Message} which decodes each {@link Record} on first access, and then caches it.<br><br>
+ *
+ * The number of records and the TNF and type of each record are available without decoding. Undecoded records
+ * are passed through as-is when converting back to an {@link NdefMessage}.<br><br>
+ *
+ * Accessing a record which cannot be decoded results in an {@link IllegalArgumentException} wrapping the {@link FormatException};
+ * use {@link #decode(int)} or {@link #decodeAll()} for checked decoding. Any modification other than appending records
+ * decodes all records first. Like {@link Message}, this class is not thread-safe.
+ *
+ * @author Thomas Rorvik Skjolberg (skjolber@gmail.com)
+ *
+ */
+
+@SuppressLint("NewApi")
+public class LazyMessage extends Message {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Parse NDEF message bytes into a lazy high-level {@link Message} representation.
+	 *
+	 * @param payload message to parse
+	 * @return corresponding {@link LazyMessage} consisting of one or more {@link Record}s.
+	 * @throws FormatException if the NDEF message cannot be parsed
+	 */
+
+	public static LazyMessage parseNdefMessage(byte[] payload) throws FormatException {
+		return new LazyMessage(new NdefMessage(payload));
+	}
+
+	/** source records, or null if the message is fully decoded */
+	private transient NdefRecord[] ndefRecords;
+	/** decoded state per source record */
+	private transient boolean[] decoded;
+
+	/**
+	 * {@link NdefMessage} constructor. No records are decoded.
+	 *
+	 * @param ndefMessage NDEF message
+	 */
+
+	public LazyMessage(NdefMessage ndefMessage) {
+		this(ndefMessage.getRecords());
+	}
+
+	/**
+	 * {@link NdefRecord} array constructor. No records are decoded.
+	 *
+	 * @param ndefRecords NDEF records
+	 */
+
+	public LazyMessage(NdefRecord[] ndefRecords) {
+		super(ndefRecords.length);
+		for(int i = 0; i < ndefRecords.length; i++) {
+			super.add(null);
+		}
+		this.ndefRecords = ndefRecords;
+		this.decoded = new boolean[ndefRecords.length];
+	}
+
+	/**
+	 * Check whether the record at the given index has been decoded.
+	 *
+	 * @param index record index
+	 * @return true if decoded
+	 */
+
+	public boolean isDecoded(int index) {
+		rangeCheck(index);
+		return !isSource(index) || decoded[index];
+	}
+
+	/**
+	 * Get the TNF of the record at the given index, without decoding it.
+	 *
+	 * @param index record index
+	 * @return the record TNF
+	 */
+
+	public short getTnf(int index) {
+		rangeCheck(index);
+		if(isSource(index)) {
+			return ndefRecords[index].getTnf();
+		}
+		return get(index).getNdefRecord().getTnf();
+	}
+
+	/**
+	 * Get the type of the record at the given index, without decoding it.
+	 *
+	 * @param index record index
+	 * @return the record type bytes
+	 */
+
+	public byte[] getType(int index) {
+		rangeCheck(index);
+		if(isSource(index)) {
+			return ndefRecords[index].getType();
+		}
+		return get(index).getNdefRecord().getType();
+	}
+
+	/**
+	 * Decode the record at the given index, if not already decoded.
+	 *
+	 * @param index record index
+	 * @return the decoded record
+	 * @throws FormatException if known record type cannot be parsed
+	 */
+
+	public Record decode(int index) throws FormatException {
+		rangeCheck(index);
+		if(isSource(index) && !decoded[index]) {
+			Record record = Record.parse(ndefRecords[index]);
+			super.set(index, record);
+			decoded[index] = true;
+
+			return record;
+		}
+		return super.get(index);
+	}
+
+	/**
+	 * Decode all records which are not already decoded.
+	 *
+	 * @throws FormatException if known record type cannot be parsed
+	 */
+
+	public void decodeAll() throws FormatException {
+		if(ndefRecords != null) {
+			for(int i = 0; i < ndefRecords.length; i++) {
+				if(!decoded[i]) {
+					decode(i);
+				}
+			}
+		}
+	}
+
+	@Override
+	public Record get(int index) {
+		try {
+			return decode(index);
+		} catch (FormatException e) {
+			throw new IllegalArgumentException("Unable to decode record " + index, e);
+		}
+	}
+
+	@Override
+	public NdefMessage getNdefMessage() {
+		if(ndefRecords == null) {
+			return super.getNdefMessage();
+		}
+		NdefRecord[] records = new NdefRecord[size()];
+		for(int i = 0; i < records.length; i++) {
+			if(isSource(i) && !decoded[i]) {
+				// pass through
+				records[i] = ndefRecords[i];
+			} else {
+				records[i] = get(i).getNdefRecord();
+			}
+		}
+		return new NdefMessage(records);
+	}
+
+	private boolean isSource(int index) {
+		return ndefRecords != null && index < ndefRecords.length;
+	}
+
+	private void rangeCheck(int index) {
+		if (index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+		}
+	}
+
+	/**
+	 * Decode all records and drop the source records, so that the {@link java.util.ArrayList}
+	 * implementation can be used directly.
+	 */
+
+	private void materialize() {
+		if(ndefRecords != null) {
+			try {
+				decodeAll();
+			} catch (FormatException e) {
+				throw new IllegalArgumentException("Unable to decode records", e);
+			}
+			ndefRecords = null;
+			decoded = null;
+		}
+	}
+
+	@Override
+	public Iterator<Record> iterator() {
+		if(ndefRecords == null) {
+			return super.iterator();
+		}
+		return new LazyIterator();
+	}
+
+	/**
+	 * Iterator which decodes records on demand.
+	 */
+
+	private class LazyIterator implements Iterator<Record> {
+		private int cursor;
+		private int lastReturned = -1;
+		private int expectedModCount = modCount;
+
+		@Override
+		public boolean hasNext() {
+			return cursor < size();
+		}
+
+		@Override
+		public Record next() {
+			if (modCount != expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+			if (cursor >= size()) {
+				throw new NoSuchElementException();
+			}
+			Record record = get(cursor);
+			lastReturned = cursor++;
+			return record;
+		}
+
+		@Override
+		public void remove() {
+			if (lastReturned < 0) {
+				throw new IllegalStateException();
+			}
+			if (modCount != expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+			LazyMessage.this.remove(lastReturned);
+			cursor = lastReturned;
+			lastReturned = -1;
+			expectedModCount = modCount;
+		}
+	}
+
+	// read operations which access the underlying array directly
+
+	@Override
+	public ListIterator<Record> listIterator() {
+		materialize();
+		return super.listIterator();
+	}
+
+	@Override
+	public ListIterator<Record> listIterator(int index) {
+		materialize();
+		return super.listIterator(index);
+	}
+
+	@Override
+	public Object[] toArray() {
+		materialize();
+		return super.toArray();
+	}
+
+	@Override
+	public <T> T[] toArray(T[] a) {
+		materialize();
+		return super.toArray(a);
+	}
+
+	@Override
+	public int indexOf(Object o) {
+		materialize();
+		return super.indexOf(o);
+	}
+
+	@Override
+	public int lastIndexOf(Object o) {
+		materialize();
+		return super.lastIndexOf(o);
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		materialize();
+		return super.contains(o);
+	}
+
+	@Override
+	public List<Record> subList(int fromIndex, int toIndex) {
+		materialize();
+		return super.subList(fromIndex, toIndex);
+	}
+
+	@Override
+	public void forEach(Consumer<? super Record> action) {
+		materialize();
+		super.forEach(action);
+	}
+
+	@Override
+	public Spliterator<Record> spliterator() {
+		materialize();
+		return super.spliterator();
+	}
+
+	@Override
+	public Object clone() {
+		materialize();
+		return super.clone();
+	}
+
+	@Override
+	public int hashCode() {
+		materialize();
+		return super.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		materialize();
+		return super.equals(o);
+	}
+
+	// modifications other than appending
+
+	@Override
+	public Record set(int index, Record element) {
+		materialize();
+		return super.set(index, element);
+	}
+
+	@Override
+	public void add(int index, Record element) {
+		materialize();
+		super.add(index, element);
+	}
+
+	@Override
+	public Record remove(int index) {
+		materialize();
+		return super.remove(index);
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		materialize();
+		return super.remove(o);
+	}
+
+	@Override
+	public void clear() {
+		ndefRecords = null;
+		decoded = null;
+		super.clear();
+	}
+
+	@Override
+	public boolean addAll(int index, Collection<? extends Record> c) {
+		materialize();
+		return super.addAll(index, c);
+	}
+
+	@Override
+	protected void removeRange(int fromIndex, int toIndex) {
+		materialize();
+		super.removeRange(fromIndex, toIndex);
+	}
+
+	@Override
+	public boolean removeAll(Collection<?> c) {
+		materialize();
+		return super.removeAll(c);
+	}
+
+	@Override
+	public boolean retainAll(Collection<?> c) {
+		materialize();
+		return super.retainAll(c);
+	}
+
+	@Override
+	public boolean removeIf(Predicate<? super Record> filter) {
+		materialize();
+		return super.removeIf(filter);
+	}
+
+	@Override
+	public void replaceAll(UnaryOperator<Record> operator) {
+		materialize();
+		super.replaceAll(operator);
+	}
+
+	@Override
+	public void sort(Comparator<? super Record> c) {
+		materialize();
+		super.sort(c);
+	}
+
+	private Object writeReplace() {
+		return new Message((List<Record>)this);
+	}
+}
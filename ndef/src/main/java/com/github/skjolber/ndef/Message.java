@@ -19,9 +19,14 @@
 
 package com.github.skjolber.ndef;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import android.annotation.SuppressLint;
 import android.content.Intent;
 import android.nfc.FormatException;
 import android.nfc.NdefMessage;
@@ -52,7 +57,7 @@ public class Message extends ArrayList<Record> {
 	 */
 	
 	public static Message parseNdefMessage(byte[] payload) throws FormatException {
-		return new Message(new NdefMessage(payload));
+		return NdefDecoder.getDefault().decode(payload);
 	}
 	
     /**
@@ -66,10 +71,89 @@ public class Message extends ArrayList<Record> {
 	 */
 
 	public static Message parseNdefMessage(byte[] payload, int offset, int length) throws FormatException {
-		byte[] messagePayload = new byte[length];
-		System.arraycopy(payload, offset, messagePayload, 0, length);
-		
-		return new Message(new NdefMessage(messagePayload));
+		return NdefDecoder.getDefault().decode(payload, offset, length);
+	}
+
+    /**
+     * Parse only the selected records of NDEF message bytes into a high-level {@link Message} representation.
+     * 
+     * @param payload record to parse
+     * @param selector record selector
+	 * @return corresponding {@link Message} consisting of zero or more {@link Record}s.
+     * @throws FormatException if known record type cannot be parsed
+     * @see NdefDecoder#decode(byte[], int, int, RecordSelector)
+	 */
+
+	public static Message parseNdefMessage(byte[] payload, RecordSelector selector) throws FormatException {
+		return NdefDecoder.getDefault().decode(payload, 0, payload.length, selector);
+	}
+	
+    /**
+     * Parse NDEF message bytes into a high-level {@link Message} representation.
+     * 
+     * @param buffer buffer containing the message from its position to its limit. The position is advanced to the limit.
+	 * @return corresponding {@link Message} consisting of one or more {@link Record}s.
+     * @throws FormatException if known record type cannot be parsed
+     * @see NdefDecoder#decode(ByteBuffer)
+	 */
+
+	public static Message parse(ByteBuffer buffer) throws FormatException {
+		return NdefDecoder.getDefault().decode(buffer);
+	}
+	
+    /**
+     * Parse NDEF message bytes into an existing {@link Message}, reusing its records where possible.
+     * 
+     * @param target message to parse into
+     * @param payload message to parse
+	 * @return the target message
+     * @throws FormatException if known record type cannot be parsed
+     * @see NdefDecoder#decodeInto(Message, byte[], int, int)
+	 */
+
+	public static Message parseInto(Message target, byte[] payload) throws FormatException {
+		return NdefDecoder.getDefault().decodeInto(target, payload, 0, payload.length);
+	}
+
+    /**
+     * Stream the records of NDEF message bytes. The message is scanned up front, and the records are decoded as
+     * they are consumed, in parallel for a parallel stream.
+     * 
+     * @param payload message to parse, which must not be modified while the stream is in use
+	 * @return stream of the top-level {@link Record}s
+     * @throws FormatException if the message structure is invalid
+     * @see NdefRecordSpliterator
+	 */
+
+	@SuppressLint("NewApi")
+	public static Stream<Record> stream(byte[] payload) throws FormatException {
+		return StreamSupport.stream(new NdefRecordSpliterator(NdefIndex.scan(payload)), false);
+	}
+	
+    /**
+     * Stream the records of NDEF message bytes. Heap buffers are streamed from the backing array, direct buffers
+     * are copied once.
+     * 
+     * @param buffer buffer containing the message from its position to its limit. The position is advanced to the limit.
+	 * @return stream of the top-level {@link Record}s
+     * @throws FormatException if the message structure is invalid
+     * @see #stream(byte[])
+	 */
+
+	@SuppressLint("NewApi")
+	public static Stream<Record> stream(ByteBuffer buffer) throws FormatException {
+		NdefIndex index;
+		if(buffer.hasArray()) {
+			index = NdefIndex.scan(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+		} else {
+			byte[] data = new byte[buffer.remaining()];
+			buffer.duplicate().get(data);
+
+			index = NdefIndex.scan(data);
+		}
+		buffer.position(buffer.limit());
+
+		return StreamSupport.stream(new NdefRecordSpliterator(index), false);
 	}
 	
 	/**
@@ -97,6 +181,7 @@ public class Message extends ArrayList<Record> {
 
 	/**
 	 * Convert record to its byte-based {@link NdefMessage} representation. At least one record needs to be present.
+	 * Records which have kept their original bytes are not encoded again.
 	 * 
 	 * @return record in {@link NdefMessage} form.
 	 * @throws IllegalArgumentException if zero records.
@@ -105,11 +190,130 @@ public class Message extends ArrayList<Record> {
 	public NdefMessage getNdefMessage() {
 		NdefRecord[] ndefRecords = new NdefRecord[size()];
 		for(int i = 0; i < ndefRecords.length; i++) {
-			ndefRecords[i] = get(i).getNdefRecord();
+			ndefRecords[i] = get(i).toNdefRecord();
 		}
 		return new NdefMessage(ndefRecords);
 	}
 	
+	/**
+	 * Write the message to a buffer, at its position, in the same format as {@link NdefMessage#toByteArray()}.
+	 * The records are written directly, without encoding the complete message into an intermediate array. Records which
+	 * have kept their original bytes are copied verbatim, only the MB and ME flags are updated. At least one record needs to be present.
+	 * 
+	 * @param buffer target heap or direct buffer, the position is advanced by the number of bytes written.
+	 * @return number of bytes written
+	 * @throws BufferOverflowException if the buffer does not have room for the message, in which case nothing is written.
+	 * @throws IllegalArgumentException if zero records.
+	 * @see Record#hasOriginalEncoding()
+	 */
+
+	public int writeTo(ByteBuffer buffer) {
+		NdefRecord[] ndefRecords = new NdefRecord[size()];
+		byte[][] fields = new byte[ndefRecords.length * 3][];
+		int length = prepare(ndefRecords, fields);
+		if(buffer.remaining() < length) {
+			throw new BufferOverflowException();
+		}
+		write(ndefRecords, fields, buffer);
+
+		return length;
+	}
+
+	/**
+	 * Convert the message to bytes, like {@link NdefMessage#toByteArray()}. Records which have kept their original bytes
+	 * are copied verbatim, only the MB and ME flags are updated. At least one record needs to be present.
+	 * 
+	 * @return message in byte form
+	 * @throws IllegalArgumentException if zero records.
+	 * @see Record#hasOriginalEncoding()
+	 */
+
+	public byte[] toByteArray() {
+		NdefRecord[] ndefRecords = new NdefRecord[size()];
+		byte[][] fields = new byte[ndefRecords.length * 3][];
+		ByteBuffer buffer = ByteBuffer.allocate(prepare(ndefRecords, fields));
+		write(ndefRecords, fields, buffer);
+
+		return buffer.array();
+	}
+
+	/**
+	 * Encode the records which have not kept their original bytes, and get the fields of each.
+	 * 
+	 * @param ndefRecords target encoded records, null for records with original bytes
+	 * @param fields target type, id and payload of each encoded record
+	 * @return length of the message in bytes
+	 */
+
+	private int prepare(NdefRecord[] ndefRecords, byte[][] fields) {
+		if(ndefRecords.length == 0) {
+			throw new IllegalArgumentException("Expected at least one record");
+		}
+		int length = 0;
+		for(int i = 0; i < ndefRecords.length; i++) {
+			byte[] encoded = get(i).getOriginalEncoding();
+			if(encoded != null) {
+				length += encoded.length;
+			} else {
+				NdefRecord ndefRecord = get(i).getNdefRecord();
+				byte[] type = ndefRecord.getType();
+				byte[] id = ndefRecord.getId();
+				byte[] payload = ndefRecord.getPayload();
+
+				// same flags as NdefRecord
+				boolean sr = payload.length < 256;
+				boolean il = ndefRecord.getTnf() == NdefRecord.TNF_EMPTY ? true : id.length > 0;
+
+				length += 3 + type.length + id.length + payload.length + (sr ? 0 : 3) + (il ? 1 : 0);
+
+				ndefRecords[i] = ndefRecord;
+				fields[i * 3] = type;
+				fields[i * 3 + 1] = id;
+				fields[i * 3 + 2] = payload;
+			}
+		}
+		return length;
+	}
+
+	private void write(NdefRecord[] ndefRecords, byte[][] fields, ByteBuffer buffer) {
+		for(int i = 0; i < ndefRecords.length; i++) {
+			boolean mb = i == 0;
+			boolean me = i == ndefRecords.length - 1;
+			if(ndefRecords[i] == null) {
+				byte[] encoded = get(i).getOriginalEncoding();
+
+				buffer.put((byte)((encoded[0] & 0x3F) | (mb ? 0x80 : 0) | (me ? 0x40 : 0)));
+				buffer.put(encoded, 1, encoded.length - 1);
+			} else {
+				write(ndefRecords[i].getTnf(), fields[i * 3], fields[i * 3 + 1], fields[i * 3 + 2], mb, me, buffer);
+			}
+		}
+	}
+
+	private static void write(short tnf, byte[] type, byte[] id, byte[] payload, boolean mb, boolean me, ByteBuffer buffer) {
+		// same flags as NdefRecord
+		boolean sr = payload.length < 256;
+		boolean il = tnf == NdefRecord.TNF_EMPTY ? true : id.length > 0;
+
+		buffer.put((byte)((mb ? 0x80 : 0) | (me ? 0x40 : 0) | (sr ? 0x10 : 0) | (il ? 0x08 : 0) | tnf));
+		buffer.put((byte)type.length);
+		if(sr) {
+			buffer.put((byte)payload.length);
+		} else {
+			// big-endian regardless of buffer byte order
+			buffer.put((byte)(payload.length >>> 24));
+			buffer.put((byte)(payload.length >>> 16));
+			buffer.put((byte)(payload.length >>> 8));
+			buffer.put((byte)payload.length);
+		}
+		if(il) {
+			buffer.put((byte)id.length);
+		}
+		buffer.put(type);
+		buffer.put(id);
+		buffer.put(payload);
+	}
+
 	/**
 	 * {@link Intent} constructor. Extracts {@link NdefMessage} using key {@link NfcAdapter#EXTRA_NDEF_MESSAGES}.
 	 * 
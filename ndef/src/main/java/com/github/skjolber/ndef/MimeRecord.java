@@ -19,7 +19,7 @@
 
 package com.github.skjolber.ndef;
 
-import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 
 import android.nfc.NdefRecord;
@@ -36,11 +36,44 @@ import android.nfc.NdefRecord;
 public class MimeRecord extends Record {
 
 	public static MimeRecord parse(NdefRecord ndefRecord) {
-		String contentType = new String(ndefRecord.getType(), Charset.forName("US-ASCII")); // http://www.ietf.org/rfc/rfc2046.txt
+		byte[] type = ndefRecord.getType();
+		String contentType = NdefStringPool.getDefault().toAsciiString(type, 0, type.length); // http://www.ietf.org/rfc/rfc2046.txt
 		
 		return new MimeRecord(contentType, ndefRecord.getPayload());
 	}
 
+	public static MimeRecord parse(byte[] type, int typeOffset, int typeLength, byte[] payload, int payloadOffset, int payloadLength) {
+		String contentType = NdefStringPool.getDefault().toAsciiString(type, typeOffset, typeLength); // http://www.ietf.org/rfc/rfc2046.txt
+		
+		return new MimeRecord(contentType, Arrays.copyOfRange(payload, payloadOffset, payloadOffset + payloadLength));
+	}
+
+	/**
+	 * Parse a mime record into an existing record. The mime type of the existing record is kept if it corresponds
+	 * to the type, and if the existing data array has the same length as the payload, the payload is copied into it.
+	 * 
+	 * @param type array containing the type
+	 * @param typeOffset type offset
+	 * @param typeLength type length
+	 * @param payload array containing the payload
+	 * @param payloadOffset payload offset
+	 * @param payloadLength payload length
+	 * @param target record to reuse
+	 * @return the target record
+	 */
+
+	public static MimeRecord parse(byte[] type, int typeOffset, int typeLength, byte[] payload, int payloadOffset, int payloadLength, MimeRecord target) {
+		if(!equalsAscii(target.mimeType, type, typeOffset, typeLength)) {
+			target.mimeType = NdefStringPool.getDefault().toAsciiString(type, typeOffset, typeLength);
+		}
+		if(target.data != null && target.data.length == payloadLength) {
+			System.arraycopy(payload, payloadOffset, target.data, 0, payloadLength);
+		} else {
+			target.data = Arrays.copyOfRange(payload, payloadOffset, payloadOffset + payloadLength);
+		}
+		return target;
+	}
+
 	protected String mimeType;
 	private byte[] data;
 
@@ -58,6 +91,7 @@ public class MimeRecord extends Record {
 
 	public void setMimeType(String mimeType) {
 		this.mimeType = mimeType;
+		clearOriginalEncoding();
 	}
 
 	public boolean hasMimeType() {
@@ -71,7 +105,7 @@ public class MimeRecord extends Record {
 		}
 
 		// the android api normalizes the content type, I dont see why you would want that
-		return new NdefRecord(NdefRecord.TNF_MIME_MEDIA, mimeType.getBytes(Charset.forName("US-ASCII")), id != null ? id : EMPTY, data != null ? data : EMPTY);
+		return new NdefRecord(NdefRecord.TNF_MIME_MEDIA, mimeType.getBytes(StandardCharsets.US_ASCII), id != null ? id : EMPTY, data != null ? data : EMPTY);
 	}
 
 	public byte[] getData() {
@@ -109,6 +143,7 @@ public class MimeRecord extends Record {
 
 	public void setData(byte[] data) {
 		this.data = data;
+		clearOriginalEncoding();
 	}
 	
 	
@@ -0,0 +1,309 @@
+/***************************************************************************
+ *
+ * This file is part of the 'NDEF Tools for Android' project at
+ * http://code.google.com/p/ndef-tools-for-android/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ****************************************************************************/
+
+package com.github.skjolber.ndef;
+
+import android.nfc.FormatException;
+
+/**
+ *
+ * Bounded cache of decoded messages, keyed by the message bytes, for readers which see the same tags over and over.<br><br>
+ *
+ * Lookups hash the input bytes and compare them to the bytes of cached entries of the same hash, so no key object
+ * is created. When full, the least recently used message is evicted. Messages which cannot be decoded are not cached.<br><br>
+ *
+ * Cached {@link Message} instances are shared between all callers which decode the same bytes, and so cannot be modified; 
+ * modifications throw {@link UnsupportedOperationException}. The records are shared too, and must be treated as read-only.
+ * This class is thread-safe; decoding on a miss happens outside the lock.
+ *
+ * @author Thomas Rorvik Skjolberg (skjolber@gmail.com)
+ *
+ */
+
+public final class NdefDecodeCache {
+
+	private static final class Entry {
+
+		private final int hash;
+		private final byte[] data;
+		private final Message message;
+
+		/** next entry in the same bucket */
+		private Entry next;
+
+		/** least recently used order */
+		private Entry newer;
+		private Entry older;
+
+		private Entry(int hash, byte[] data, Message message) {
+			this.hash = hash;
+			this.data = data;
+			this.message = message;
+		}
+	}
+
+	private final NdefDecoder decoder;
+	private final int maxEntries;
+	private final int maxMessageSize;
+
+	private final Entry[] table;
+	private int size;
+
+	/** most recently used entry */
+	private Entry newest;
+	/** least recently used entry */
+	private Entry oldest;
+
+	private long hitCount;
+	private long missCount;
+	private long evictionCount;
+
+	/**
+	 * Create a cache using the default decoder.
+	 *
+	 * @param maxEntries max number of cached messages
+	 */
+
+	public NdefDecodeCache(int maxEntries) {
+		this(NdefDecoder.getDefault(), maxEntries, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param decoder decoder for messages which are not cached
+	 * @param maxEntries max number of cached messages
+	 * @param maxMessageSize max size of a cached message, in bytes. Larger messages are decoded but not cached.
+	 */
+
+	public NdefDecodeCache(NdefDecoder decoder, int maxEntries, int maxMessageSize) {
+		if(decoder == null) {
+			throw new IllegalArgumentException("Expected decoder");
+		}
+		if(maxEntries <= 0) {
+			throw new IllegalArgumentException("Expected positive max entries");
+		}
+		if(maxMessageSize < 0) {
+			throw new IllegalArgumentException("Expected non-negative max message size");
+		}
+		this.decoder = decoder;
+		this.maxEntries = maxEntries;
+		this.maxMessageSize = maxMessageSize;
+
+		// load factor at most 0.75
+		int capacity = 1;
+		while(capacity < (1 << 30) && capacity * 3L < maxEntries * 4L) {
+			capacity <<= 1;
+		}
+		this.table = new Entry[capacity];
+	}
+
+	/**
+	 * Decode a complete NDEF message, or get it from the cache.
+	 *
+	 * @param data message bytes
+	 * @return corresponding {@link Message}, shared and read-only
+	 * @throws FormatException if the message cannot be parsed
+	 */
+
+	public Message decode(byte[] data) throws FormatException {
+		return decode(data, 0, data.length);
+	}
+
+	/**
+	 * Decode a complete NDEF message, or get it from the cache. The bytes are copied if the message is cached.
+	 *
+	 * @param data array containing the message
+	 * @param offset start offset
+	 * @param length number of bytes
+	 * @return corresponding {@link Message}, shared and read-only
+	 * @throws FormatException if the message cannot be parsed, or does not span all bytes
+	 */
+
+	public Message decode(byte[] data, int offset, int length) throws FormatException {
+		if(length > maxMessageSize) {
+			synchronized (this) {
+				missCount++;
+			}
+			return new UnmodifiableMessage(decoder.decode(data, offset, length));
+		}
+		int hash = Record.hashBytes(length, data, offset, length);
+
+		synchronized (this) {
+			Entry entry = get(hash, data, offset, length);
+			if(entry != null) {
+				hitCount++;
+
+				return entry.message;
+			}
+			missCount++;
+		}
+
+		Message message = new UnmodifiableMessage(decoder.decode(data, offset, length));
+
+		byte[] copy = new byte[length];
+		System.arraycopy(data, offset, copy, 0, length);
+
+		synchronized (this) {
+			Entry entry = get(hash, data, offset, length);
+			if(entry != null) {
+				// decoded concurrently by another thread
+				return entry.message;
+			}
+			put(new Entry(hash, copy, message));
+		}
+		return message;
+	}
+
+	private Entry get(int hash, byte[] data, int offset, int length) {
+		for(Entry entry = table[hash & (table.length - 1)]; entry != null; entry = entry.next) {
+			if(entry.hash == hash && Record.equalsBytes(entry.data, data, offset, length)) {
+				if(entry != newest) {
+					unlink(entry);
+					link(entry);
+				}
+				return entry;
+			}
+		}
+		return null;
+	}
+
+	private void put(Entry entry) {
+		if(size == maxEntries) {
+			Entry eldest = oldest;
+			unlink(eldest);
+			remove(eldest);
+			size--;
+			evictionCount++;
+		}
+		int index = entry.hash & (table.length - 1);
+		entry.next = table[index];
+		table[index] = entry;
+		link(entry);
+		size++;
+	}
+
+	private void remove(Entry entry) {
+		int index = entry.hash & (table.length - 1);
+		if(table[index] == entry) {
+			table[index] = entry.next;
+		} else {
+			Entry previous = table[index];
+			while(previous.next != entry) {
+				previous = previous.next;
+			}
+			previous.next = entry.next;
+		}
+		entry.next = null;
+	}
+
+	/**
+	 * Add an entry as the most recently used.
+	 */
+
+	private void link(Entry entry) {
+		entry.older = newest;
+		entry.newer = null;
+		if(newest != null) {
+			newest.newer = entry;
+		} else {
+			oldest = entry;
+		}
+		newest = entry;
+	}
+
+	private void unlink(Entry entry) {
+		if(entry.newer != null) {
+			entry.newer.older = entry.older;
+		} else {
+			newest = entry.older;
+		}
+		if(entry.older != null) {
+			entry.older.newer = entry.newer;
+		} else {
+			oldest = entry.newer;
+		}
+		entry.newer = entry.older = null;
+	}
+
+	/**
+	 * Remove all cached messages. The counters are not reset.
+	 */
+
+	public synchronized void clear() {
+		for(int i = 0; i < table.length; i++) {
+			table[i] = null;
+		}
+		newest = oldest = null;
+		size = 0;
+	}
+
+	/**
+	 * Get the number of cached messages.
+	 *
+	 * @return number of messages
+	 */
+
+	public synchronized int size() {
+		return size;
+	}
+
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+
+	public NdefDecoder getDecoder() {
+		return decoder;
+	}
+
+	/**
+	 * Get the number of decodes answered from the cache.
+	 *
+	 * @return number of hits
+	 */
+
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * Get the number of decodes which were not answered from the cache, including failed decodes.
+	 *
+	 * @return number of misses
+	 */
+
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * Get the number of messages evicted to make room for other messages.
+	 *
+	 * @return number of evictions
+	 */
+
+	public synchronized long getEvictionCount() {
+		return evictionCount;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return getClass().getSimpleName() + "[size=" + size + ", maxEntries=" + maxEntries + ", hits=" + hitCount + ", misses=" + missCount + ", evictions=" + evictionCount + "]";
+	}
+}
@@ -0,0 +1,748 @@
+/***************************************************************************
+ *
+ * This file is part of the 'NDEF Tools for Android' project at
+ * http://code.google.com/p/ndef-tools-for-android/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ****************************************************************************/
+
+package com.github.skjolber.ndef;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.github.skjolber.ndef.DecodeResult.Status;
+import com.github.skjolber.ndef.externaltype.ExternalTypeRecord;
+import com.github.skjolber.ndef.wellknown.TextRecord;
+import com.github.skjolber.ndef.wellknown.UriRecord;
+
+import android.nfc.FormatException;
+import android.nfc.NdefMessage;
+import android.nfc.NdefRecord;
+
+/**
+ *
+ * Single-pass decoder from NDEF message bytes directly to {@link Record}s.<br><br>
+ *
+ * Record headers are validated by {@link NdefParser}, and the type and payload fields are passed to the record
+ * parsers as ranges of the input array, so that no intermediate {@link NdefMessage} or {@link NdefRecord} objects
+ * are created. Record types are resolved using the decoder's own {@link RecordParserRegistry}, also for nested
+ * messages.<br><br>
+ *
+ * Messages nested within container records are decoded in the same pass, leniently with regards to the MB and ME
+ * flags, without modifying or copying the input. Only the payload of chunked records is copied, as it must be flattened.<br><br>
+ *
+ * Instances are immutable, and so can be shared between threads.
+ *
+ * @author Thomas Rorvik Skjolberg (skjolber@gmail.com)
+ *
+ */
+
+public class NdefDecoder {
+
+	/**
+	 * Level of input validation.
+	 */
+
+	public static enum Strictness {
+		/** validate record headers like {@link NdefMessage} does */
+		STRICT,
+		/** as strict, but ignore the MB and ME flags, so that the message spans all input bytes */
+		LENIENT,
+		/** trusted input, only check that lengths are within bounds and that chunked records are complete */
+		TRUSTED;
+	}
+
+	private static final NdefDecoder DEFAULT = new NdefDecoder();
+
+	private static final Status[] STATUSES = Status.values();
+
+	/**
+	 * Get the decoder used by the static parse methods, like {@link Message#parseNdefMessage(byte[])}.
+	 *
+	 * @return decoder with the default registry, strict validation and the same payload limit as {@link NdefRecord}
+	 */
+
+	public static NdefDecoder getDefault() {
+		return DEFAULT;
+	}
+
+	private final RecordParserRegistry registry;
+	private final Strictness strictness;
+	private final int maxPayloadSize;
+	private final boolean preserveEncoding;
+
+	/**
+	 * Create a decoder with the default registry, strict validation and the same payload limit as {@link NdefRecord}.
+	 */
+
+	public NdefDecoder() {
+		this(RecordParserRegistry.getDefault());
+	}
+
+	/**
+	 * Create a decoder with strict validation and the same payload limit as {@link NdefRecord}.
+	 *
+	 * @param registry record parsers
+	 */
+
+	public NdefDecoder(RecordParserRegistry registry) {
+		this(registry, Strictness.STRICT, NdefParser.MAX_PAYLOAD_SIZE);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param registry record parsers
+	 * @param strictness input validation level
+	 * @param maxPayloadSize max payload size of a single record, in bytes
+	 */
+
+	public NdefDecoder(RecordParserRegistry registry, Strictness strictness, int maxPayloadSize) {
+		this(registry, strictness, maxPayloadSize, false);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param registry record parsers
+	 * @param strictness input validation level
+	 * @param maxPayloadSize max payload size of a single record, in bytes
+	 * @param preserveEncoding if true, decoded records keep a copy of the bytes they were decoded from, so that
+	 * records which are not changed are written verbatim. Not supported for chunked records and records which contain other records.
+	 */
+
+	public NdefDecoder(RecordParserRegistry registry, Strictness strictness, int maxPayloadSize, boolean preserveEncoding) {
+		if(registry == null) {
+			throw new IllegalArgumentException("Expected registry");
+		}
+		if(strictness == null) {
+			throw new IllegalArgumentException("Expected strictness");
+		}
+		if(maxPayloadSize < 0) {
+			throw new IllegalArgumentException("Expected non-negative max payload size");
+		}
+		this.registry = registry;
+		this.strictness = strictness;
+		this.maxPayloadSize = maxPayloadSize;
+		this.preserveEncoding = preserveEncoding;
+	}
+
+	public RecordParserRegistry getRegistry() {
+		return registry;
+	}
+
+	public Strictness getStrictness() {
+		return strictness;
+	}
+
+	public int getMaxPayloadSize() {
+		return maxPayloadSize;
+	}
+
+	/**
+	 * Check whether decoded records keep the bytes they were decoded from.
+	 *
+	 * @return true if the original bytes are kept
+	 * @see Record#hasOriginalEncoding()
+	 */
+
+	public boolean isPreserveEncoding() {
+		return preserveEncoding;
+	}
+
+	/**
+	 * Decode a complete NDEF message.
+	 *
+	 * @param data message bytes
+	 * @return corresponding {@link Message}
+	 * @throws FormatException if the message cannot be parsed
+	 */
+
+	public Message decode(byte[] data) throws FormatException {
+		return decode(data, 0, data.length);
+	}
+
+	/**
+	 * Decode a complete NDEF message.
+	 *
+	 * @param data array containing the message
+	 * @param offset start offset
+	 * @param length number of bytes
+	 * @return corresponding {@link Message}
+	 * @throws FormatException if the message cannot be parsed, or does not span all bytes
+	 */
+
+	public Message decode(byte[] data, int offset, int length) throws FormatException {
+		return decode(data, offset, length, null);
+	}
+
+	/**
+	 * Decode a complete NDEF message spanning from the buffer's position to its limit. Heap buffers are decoded
+	 * directly from the backing array, direct buffers are copied once. On success, the position is set to the limit.
+	 *
+	 * @param buffer buffer containing the message
+	 * @return corresponding {@link Message}
+	 * @throws FormatException if the message cannot be parsed, or does not span all remaining bytes
+	 */
+
+	public Message decode(ByteBuffer buffer) throws FormatException {
+		Message message;
+		if(buffer.hasArray()) {
+			message = decode(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+		} else {
+			byte[] data = new byte[buffer.remaining()];
+			buffer.duplicate().get(data);
+
+			message = decode(data, 0, data.length);
+		}
+		buffer.position(buffer.limit());
+
+		return message;
+	}
+
+	/**
+	 * Decode only the selected records of a complete NDEF message. The record headers are still validated, but
+	 * the other records are skipped without being parsed. Nested messages are decoded as a part of
+	 * the record which contains them, so containers must be selected in order for their nested records to be decoded.
+	 *
+	 * @param data array containing the message
+	 * @param offset start offset
+	 * @param length number of bytes
+	 * @param selector record selector, or null for all records
+	 * @return corresponding {@link Message}, holding only the selected records
+	 * @throws FormatException if the message cannot be parsed, or does not span all bytes
+	 */
+
+	public Message decode(byte[] data, int offset, int length, RecordSelector selector) throws FormatException {
+		Message message = new Message();
+		int end = offset + length;
+		int position;
+		try {
+			position = NdefParser.parse(data, offset, end, new RecordHandler(message, selector), strictness == Strictness.LENIENT, false, strictness != Strictness.TRUSTED, maxPayloadSize);
+		} catch(FormatException | IllegalArgumentException e) {
+			checkHeaders(data, offset, end);
+			throw e;
+		}
+		if(position != end) {
+			throw new FormatException("trailing data");
+		}
+		return message;
+	}
+
+	/**
+	 * Check the record headers of a message whose records have been rejected while parsing. {@link NdefMessage} checks 
+	 * all headers before parsing any records, so invalid headers take precedence over invalid record contents.
+	 *
+	 * @throws FormatException if the headers are invalid, or do not span all bytes
+	 */
+
+	private void checkHeaders(byte[] data, int offset, int end) throws FormatException {
+		long result = NdefParser.scan(data, offset, end, strictness == Strictness.LENIENT, strictness != Strictness.TRUSTED, maxPayloadSize);
+		Status status = STATUSES[(int)(result >>> 32)];
+		int position = (int)result;
+		if(status != Status.OK) {
+			throw new FormatException(status.getMessage() + " at offset " + position);
+		}
+		if(position != end) {
+			throw new FormatException(Status.TRAILING_DATA.getMessage() + " at offset " + position);
+		}
+	}
+
+	/**
+	 * Decode a complete NDEF message, without throwing exceptions for invalid input.
+	 *
+	 * @param data message bytes
+	 * @return result holding either the message or the reason why decoding failed
+	 */
+
+	public DecodeResult tryDecode(byte[] data) {
+		return tryDecode(data, 0, data.length);
+	}
+
+	/**
+	 * Decode a complete NDEF message, without throwing exceptions for invalid input.<br><br>
+	 *
+	 * The record headers (including those of nested messages) are checked in a separate pass which does not create any
+	 * objects, so junk input is rejected cheaply. The contents of records of the built-in types are then checked 
+	 * without parsing, and invalid contents are reported as {@link Status#INVALID_RECORD}, as are records rejected by 
+	 * other registered parsers using {@link FormatException}. Other exceptions thrown by parsers are not caught.
+	 *
+	 * @param data array containing the message
+	 * @param offset start offset
+	 * @param length number of bytes
+	 * @return result holding either the message or the reason why decoding failed
+	 */
+
+	public DecodeResult tryDecode(byte[] data, int offset, int length) {
+		int end = offset + length;
+
+		long result = NdefParser.scan(data, offset, end, strictness == Strictness.LENIENT, strictness != Strictness.TRUSTED, maxPayloadSize);
+		Status status = STATUSES[(int)(result >>> 32)];
+		int position = (int)result;
+		if(status != Status.OK) {
+			return DecodeResult.failure(status, position);
+		}
+		if(position != end) {
+			return DecodeResult.failure(Status.TRAILING_DATA, position);
+		}
+
+		// check the record contents, so that the built-in record parsers do not throw exceptions
+		CheckHandler checkHandler = checkRecords(data, offset, end, strictness == Strictness.LENIENT, -1);
+		if(checkHandler == null) {
+			return DecodeResult.failure(Status.INVALID_RECORD, offset);
+		}
+		if(checkHandler.invalidTypeOffset != -1) {
+			return DecodeResult.failure(Status.INVALID_RECORD, checkHandler.invalidTypeOffset);
+		}
+
+		Message message = new Message();
+		RecordHandler handler = new RecordHandler(message);
+		try {
+			NdefParser.parse(data, offset, end, handler, strictness == Strictness.LENIENT, false, strictness != Strictness.TRUSTED, maxPayloadSize);
+		} catch(FormatException e) {
+			// rejected by a registered parser
+			return DecodeResult.failure(Status.INVALID_RECORD, handler.typeOffset);
+		}
+		return DecodeResult.success(message);
+	}
+
+	/**
+	 * Check a message nested within the payload of another record, without throwing exceptions. 
+	 * The headers and contents are checked like {@link #decodeNested(byte[], int, int)} would parse them.
+	 *
+	 * @param data array containing the message
+	 * @param offset start offset
+	 * @param end end offset (exclusive)
+	 * @param container the kind of the containing record, as in {@link BuiltInRecordParser}
+	 * @return the number of records, or -1 if the message is not valid
+	 */
+
+	int checkNested(byte[] data, int offset, int end, int container) {
+		long result = NdefParser.scan(data, offset, end, true, strictness != Strictness.TRUSTED, maxPayloadSize);
+		if(STATUSES[(int)(result >>> 32)] != Status.OK || (int)result != end) {
+			return -1;
+		}
+		CheckHandler handler = checkRecords(data, offset, end, true, container);
+		if(handler == null || !handler.isValid()) {
+			return -1;
+		}
+		return handler.count;
+	}
+
+	/**
+	 * Check the record contents of a message with valid headers.
+	 *
+	 * @return the handler, or null if the headers could not be parsed after all
+	 */
+
+	private CheckHandler checkRecords(byte[] data, int offset, int end, boolean nested, int container) {
+		CheckHandler handler = new CheckHandler(container);
+		try {
+			NdefParser.parse(data, offset, end, handler, nested, false, strictness != Strictness.TRUSTED, maxPayloadSize);
+		} catch(FormatException e) {
+			// not expected, the headers have been scanned
+			return null;
+		}
+		return handler;
+	}
+
+	/**
+	 * Decode a message nested within the payload of another record. MB and ME flags are ignored.
+	 *
+	 * @param data array containing the message
+	 * @param offset start offset
+	 * @param length number of bytes
+	 * @return corresponding {@link Message}, which might be empty
+	 * @throws FormatException if the message cannot be parsed
+	 */
+
+	Message decodeNested(byte[] data, int offset, int length) throws FormatException {
+		Message message = new Message();
+		NdefParser.parse(data, offset, offset + length, new RecordHandler(message), true, false, strictness != Strictness.TRUSTED, maxPayloadSize);
+		return message;
+	}
+
+	/**
+	 * Decode a single record nested within the payload of another record. MB and ME flags are ignored.
+	 *
+	 * @param data array containing the record
+	 * @param offset start offset
+	 * @param length number of bytes
+	 * @return corresponding {@link Record}
+	 * @throws FormatException if the record cannot be parsed, or if zero or more than one record
+	 */
+
+	Record decodeRecord(byte[] data, int offset, int length) throws FormatException {
+		List<Record> records = new ArrayList<Record>(1);
+		NdefParser.parse(data, offset, offset + length, new RecordHandler(records), true, false, strictness != Strictness.TRUSTED, maxPayloadSize);
+		if(records.size() != 1) {
+			throw new FormatException("Single record expected at offset " + offset);
+		}
+		return records.get(0);
+	}
+
+	/**
+	 * Decode a complete NDEF message into an existing {@link Message}, reusing its records where possible.<br><br>
+	 *
+	 * Records are matched by position. If the existing record at a position is a {@link UriRecord}, {@link TextRecord}
+	 * or {@link MimeRecord} and the new record is of the same type, the existing record is refilled in place, also keeping
+	 * field values (strings, locale, id and data arrays) which have not changed. Otherwise the record is replaced.
+	 * Superfluous records are removed. Note that the id and data arrays of reused records are overwritten
+	 * if they have the same length as the new values.<br><br>
+	 *
+	 * If an exception is thrown, the contents of the target message are undefined.
+	 *
+	 * @param target message to decode into
+	 * @param data array containing the message
+	 * @param offset start offset
+	 * @param length number of bytes
+	 * @return the target message
+	 * @throws FormatException if the message cannot be parsed, or does not span all bytes
+	 * @throws UnsupportedOperationException if the target is a shared message from {@link NdefDecodeCache}
+	 */
+
+	public Message decodeInto(Message target, byte[] data, int offset, int length) throws FormatException {
+		if(target instanceof UnmodifiableMessage) {
+			// refilling would modify the shared records in place
+			throw new UnsupportedOperationException();
+		}
+		int end = offset + length;
+		ReusingRecordHandler handler = new ReusingRecordHandler(target);
+		int position;
+		try {
+			position = NdefParser.parse(data, offset, end, handler, strictness == Strictness.LENIENT, false, strictness != Strictness.TRUSTED, maxPayloadSize);
+		} catch(FormatException | IllegalArgumentException e) {
+			checkHeaders(data, offset, end);
+			throw e;
+		}
+		if(position != end) {
+			throw new FormatException("trailing data");
+		}
+		for(int i = target.size() - 1; i >= handler.count; i--) {
+			target.remove(i);
+		}
+		return target;
+	}
+
+	/**
+	 * Decode a single NDEF message, appending the records to the given list. The message always ends with the ME flag,
+	 * as it might be followed by other messages.
+	 *
+	 * @param data array containing the message
+	 * @param offset start offset
+	 * @param end end offset (exclusive)
+	 * @param records target list
+	 * @return the offset just after the last record of the message
+	 * @throws FormatException if the message cannot be parsed
+	 */
+
+	int decodeRecords(byte[] data, int offset, int end, List<? super Record> records) throws FormatException {
+		return NdefParser.parse(data, offset, end, new RecordHandler(records), false, false, strictness != Strictness.TRUSTED, maxPayloadSize);
+	}
+
+	/**
+	 * Parse a record directly from its fields. The record id is not set.
+	 *
+	 * @param tnf record TNF
+	 * @param type array containing the record type
+	 * @param typeOffset type start offset
+	 * @param typeLength type length
+	 * @param payload array containing the record payload
+	 * @param payloadOffset payload start offset
+	 * @param payloadLength payload length
+	 * @return corresponding {@link Record} subclass - {@link UnsupportedRecord} is not known.
+	 * @throws FormatException if known record type cannot be parsed
+	 */
+
+	public Record parse(short tnf, byte[] type, int typeOffset, int typeLength, byte[] payload, int payloadOffset, int payloadLength) throws FormatException {
+		Record record = null;
+		switch (tnf) {
+		case NdefRecord.TNF_EMPTY: {
+			record = EmptyRecord.parse(type, typeOffset, typeLength, payload, payloadOffset, payloadLength);
+
+			break;
+		}
+		case NdefRecord.TNF_WELL_KNOWN: {
+			RecordParser parser = registry.get(tnf, type, typeOffset, typeLength);
+			if(parser != null) {
+				record = parser.parse(this, type, typeOffset, typeLength, payload, payloadOffset, payloadLength);
+			}
+
+			break;
+		}
+		case NdefRecord.TNF_MIME_MEDIA: {
+			RecordParser parser = registry.get(tnf, type, typeOffset, typeLength);
+			if(parser != null) {
+				record = parser.parse(this, type, typeOffset, typeLength, payload, payloadOffset, payloadLength);
+			} else {
+				record = MimeRecord.parse(type, typeOffset, typeLength, payload, payloadOffset, payloadLength);
+			}
+
+			break;
+		}
+		case NdefRecord.TNF_ABSOLUTE_URI: {
+			record = AbsoluteUriRecord.parse(type, typeOffset, typeLength, payload, payloadOffset, payloadLength);
+
+			break;
+		}
+		case NdefRecord.TNF_EXTERNAL_TYPE: {
+			record = ExternalTypeRecord.parse(this, type, typeOffset, typeLength, payload, payloadOffset, payloadLength);
+
+			break;
+		}
+		case NdefRecord.TNF_UNKNOWN: {
+			record = UnknownRecord.parse(type, typeOffset, typeLength, payload, payloadOffset, payloadLength);
+
+			break;
+		}
+		}
+
+		if(record == null) { // pass through
+			record = UnsupportedRecord.parse(tnf, type, typeOffset, typeLength, payload, payloadOffset, payloadLength);
+		}
+
+		return record;
+	}
+
+	/**
+	 * Parse a record directly from its fields, reusing an existing record if possible. The record id is not set.
+	 *
+	 * @param target record to reuse
+	 * @return the target or a new {@link Record}
+	 * @throws FormatException if known record type cannot be parsed
+	 */
+
+	private Record parse(short tnf, byte[] type, int typeOffset, int typeLength, byte[] payload, int payloadOffset, int payloadLength, Record target) throws FormatException {
+		Record record = null;
+		if(tnf == NdefRecord.TNF_WELL_KNOWN) {
+			RecordParser parser = registry.get(tnf, type, typeOffset, typeLength);
+			if(parser instanceof BuiltInRecordParser) {
+				record = ((BuiltInRecordParser)parser).parse(payload, payloadOffset, payloadLength, target);
+			}
+		} else if(tnf == NdefRecord.TNF_MIME_MEDIA) {
+			if(target.getClass() == MimeRecord.class && registry.get(tnf, type, typeOffset, typeLength) == null) {
+				record = MimeRecord.parse(type, typeOffset, typeLength, payload, payloadOffset, payloadLength, (MimeRecord)target);
+			}
+		}
+		if(record == null) {
+			record = parse(tnf, type, typeOffset, typeLength, payload, payloadOffset, payloadLength);
+		}
+		return record;
+	}
+
+	/**
+	 * Keep the bytes a record was decoded from, if supported. Chunked records are not supported, as their
+	 * payload is not contiguous.
+	 *
+	 * @param record decoded record
+	 * @param data array containing the record header, type and id
+	 * @param recordOffset record start offset
+	 * @param payload array containing the payload
+	 * @param payloadEnd payload end offset (exclusive)
+	 */
+
+	void preserveEncoding(Record record, byte[] data, int recordOffset, byte[] payload, int payloadEnd) {
+		if(payload == data && record.isOriginalEncodingSupported()) {
+			record.setOriginalEncoding(Arrays.copyOfRange(data, recordOffset, payloadEnd));
+		} else {
+			record.clearOriginalEncoding();
+		}
+	}
+
+	/**
+	 * Handler which parses each record into a {@link Record}.
+	 */
+
+	private class RecordHandler extends NdefParser.RecordOffsetHandler {
+
+		private final List<? super Record> records;
+		private final RecordSelector selector;
+
+		/** type offset of the current record */
+		private int typeOffset = -1;
+
+		public RecordHandler(List<? super Record> records) {
+			this(records, null);
+		}
+
+		public RecordHandler(List<? super Record> records, RecordSelector selector) {
+			this.records = records;
+			this.selector = selector;
+		}
+
+		@Override
+		public void onRecord(short tnf, byte[] data, int typeOffset, int typeLength, int idOffset, int idLength, byte[] payload, int payloadOffset, int payloadLength) throws FormatException {
+			this.typeOffset = typeOffset;
+
+			if(selector != null && !selector.select(tnf, data, typeOffset, typeLength)) {
+				return;
+			}
+
+			Record record = parse(tnf, data, typeOffset, typeLength, payload, payloadOffset, payloadLength);
+			if(idLength > 0) {
+				record.setId(Arrays.copyOfRange(data, idOffset, idOffset + idLength));
+			}
+			if(preserveEncoding) {
+				preserveEncoding(record, data, recordOffset, payload, payloadOffset + payloadLength);
+			}
+			records.add(record);
+		}
+	}
+
+	/**
+	 * Handler which checks the contents of each record of a built-in type, and the records allowed within
+	 * the containing record, without parsing. Records of other registered types are left to their parsers.
+	 */
+
+	private class CheckHandler extends DefaultNdefHandler {
+
+		/** kind of the record containing the message, or -1 */
+		private final int container;
+
+		/** number of records */
+		private int count;
+		/** number of target records (generic control) or alternative carriers (handover request) */
+		private int required;
+		/** true if a record has a parser which cannot be checked */
+		private boolean unchecked;
+
+		/** type offset of the first invalid record, or -1 */
+		private int invalidTypeOffset = -1;
+
+		public CheckHandler(int container) {
+			this.container = container;
+		}
+
+		@Override
+		public void onRecord(short tnf, byte[] data, int typeOffset, int typeLength, int idOffset, int idLength, byte[] payload, int payloadOffset, int payloadLength) {
+			if(invalidTypeOffset != -1) {
+				return;
+			}
+			count++;
+
+			int kind = -1;
+			if(tnf == NdefRecord.TNF_WELL_KNOWN || tnf == NdefRecord.TNF_MIME_MEDIA || tnf == NdefRecord.TNF_EXTERNAL_TYPE) {
+				RecordParser parser = registry.get(tnf, data, typeOffset, typeLength);
+				if(parser instanceof BuiltInRecordParser) {
+					BuiltInRecordParser builtInRecordParser = (BuiltInRecordParser)parser;
+					if(!builtInRecordParser.isValid(NdefDecoder.this, payload, payloadOffset, payloadLength)) {
+						invalidTypeOffset = typeOffset;
+						return;
+					}
+					kind = builtInRecordParser.getKind();
+				} else if(parser != null) {
+					unchecked = true;
+					return;
+				}
+			}
+
+			switch(container) {
+				case BuiltInRecordParser.GENERIC_CONTROL : {
+					if(kind == BuiltInRecordParser.GC_TARGET) {
+						required++;
+					} else if(kind != BuiltInRecordParser.GC_ACTION && kind != BuiltInRecordParser.GC_DATA) {
+						invalidTypeOffset = typeOffset;
+					}
+					break;
+				}
+				case BuiltInRecordParser.GC_TARGET : {
+					if(kind != BuiltInRecordParser.TEXT && kind != BuiltInRecordParser.URI) {
+						invalidTypeOffset = typeOffset;
+					}
+					break;
+				}
+				case BuiltInRecordParser.HANDOVER_REQUEST : {
+					if(kind == BuiltInRecordParser.ALTERNATIVE_CARRIER) {
+						required++;
+					}
+					break;
+				}
+				default : {
+					// any record
+				}
+			}
+		}
+
+		public boolean isValid() {
+			if(invalidTypeOffset != -1) {
+				return false;
+			}
+			if(unchecked) {
+				return true;
+			}
+			switch(container) {
+				case BuiltInRecordParser.GENERIC_CONTROL :
+				case BuiltInRecordParser.HANDOVER_REQUEST : return required > 0;
+				default : return true;
+			}
+		}
+	}
+
+	/**
+	 * Handler which parses each record into the record at the same position in an existing message.
+	 */
+
+	private class ReusingRecordHandler extends NdefParser.RecordOffsetHandler {
+
+		private final Message target;
+
+		/** number of records parsed */
+		private int count;
+
+		public ReusingRecordHandler(Message target) {
+			this.target = target;
+		}
+
+		@Override
+		public void onRecord(short tnf, byte[] data, int typeOffset, int typeLength, int idOffset, int idLength, byte[] payload, int payloadOffset, int payloadLength) throws FormatException {
+			Record previous = count < target.size() ? target.get(count) : null;
+
+			Record record;
+			if(previous != null) {
+				record = parse(tnf, data, typeOffset, typeLength, payload, payloadOffset, payloadLength, previous);
+			} else {
+				record = parse(tnf, data, typeOffset, typeLength, payload, payloadOffset, payloadLength);
+			}
+
+			if(idLength > 0) {
+				byte[] id = record.getId();
+				if(id != null && id.length == idLength) {
+					System.arraycopy(data, idOffset, id, 0, idLength);
+				} else {
+					record.setId(Arrays.copyOfRange(data, idOffset, idOffset + idLength));
+				}
+			} else {
+				record.setId(null);
+			}
+			if(preserveEncoding) {
+				preserveEncoding(record, data, recordOffset, payload, payloadOffset + payloadLength);
+			} else {
+				// reused records might still hold their previous bytes
+				record.clearOriginalEncoding();
+			}
+
+			if(previous != null) {
+				if(record != previous) {
+					target.set(count, record);
+				}
+			} else {
+				target.add(record);
+			}
+			count++;
+		}
+	}
+}
@@ -0,0 +1,287 @@
+/***************************************************************************
+ *
+ * This file is part of the 'NDEF Tools for Android' project at
+ * http://code.google.com/p/ndef-tools-for-android/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ****************************************************************************/
+
+package com.github.skjolber.ndef;
+
+import java.util.Arrays;
+
+import android.nfc.FormatException;
+
+/**
+ *
+ * Incremental NDEF parser for data which arrives in fragments, for example from page reads or APDU responses.<br><br>
+ *
+ * Bytes are passed in using {@link #feed(byte[], int, int)}, and each record is reported to the {@link NdefHandler}
+ * as soon as all of its bytes have arrived, like {@link NdefParser} does. Parser state is kept between calls, so that
+ * no byte is parsed twice. Only the bytes of the current (incomplete) record are buffered. One or more back-to-back
+ * messages are supported.<br><br>
+ *
+ * Once a {@link FormatException} has been thrown, the parser must be {@link #reset()} before it is used again.
+ * This class is not thread-safe.
+ *
+ * @author Thomas Rorvik Skjolberg (skjolber@gmail.com)
+ *
+ */
+
+public class NdefFeedParser {
+
+	private static final int MINIMUM_HEADER_LENGTH = 3;
+
+	private static final byte FLAG_ME = (byte) 0x40;
+	private static final byte FLAG_CF = (byte) 0x20;
+	private static final byte FLAG_SR = (byte) 0x10;
+	private static final byte FLAG_IL = (byte) 0x08;
+
+	private final NdefHandler handler;
+
+	/** unconsumed bytes */
+	private byte[] buffer = new byte[256];
+	private int start;
+	private int limit;
+
+	private int bytesNeeded = MINIMUM_HEADER_LENGTH;
+
+	// message state
+	private int count;
+	private int messages;
+
+	// chunked record state
+	private boolean inChunk;
+	private short chunkTnf;
+	private final byte[] chunkTypeId = new byte[255 + 255];
+	private int chunkTypeLength;
+	private int chunkIdLength;
+	private byte[] chunkPayload;
+	private int chunkPayloadLength;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param handler handler to report messages and records to
+	 */
+
+	public NdefFeedParser(NdefHandler handler) {
+		this.handler = handler;
+	}
+
+	/**
+	 * Add bytes to the parser.
+	 *
+	 * @param data bytes to add
+	 * @throws FormatException if the data cannot be parsed, or if the handler aborts parsing
+	 */
+
+	public void feed(byte[] data) throws FormatException {
+		feed(data, 0, data.length);
+	}
+
+	/**
+	 * Add bytes to the parser. The bytes are copied, so the array may be reused after the call.
+	 *
+	 * @param data array containing the bytes to add
+	 * @param offset start offset
+	 * @param length number of bytes
+	 * @throws FormatException if the data cannot be parsed, or if the handler aborts parsing
+	 */
+
+	public void feed(byte[] data, int offset, int length) throws FormatException {
+		if(length == 0) {
+			return;
+		}
+		if(limit + length > buffer.length) {
+			if(start > 0) {
+				// compact
+				System.arraycopy(buffer, start, buffer, 0, limit - start);
+				limit -= start;
+				start = 0;
+			}
+			if(limit + length > buffer.length) {
+				buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, limit + length));
+			}
+		}
+		System.arraycopy(data, offset, buffer, limit, length);
+		limit += length;
+
+		if(limit - start >= bytesNeeded) {
+			parse();
+		} else {
+			bytesNeeded -= length;
+		}
+	}
+
+	private void parse() throws FormatException {
+		while(true) {
+			int available = limit - start;
+			if(available < MINIMUM_HEADER_LENGTH) {
+				bytesNeeded = MINIMUM_HEADER_LENGTH - available;
+
+				break;
+			}
+
+			byte flag = buffer[start];
+
+			NdefParser.checkFlags(flag, false, count, inChunk);
+
+			boolean me = (flag & FLAG_ME) != 0;
+			boolean cf = (flag & FLAG_CF) != 0;
+			boolean sr = (flag & FLAG_SR) != 0;
+			boolean il = (flag & FLAG_IL) != 0;
+			short tnf = (short)(flag & 0x07);
+
+			int headerLength = 2 + (sr ? 1 : 4) + (il ? 1 : 0);
+			if(available < headerLength) {
+				bytesNeeded = headerLength - available;
+
+				break;
+			}
+
+			int index = start + 1;
+			int typeLength = buffer[index++] & 0xFF;
+			long payloadLength;
+			if(sr) {
+				payloadLength = buffer[index++] & 0xFF;
+			} else {
+				payloadLength = ((long)(buffer[index] & 0xFF) << 24) | ((buffer[index + 1] & 0xFF) << 16) | ((buffer[index + 2] & 0xFF) << 8) | (buffer[index + 3] & 0xFF);
+				index += 4;
+			}
+			int idLength = il ? (buffer[index++] & 0xFF) : 0;
+
+			if (inChunk && typeLength != 0) {
+				throw new FormatException("expected zero-length type in non-leading chunk");
+			}
+			if (cf && !inChunk && typeLength == 0 && tnf != android.nfc.NdefRecord.TNF_UNKNOWN) {
+				throw new FormatException("expected non-zero type length in first chunk");
+			}
+			NdefParser.ensureSanePayloadSize(payloadLength);
+
+			long recordLength = headerLength + typeLength + idLength + payloadLength;
+			if(available < recordLength) {
+				bytesNeeded = (int)(recordLength - available);
+
+				break;
+			}
+
+			// complete record
+			int typeOffset = index;
+			int idOffset = typeOffset + typeLength;
+			int payloadOffset = idOffset + idLength;
+
+			start += (int)recordLength;
+
+			if(cf || inChunk) {
+				if(!inChunk) {
+					// first chunk, keep type and id as the buffer is reused
+					chunkTnf = tnf;
+					System.arraycopy(buffer, typeOffset, chunkTypeId, 0, typeLength + idLength);
+					chunkTypeLength = typeLength;
+					chunkIdLength = idLength;
+					chunkPayload = new byte[Math.max(16, (int)payloadLength)];
+					chunkPayloadLength = 0;
+				}
+				NdefParser.ensureSanePayloadSize(chunkPayloadLength + payloadLength);
+				if(chunkPayloadLength + payloadLength > chunkPayload.length) {
+					chunkPayload = Arrays.copyOf(chunkPayload, Math.max(chunkPayload.length * 2, chunkPayloadLength + (int)payloadLength));
+				}
+				System.arraycopy(buffer, payloadOffset, chunkPayload, chunkPayloadLength, (int)payloadLength);
+				chunkPayloadLength += (int)payloadLength;
+
+				if(cf) {
+					// more chunks to come
+					inChunk = true;
+					continue;
+				}
+				inChunk = false;
+
+				byte[] payload = chunkPayload;
+				chunkPayload = null;
+
+				onRecord(chunkTnf, chunkTypeId, 0, chunkTypeLength, chunkTypeLength, chunkIdLength, payload, 0, chunkPayloadLength);
+			} else {
+				onRecord(tnf, buffer, typeOffset, typeLength, idOffset, idLength, buffer, payloadOffset, (int)payloadLength);
+			}
+
+			if(me) {
+				handler.onMessageEnd();
+
+				count = 0;
+				messages++;
+			}
+		}
+	}
+
+	private void onRecord(short tnf, byte[] data, int typeOffset, int typeLength, int idOffset, int idLength, byte[] payload, int payloadOffset, int payloadLength) throws FormatException {
+		String error = NdefParser.validateTnf(tnf, typeLength, idLength, payloadLength);
+		if (error != null) {
+			throw new FormatException(error);
+		}
+		if(count == 0) {
+			handler.onMessageStart();
+		}
+		handler.onRecord(tnf, data, typeOffset, typeLength, idOffset, idLength, payload, payloadOffset, payloadLength);
+		count++;
+
+		NdefParser.parseNestedMessage(tnf, data, typeOffset, typeLength, payload, payloadOffset, payloadLength, handler);
+	}
+
+	/**
+	 * Get the minimum number of bytes needed before the next record can be reported. At a message boundary,
+	 * this is the size of the smallest possible record header.
+	 *
+	 * @return number of bytes, at least 1
+	 */
+
+	public int getBytesNeeded() {
+		return bytesNeeded;
+	}
+
+	/**
+	 * Check whether the parser is at the end of a message, i.e. at least one message is complete and there is no
+	 * partial record or message pending.
+	 *
+	 * @return true if at the end of a message
+	 */
+
+	public boolean isMessageComplete() {
+		return messages > 0 && count == 0 && !inChunk && start == limit;
+	}
+
+	/**
+	 * Get the number of complete messages.
+	 *
+	 * @return number of messages
+	 */
+
+	public int getMessageCount() {
+		return messages;
+	}
+
+	/**
+	 * Discard all state, so that parsing can start over.
+	 */
+
+	public void reset() {
+		start = 0;
+		limit = 0;
+		bytesNeeded = MINIMUM_HEADER_LENGTH;
+		count = 0;
+		messages = 0;
+		inChunk = false;
+		chunkPayload = null;
+	}
+}
@@ -0,0 +1,86 @@
+/***************************************************************************
+ *
+ * This file is part of the 'NDEF Tools for Android' project at
+ * http://code.google.com/p/ndef-tools-for-android/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ****************************************************************************/
+
+package com.github.skjolber.ndef;
+
+import android.nfc.FormatException;
+
+/**
+ *
+ * Callback interface for {@link NdefParser}, in the style of SAX.<br><br>
+ *
+ * Record fields are passed as ranges of arrays which belong to the parser; they are only valid for the duration
+ * of the call and must not be modified. Throw a {@link FormatException} to abort parsing.
+ *
+ * @author Thomas Rorvik Skjolberg (skjolber@gmail.com)
+ *
+ * @see DefaultNdefHandler
+ */
+
+public interface NdefHandler {
+
+	/**
+	 * Start of a top-level message.
+	 *
+	 * @throws FormatException to abort parsing
+	 */
+
+	void onMessageStart() throws FormatException;
+
+	/**
+	 * A logical record, i.e. chunked records are reported once, with the payload of all chunks.
+	 *
+	 * @param tnf record TNF
+	 * @param data array containing the type and id fields
+	 * @param typeOffset type start offset
+	 * @param typeLength type length
+	 * @param idOffset id start offset
+	 * @param idLength id length
+	 * @param payload array containing the payload field
+	 * @param payloadOffset payload start offset
+	 * @param payloadLength payload length
+	 * @throws FormatException to abort parsing
+	 */
+
+	void onRecord(short tnf, byte[] data, int typeOffset, int typeLength, int idOffset, int idLength, byte[] payload, int payloadOffset, int payloadLength) throws FormatException;
+
+	/**
+	 * Start of the message nested within the payload of the previous record.
+	 *
+	 * @throws FormatException to abort parsing
+	 */
+
+	void onNestedMessageStart() throws FormatException;
+
+	/**
+	 * End of the message nested within the payload of a record.
+	 *
+	 * @throws FormatException to abort parsing
+	 */
+
+	void onNestedMessageEnd() throws FormatException;
+
+	/**
+	 * End of a top-level message.
+	 *
+	 * @throws FormatException to abort parsing
+	 */
+
+	void onMessageEnd() throws FormatException;
+}
@@ -0,0 +1,409 @@
+/***************************************************************************
+ *
+ * This file is part of the 'NDEF Tools for Android' project at
+ * http://code.google.com/p/ndef-tools-for-android/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ****************************************************************************/
+
+package com.github.skjolber.ndef;
+
+import java.util.Arrays;
+
+import com.github.skjolber.ndef.DecodeResult.Status;
+
+import android.nfc.FormatException;
+
+/**
+ *
+ * Index of the records of an NDEF message, built by walking only the record headers.<br><br>
+ *
+ * Each logical record (chunked records count as one) is stored as a fixed number of ints, in the order the records
+ * appear in the message. Records within messages nested in Smart Poster, Handover Select, Handover Request and Generic
+ * Control (including its target, action and data) records follow directly after their container record. The index
+ * gives random access to any record, and the record count and byte ranges needed for splitting a large message
+ * into parts, without decoding anything.<br><br>
+ *
+ * Instances are not modified once scanned, and so can be shared between threads as long as the underlying array is not
+ * modified.
+ *
+ * @author Thomas Rorvik Skjolberg (skjolber@gmail.com)
+ *
+ */
+
+public final class NdefIndex {
+
+	private static final Status[] STATUSES = Status.values();
+
+	private static final int RECORD_OFFSET = 0;
+	private static final int RECORD_END = 1;
+	private static final int HEADER = 2;
+	private static final int TYPE_OFFSET = 3;
+	private static final int TYPE_LENGTH = 4;
+	private static final int ID_LENGTH = 5;
+	private static final int PAYLOAD_OFFSET = 6;
+	private static final int PAYLOAD_LENGTH = 7;
+	private static final int PARENT = 8;
+	private static final int NESTED_OFFSET = 9;
+	private static final int NEXT = 10;
+
+	private static final int STRIDE = 11;
+
+	private static final byte FLAG_CF = (byte) 0x20;
+
+	/**
+	 * Index a complete NDEF message, validating headers like {@link NdefDecoder#getDefault()} does.
+	 *
+	 * @param data message bytes
+	 * @return index of the message records
+	 * @throws FormatException if the record headers are invalid
+	 */
+
+	public static NdefIndex scan(byte[] data) throws FormatException {
+		return scan(data, 0, data.length, NdefDecoder.getDefault());
+	}
+
+	/**
+	 * Index a complete NDEF message, validating headers like {@link NdefDecoder#getDefault()} does.
+	 *
+	 * @param data array containing the message
+	 * @param offset start offset
+	 * @param length number of bytes
+	 * @return index of the message records
+	 * @throws FormatException if the record headers are invalid
+	 */
+
+	public static NdefIndex scan(byte[] data, int offset, int length) throws FormatException {
+		return scan(data, offset, length, NdefDecoder.getDefault());
+	}
+
+	/**
+	 * Index a complete NDEF message.
+	 *
+	 * @param data array containing the message
+	 * @param offset start offset
+	 * @param length number of bytes
+	 * @param decoder decoder whose strictness and payload limit applies to the scan, and which is used for decoding indexed records
+	 * @return index of the message records
+	 * @throws FormatException if the record headers are invalid
+	 */
+
+	public static NdefIndex scan(byte[] data, int offset, int length, NdefDecoder decoder) throws FormatException {
+		int end = offset + length;
+
+		NdefIndex index = new NdefIndex(data, decoder);
+
+		long result = NdefParser.scan(data, offset, end, decoder.getStrictness() == NdefDecoder.Strictness.LENIENT, decoder.getStrictness() != NdefDecoder.Strictness.TRUSTED, decoder.getMaxPayloadSize(), index, -1);
+		Status status = STATUSES[(int)(result >>> 32)];
+		int position = (int)result;
+		if(status != Status.OK) {
+			throw new FormatException(status.getMessage() + " at offset " + position);
+		}
+		if(position != end) {
+			throw new FormatException(Status.TRAILING_DATA.getMessage() + " at offset " + position);
+		}
+		return index;
+	}
+
+	private final byte[] data;
+	private final NdefDecoder decoder;
+
+	private int[] entries = new int[STRIDE * 8];
+	private int size;
+
+	private int[] messageRecords = new int[8];
+	private int messageRecordCount;
+
+	private NdefIndex(byte[] data, NdefDecoder decoder) {
+		this.data = data;
+		this.decoder = decoder;
+	}
+
+	/**
+	 * Add a logical record.
+	 *
+	 * @return index of the added record
+	 */
+
+	int add(int recordOffset, int recordEnd, byte header, int typeOffset, int typeLength, int idLength, int payloadOffset, int payloadLength, int parent, int nestedOffset) {
+		if((size + 1) * STRIDE > entries.length) {
+			entries = Arrays.copyOf(entries, entries.length * 2);
+		}
+		int i = size * STRIDE;
+		entries[i + RECORD_OFFSET] = recordOffset;
+		entries[i + RECORD_END] = recordEnd;
+		entries[i + HEADER] = header & 0xFF;
+		entries[i + TYPE_OFFSET] = typeOffset;
+		entries[i + TYPE_LENGTH] = typeLength;
+		entries[i + ID_LENGTH] = idLength;
+		entries[i + PAYLOAD_OFFSET] = payloadOffset;
+		entries[i + PAYLOAD_LENGTH] = payloadLength;
+		entries[i + PARENT] = parent;
+		entries[i + NESTED_OFFSET] = nestedOffset;
+		entries[i + NEXT] = size + 1;
+
+		if(parent == -1) {
+			if(messageRecordCount == messageRecords.length) {
+				messageRecords = Arrays.copyOf(messageRecords, messageRecords.length * 2);
+			}
+			messageRecords[messageRecordCount++] = size;
+		}
+
+		return size++;
+	}
+
+	/**
+	 * Mark the end of the records nested within a container record, i.e. all records added since.
+	 *
+	 * @param record index of the container record
+	 */
+
+	void setNext(int record) {
+		entries[record * STRIDE + NEXT] = size;
+	}
+
+	/**
+	 * Get the number of records, including nested records.
+	 *
+	 * @return number of records
+	 */
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Get the number of top-level records, i.e. the records of the message itself.
+	 *
+	 * @return number of records
+	 */
+
+	public int getMessageRecordCount() {
+		return messageRecordCount;
+	}
+
+	/**
+	 * Get the index of a top-level record.
+	 *
+	 * @param n record number within the message
+	 * @return record index
+	 */
+
+	public int getMessageRecord(int n) {
+		if(n < 0 || n >= messageRecordCount) {
+			throw new IndexOutOfBoundsException("Record " + n + " of " + messageRecordCount);
+		}
+		return messageRecords[n];
+	}
+
+	private int get(int record, int field) {
+		if(record < 0 || record >= size) {
+			throw new IndexOutOfBoundsException("Record " + record + " of " + size);
+		}
+		return entries[record * STRIDE + field];
+	}
+
+	/**
+	 * Get the array the index was built from.
+	 *
+	 * @return the indexed bytes (not a copy)
+	 */
+
+	public byte[] getData() {
+		return data;
+	}
+
+	/**
+	 * Get the offset of the first byte of a record, which for chunked records is the first byte of the first chunk.
+	 *
+	 * @param record record index
+	 * @return offset
+	 */
+
+	public int getRecordOffset(int record) {
+		return get(record, RECORD_OFFSET);
+	}
+
+	/**
+	 * Get the offset just after the last byte of a record, which for chunked records is the end of the last chunk.
+	 *
+	 * @param record record index
+	 * @return offset (exclusive)
+	 */
+
+	public int getRecordEnd(int record) {
+		return get(record, RECORD_END);
+	}
+
+	/**
+	 * Get the first header byte of a record, holding the flags and TNF (of the first chunk, for chunked records).
+	 *
+	 * @param record record index
+	 * @return header byte, as an unsigned value
+	 */
+
+	public int getHeader(int record) {
+		return get(record, HEADER);
+	}
+
+	public short getTnf(int record) {
+		return (short)(get(record, HEADER) & 0x07);
+	}
+
+	/**
+	 * Check whether a record is split into multiple chunks, so that its payload is not contiguous.
+	 *
+	 * @param record record index
+	 * @return true if chunked
+	 */
+
+	public boolean isChunked(int record) {
+		return (get(record, HEADER) & FLAG_CF) != 0;
+	}
+
+	public int getTypeOffset(int record) {
+		return get(record, TYPE_OFFSET);
+	}
+
+	public int getTypeLength(int record) {
+		return get(record, TYPE_LENGTH);
+	}
+
+	public int getIdOffset(int record) {
+		return get(record, TYPE_OFFSET) + get(record, TYPE_LENGTH);
+	}
+
+	public int getIdLength(int record) {
+		return get(record, ID_LENGTH);
+	}
+
+	/**
+	 * Get the payload offset of a record.
+	 *
+	 * @param record record index
+	 * @return offset, or -1 if the record is chunked
+	 */
+
+	public int getPayloadOffset(int record) {
+		return get(record, PAYLOAD_OFFSET);
+	}
+
+	/**
+	 * Get the payload length of a record, which for chunked records is the sum of the chunk payload lengths.
+	 *
+	 * @param record record index
+	 * @return number of bytes
+	 */
+
+	public int getPayloadLength(int record) {
+		return get(record, PAYLOAD_LENGTH);
+	}
+
+	/**
+	 * Get the container record of a nested record.
+	 *
+	 * @param record record index
+	 * @return index of the container record, or -1 for top-level records
+	 */
+
+	public int getParent(int record) {
+		return get(record, PARENT);
+	}
+
+	/**
+	 * Check whether the payload of a record holds a nested message.
+	 *
+	 * @param record record index
+	 * @return true if the record has a nested message, which might be empty
+	 */
+
+	public boolean hasNestedMessage(int record) {
+		return get(record, NESTED_OFFSET) != -1;
+	}
+
+	/**
+	 * Get the start offset of the nested message of a record. The nested message ends with the payload.
+	 *
+	 * @param record record index
+	 * @return offset, or -1 if none
+	 */
+
+	public int getNestedMessageOffset(int record) {
+		return get(record, NESTED_OFFSET);
+	}
+
+	/**
+	 * Get the index just after all records nested within a record, i.e. the index of the next record which is not
+	 * nested within it. The nested records, if any, are the indexes in between.
+	 *
+	 * @param record record index
+	 * @return record index, or {@link #size()} if the last
+	 */
+
+	public int getNext(int record) {
+		return get(record, NEXT);
+	}
+
+	/**
+	 * Decode a single record, including any nested records.
+	 *
+	 * @param record record index
+	 * @return corresponding {@link Record}
+	 * @throws FormatException if the record cannot be parsed
+	 */
+
+	public Record decode(int record) throws FormatException {
+		int i = record * STRIDE;
+		if(isChunked(record)) {
+			// payload must be flattened
+			return decoder.decodeRecord(data, entries[i + RECORD_OFFSET], entries[i + RECORD_END] - entries[i + RECORD_OFFSET]);
+		}
+
+		Record result = decoder.parse(getTnf(record), data, entries[i + TYPE_OFFSET], entries[i + TYPE_LENGTH], data, entries[i + PAYLOAD_OFFSET], entries[i + PAYLOAD_LENGTH]);
+		int idLength = entries[i + ID_LENGTH];
+		if(idLength > 0) {
+			int idOffset = entries[i + TYPE_OFFSET] + entries[i + TYPE_LENGTH];
+			result.setId(Arrays.copyOfRange(data, idOffset, idOffset + idLength));
+		}
+		if(decoder.isPreserveEncoding()) {
+			decoder.preserveEncoding(result, data, entries[i + RECORD_OFFSET], data, entries[i + RECORD_END]);
+		}
+		return result;
+	}
+
+	/**
+	 * Decode a range of top-level records, for example one part of a large message split for parallel decoding.
+	 *
+	 * @param from first record number within the message (inclusive)
+	 * @param to last record number within the message (exclusive)
+	 * @return message holding the decoded records
+	 * @throws FormatException if a record cannot be parsed
+	 */
+
+	public Message decodeMessageRecords(int from, int to) throws FormatException {
+		if(from < 0 || to > messageRecordCount || from > to) {
+			throw new IndexOutOfBoundsException("Records " + from + " to " + to + " of " + messageRecordCount);
+		}
+		Message message = new Message();
+		for(int n = from; n < to; n++) {
+			message.add(decode(messageRecords[n]));
+		}
+		return message;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[" + size + " records, " + messageRecordCount + " top-level]";
+	}
+}
@@ -0,0 +1,327 @@
+/***************************************************************************
+ *
+ * This file is part of the 'NDEF Tools for Android' project at
+ * http://code.google.com/p/ndef-tools-for-android/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ****************************************************************************/
+
+package com.github.skjolber.ndef;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.github.skjolber.ndef.DecodeResult.Status;
+
+import android.nfc.FormatException;
+
+/**
+ *
+ * Reader for back-to-back NDEF messages, for example tag memory dumps or log files. Messages are delimited by the
+ * MB and ME flags.<br><br>
+ *
+ * Each call to {@link #nextMessage()} walks the record headers of the next message and makes its offset and length
+ * available; {@link #getMessage()} then decodes the records directly from the input (array or heap buffer) or from a reused
+ * read buffer (stream or direct buffer), so that there is no per-message copy. When reading from a {@link ByteBuffer},
+ * its position is advanced past each message. This class is not thread-safe.
+ *
+ * @author Thomas Rorvik Skjolberg (skjolber@gmail.com)
+ *
+ */
+
+public class NdefMessageReader implements Closeable {
+
+	private static final int DEFAULT_BUFFER_SIZE = 4096;
+
+	private static final Status[] STATUSES = Status.values();
+
+	private final NdefDecoder decoder;
+
+	/** source stream, or null */
+	private final InputStream in;
+	/** source direct buffer, or null */
+	private final ByteBuffer source;
+	/** buffer to update the position of, or null */
+	private final ByteBuffer target;
+	private final int targetPosition;
+
+	private byte[] buffer;
+	private int position;
+	private int limit;
+	/** absolute offset of the first byte in the buffer */
+	private long bufferOffset;
+
+	// current message
+	private int messageStart = -1;
+	private int messageEnd = -1;
+	private int messageCount;
+
+	/**
+	 * Array constructor.
+	 *
+	 * @param data NDEF messages
+	 */
+
+	public NdefMessageReader(byte[] data) {
+		this(data, 0, data.length, NdefDecoder.getDefault());
+	}
+
+	/**
+	 * Array constructor.
+	 *
+	 * @param data array containing NDEF messages
+	 * @param offset start offset
+	 * @param length number of bytes
+	 * @param decoder decoder for the message records. Messages are always delimited by the MB and ME flags,
+	 * also for {@link NdefDecoder.Strictness#LENIENT} decoders.
+	 */
+
+	public NdefMessageReader(byte[] data, int offset, int length, NdefDecoder decoder) {
+		if(offset < 0 || length < 0 || offset + length > data.length) {
+			throw new IndexOutOfBoundsException();
+		}
+		this.decoder = decoder;
+		this.in = null;
+		this.source = null;
+		this.target = null;
+		this.targetPosition = 0;
+		this.buffer = data;
+		this.position = offset;
+		this.limit = offset + length;
+		this.bufferOffset = -offset;
+	}
+
+	/**
+	 * {@link ByteBuffer} constructor. The messages are read from the buffer's position to its limit.
+	 *
+	 * @param data buffer containing NDEF messages
+	 */
+
+	public NdefMessageReader(ByteBuffer data) {
+		this(data, NdefDecoder.getDefault());
+	}
+
+	/**
+	 * {@link ByteBuffer} constructor. The messages are read from the buffer's position to its limit.
+	 * Heap buffers are read directly from the backing array, direct buffers are read in blocks.
+	 *
+	 * @param data buffer containing NDEF messages
+	 * @param decoder decoder for the message records
+	 */
+
+	public NdefMessageReader(ByteBuffer data, NdefDecoder decoder) {
+		this.decoder = decoder;
+		this.in = null;
+		this.target = data;
+		this.targetPosition = data.position();
+		if(data.hasArray()) {
+			this.source = null;
+			this.buffer = data.array();
+			this.position = data.arrayOffset() + data.position();
+			this.limit = data.arrayOffset() + data.limit();
+			this.bufferOffset = -position;
+		} else {
+			this.source = data.duplicate();
+			this.buffer = new byte[Math.min(DEFAULT_BUFFER_SIZE, Math.max(16, data.remaining()))];
+		}
+	}
+
+	/**
+	 * {@link InputStream} constructor. The stream is read in blocks, so it need not be buffered.
+	 *
+	 * @param in stream containing NDEF messages
+	 */
+
+	public NdefMessageReader(InputStream in) {
+		this(in, NdefDecoder.getDefault());
+	}
+
+	/**
+	 * {@link InputStream} constructor. The stream is read in blocks, so it need not be buffered.
+	 *
+	 * @param in stream containing NDEF messages
+	 * @param decoder decoder for the message records
+	 */
+
+	public NdefMessageReader(InputStream in, NdefDecoder decoder) {
+		this.decoder = decoder;
+		this.in = in;
+		this.source = null;
+		this.target = null;
+		this.targetPosition = 0;
+		this.buffer = new byte[DEFAULT_BUFFER_SIZE];
+	}
+
+	/**
+	 * Advance to the next message. The record headers of the message are validated, but the records are not decoded.
+	 *
+	 * @return true if positioned at a message, false if the end of the input was reached
+	 * @throws FormatException if the data is not valid NDEF, or the input ends within a message
+	 * @throws IOException if the underlying stream cannot be read
+	 */
+
+	public boolean nextMessage() throws FormatException, IOException {
+		if(messageEnd != -1) {
+			position = messageEnd;
+			messageStart = messageEnd = -1;
+		}
+		if(!fill(1)) {
+			return false;
+		}
+		boolean validate = decoder.getStrictness() != NdefDecoder.Strictness.TRUSTED;
+		while(true) {
+			long result = NdefParser.scan(buffer, position, limit, false, validate, decoder.getMaxPayloadSize());
+			Status status = STATUSES[(int)(result >>> 32)];
+			if(status == Status.OK) {
+				messageStart = position;
+				messageEnd = (int)result;
+				messageCount++;
+
+				if(target != null) {
+					target.position(targetPosition + (int)(bufferOffset + messageEnd));
+				}
+				return true;
+			}
+			if(status != Status.EXPECTED_MORE_DATA || !fill(limit - position + 1)) {
+				throw new FormatException(status.getMessage() + " at offset " + (bufferOffset + (int)result));
+			}
+		}
+	}
+
+	/**
+	 * Decode the current message.
+	 *
+	 * @return the records of the current message
+	 * @throws FormatException if a record cannot be parsed
+	 * @throws IllegalStateException if not positioned at a message
+	 */
+
+	public Message getMessage() throws FormatException {
+		checkMessage();
+
+		Message message = new Message();
+		decoder.decodeRecords(buffer, messageStart, messageEnd, message);
+		return message;
+	}
+
+	/**
+	 * Advance to and decode the next message.
+	 *
+	 * @return the next message, or null if the end of the input was reached
+	 * @throws FormatException if the data is not valid NDEF
+	 * @throws IOException if the underlying stream cannot be read
+	 */
+
+	public Message read() throws FormatException, IOException {
+		if(!nextMessage()) {
+			return null;
+		}
+		return getMessage();
+	}
+
+	/**
+	 * Get the offset of the current message, relative to the start of the input.
+	 *
+	 * @return offset of the first byte of the message
+	 * @throws IllegalStateException if not positioned at a message
+	 */
+
+	public long getMessageOffset() {
+		checkMessage();
+
+		return bufferOffset + messageStart;
+	}
+
+	/**
+	 * Get the length of the current message.
+	 *
+	 * @return number of bytes
+	 * @throws IllegalStateException if not positioned at a message
+	 */
+
+	public int getMessageLength() {
+		checkMessage();
+
+		return messageEnd - messageStart;
+	}
+
+	/**
+	 * Get the number of messages read so far, including the current message.
+	 *
+	 * @return number of messages
+	 */
+
+	public int getMessageCount() {
+		return messageCount;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if(in != null) {
+			in.close();
+		}
+	}
+
+	private void checkMessage() {
+		if(messageEnd == -1) {
+			throw new IllegalStateException("Not positioned at a message");
+		}
+	}
+
+	/**
+	 * Make sure a number of bytes are available in the buffer, growing it if necessary.
+	 *
+	 * @param count number of bytes
+	 * @return false if the input ended before the bytes were available
+	 */
+
+	private boolean fill(int count) throws IOException {
+		if(limit - position >= count) {
+			return true;
+		}
+		if(in == null && source == null) {
+			return false;
+		}
+		if(position > 0) {
+			// compact
+			System.arraycopy(buffer, position, buffer, 0, limit - position);
+			bufferOffset += position;
+			limit -= position;
+			position = 0;
+		}
+		if(count > buffer.length) {
+			buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, count));
+		}
+		do {
+			int read;
+			if(in != null) {
+				read = in.read(buffer, limit, buffer.length - limit);
+			} else if(source.hasRemaining()) {
+				read = Math.min(source.remaining(), buffer.length - limit);
+				source.get(buffer, limit, read);
+			} else {
+				read = -1;
+			}
+			if(read == -1) {
+				return false;
+			}
+			limit += read;
+		} while(limit < count);
+
+		return true;
+	}
+}
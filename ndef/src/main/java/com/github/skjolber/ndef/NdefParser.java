@@ -0,0 +1,586 @@
+/***************************************************************************
+ *
+ * This file is part of the 'NDEF Tools for Android' project at
+ * http://code.google.com/p/ndef-tools-for-android/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ****************************************************************************/
+
+package com.github.skjolber.ndef;
+
+import java.util.Arrays;
+
+import com.github.skjolber.ndef.DecodeResult.Status;
+
+import android.nfc.FormatException;
+import android.nfc.NdefMessage;
+import android.nfc.NdefRecord;
+
+/**
+ *
+ * Push parser for NDEF messages, in the style of SAX. Reports records to a {@link NdefHandler} without creating
+ * {@link Record} objects.<br><br>
+ *
+ * Record headers are validated like {@link NdefMessage#NdefMessage(byte[])} does. The messages nested within
+ * smart poster, generic control, generic control data, handover select and handover request records are reported
+ * too, after the containing record. Nested messages are parsed leniently with regards to the MB and ME flags.
+ * Only the payload of chunked records is copied, as it must be flattened.
+ *
+ * @author Thomas Rorvik Skjolberg (skjolber@gmail.com)
+ *
+ */
+
+public final class NdefParser {
+
+	/** same limit as {@link NdefRecord} */
+	static final int MAX_PAYLOAD_SIZE = 10 * (1 << 20);  // 10 MB payload limit
+
+	private static final byte FLAG_MB = (byte) 0x80;
+	private static final byte FLAG_ME = (byte) 0x40;
+	private static final byte FLAG_CF = (byte) 0x20;
+	private static final byte FLAG_SR = (byte) 0x10;
+	private static final byte FLAG_IL = (byte) 0x08;
+
+	private NdefParser() {
+	}
+
+	/**
+	 * Parse a complete NDEF message.
+	 *
+	 * @param data message bytes
+	 * @param handler callback handler
+	 * @throws FormatException if the message cannot be parsed, or if the handler aborts parsing
+	 */
+
+	public static void parse(byte[] data, NdefHandler handler) throws FormatException {
+		parse(data, 0, data.length, handler);
+	}
+
+	/**
+	 * Parse a complete NDEF message.
+	 *
+	 * @param data array containing the message
+	 * @param offset start offset
+	 * @param length number of bytes
+	 * @param handler callback handler
+	 * @throws FormatException if the message cannot be parsed, does not span all bytes, or if the handler aborts parsing
+	 */
+
+	public static void parse(byte[] data, int offset, int length, NdefHandler handler) throws FormatException {
+		int end = offset + length;
+		if(parse(data, offset, end, handler, false, true) != end) {
+			throw new FormatException("trailing data");
+		}
+	}
+
+	/**
+	 * Parse a single NDEF message.
+	 *
+	 * @param data array containing the message
+	 * @param offset start offset
+	 * @param end end offset (exclusive)
+	 * @param handler callback handler
+	 * @param nested true if the message is nested within another record, so that MB and ME flags are ignored,
+	 * and the message spans all bytes up to the end offset
+	 * @param descend true if nested messages should be reported to the handler
+	 * @return the offset just after the last record of the message
+	 * @throws FormatException if the message cannot be parsed
+	 */
+
+	static int parse(byte[] data, int offset, int end, NdefHandler handler, boolean nested, boolean descend) throws FormatException {
+		return parse(data, offset, end, handler, nested, descend, true, MAX_PAYLOAD_SIZE);
+	}
+
+	/**
+	 * Parse a single NDEF message.
+	 *
+	 * @param data array containing the message
+	 * @param offset start offset
+	 * @param end end offset (exclusive)
+	 * @param handler callback handler
+	 * @param nested true if the message is nested within another record, so that MB and ME flags are ignored,
+	 * and the message spans all bytes up to the end offset
+	 * @param descend true if nested messages should be reported to the handler
+	 * @param validate false if header flags and TNF values are trusted, so that only the lengths and chunk boundaries are checked
+	 * @param maxPayloadSize max payload size, in bytes
+	 * @return the offset just after the last record of the message
+	 * @throws FormatException if the message cannot be parsed
+	 */
+
+	static int parse(byte[] data, int offset, int end, NdefHandler handler, boolean nested, boolean descend, boolean validate, int maxPayloadSize) throws FormatException {
+		int count = 0;
+
+		int recordOffset = offset;
+
+		short chunkTnf = -1;
+		int chunkTypeOffset = 0;
+		int chunkTypeLength = 0;
+		int chunkIdOffset = 0;
+		int chunkIdLength = 0;
+		byte[] chunkPayload = null;
+		int chunkPayloadLength = 0;
+		boolean inChunk = false;
+
+		boolean me = false;
+		while (nested ? (offset < end || inChunk) : !me) {
+			if(offset >= end) {
+				throw new FormatException("expected more data");
+			}
+			if(!inChunk) {
+				recordOffset = offset;
+			}
+			byte flag = data[offset++];
+
+			me = (flag & FLAG_ME) != 0;
+			boolean cf = (flag & FLAG_CF) != 0;
+			boolean sr = (flag & FLAG_SR) != 0;
+			boolean il = (flag & FLAG_IL) != 0;
+			short tnf = (short)(flag & 0x07);
+
+			if(validate) {
+				checkFlags(flag, nested, count, inChunk);
+			} else if(!nested && cf && me) {
+				// the message would end with the chunked record still pending
+				throw new FormatException(Status.UNEXPECTED_ME.getMessage());
+			}
+
+			int headerLength = 1 + (sr ? 1 : 4) + (il ? 1 : 0);
+			if(offset + headerLength > end) {
+				throw new FormatException("expected more data");
+			}
+
+			int typeLength = data[offset++] & 0xFF;
+			long payloadLength;
+			if(sr) {
+				payloadLength = data[offset++] & 0xFF;
+			} else {
+				payloadLength = ((long)(data[offset] & 0xFF) << 24) | ((data[offset + 1] & 0xFF) << 16) | ((data[offset + 2] & 0xFF) << 8) | (data[offset + 3] & 0xFF);
+				offset += 4;
+			}
+			int idLength = il ? (data[offset++] & 0xFF) : 0;
+
+			if (inChunk && typeLength != 0) {
+				throw new FormatException("expected zero-length type in non-leading chunk");
+			}
+
+			int typeOffset = offset;
+			int idOffset = typeOffset + typeLength;
+			if(idOffset + idLength > end) {
+				throw new FormatException("expected more data");
+			}
+			ensureSanePayloadSize(payloadLength, maxPayloadSize);
+			int payloadOffset = idOffset + idLength;
+			if(payloadOffset + payloadLength > end) {
+				throw new FormatException("expected more data");
+			}
+			offset = payloadOffset + (int)payloadLength;
+
+			if (cf && !inChunk) {
+				// first chunk
+				if (typeLength == 0 && tnf != NdefRecord.TNF_UNKNOWN) {
+					throw new FormatException("expected non-zero type length in first chunk");
+				}
+				chunkTnf = tnf;
+				chunkTypeOffset = typeOffset;
+				chunkTypeLength = typeLength;
+				chunkIdOffset = idOffset;
+				chunkIdLength = idLength;
+				chunkPayload = new byte[Math.max(16, (int)payloadLength)];
+				chunkPayloadLength = 0;
+			}
+			if (cf || inChunk) {
+				// any chunk
+				ensureSanePayloadSize(chunkPayloadLength + payloadLength, maxPayloadSize);
+				if(chunkPayloadLength + payloadLength > chunkPayload.length) {
+					chunkPayload = Arrays.copyOf(chunkPayload, Math.max(chunkPayload.length * 2, chunkPayloadLength + (int)payloadLength));
+				}
+				System.arraycopy(data, payloadOffset, chunkPayload, chunkPayloadLength, (int)payloadLength);
+				chunkPayloadLength += (int)payloadLength;
+			}
+			if (cf) {
+				// more chunks to come
+				inChunk = true;
+				continue;
+			}
+
+			byte[] payload;
+			if (inChunk) {
+				// last chunk
+				inChunk = false;
+
+				tnf = chunkTnf;
+				typeOffset = chunkTypeOffset;
+				typeLength = chunkTypeLength;
+				idOffset = chunkIdOffset;
+				idLength = chunkIdLength;
+				payload = chunkPayload;
+				payloadOffset = 0;
+				payloadLength = chunkPayloadLength;
+
+				chunkPayload = null;
+			} else {
+				payload = data;
+			}
+
+			if(validate) {
+				String error = validateTnf(tnf, typeLength, idLength, (int)payloadLength);
+				if (error != null) {
+					throw new FormatException(error);
+				}
+			}
+
+			if(count == 0 && !nested) {
+				handler.onMessageStart();
+			}
+			if(handler instanceof RecordOffsetHandler) {
+				((RecordOffsetHandler)handler).recordOffset = recordOffset;
+			}
+			handler.onRecord(tnf, data, typeOffset, typeLength, idOffset, idLength, payload, payloadOffset, (int)payloadLength);
+			count++;
+
+			if(descend) {
+				parseNestedMessage(tnf, data, typeOffset, typeLength, payload, payloadOffset, (int)payloadLength, handler);
+			}
+		}
+
+		if(!nested) {
+			handler.onMessageEnd();
+		}
+		return offset;
+	}
+
+	/**
+	 * Handler which is also told the offset of each record, i.e. the offset of its header or, for chunked records,
+	 * of the header of the first chunk.
+	 */
+
+	static abstract class RecordOffsetHandler extends DefaultNdefHandler {
+
+		/** offset of the current record */
+		int recordOffset;
+	}
+
+	/**
+	 * Report the message nested within a record, if any.
+	 *
+	 * @throws FormatException if the nested message cannot be parsed
+	 */
+
+	static void parseNestedMessage(short tnf, byte[] data, int typeOffset, int typeLength, byte[] payload, int payloadOffset, int payloadLength, NdefHandler handler) throws FormatException {
+		if(tnf == NdefRecord.TNF_WELL_KNOWN) {
+			int nestedOffset = getNestedMessageOffset(data, typeOffset, typeLength);
+			if(nestedOffset != -1 && nestedOffset <= payloadLength) {
+				handler.onNestedMessageStart();
+				parse(payload, payloadOffset + nestedOffset, payloadOffset + payloadLength, handler, true, true);
+				handler.onNestedMessageEnd();
+			}
+		}
+	}
+
+	/**
+	 * Check the flags of a record header against the current message state.
+	 *
+	 * @param flag header byte
+	 * @param nested true if MB and ME flags should be ignored
+	 * @param count number of logical records so far in the message
+	 * @param inChunk true if within a chunked record
+	 * @throws FormatException if the flags are not valid
+	 */
+
+	static void checkFlags(byte flag, boolean nested, int count, boolean inChunk) throws FormatException {
+		Status status = getFlagStatus(flag, nested, count, inChunk);
+		if(status != Status.OK) {
+			throw new FormatException(status.getMessage());
+		}
+	}
+
+	/**
+	 * Check the flags of a record header against the current message state.
+	 *
+	 * @param flag header byte
+	 * @param nested true if MB and ME flags should be ignored
+	 * @param count number of logical records so far in the message
+	 * @param inChunk true if within a chunked record
+	 * @return {@link Status#OK} if the flags are valid
+	 */
+
+	static Status getFlagStatus(byte flag, boolean nested, int count, boolean inChunk) {
+		boolean mb = (flag & FLAG_MB) != 0;
+		boolean me = (flag & FLAG_ME) != 0;
+		boolean cf = (flag & FLAG_CF) != 0;
+		boolean il = (flag & FLAG_IL) != 0;
+		short tnf = (short)(flag & 0x07);
+
+		if (!nested && !mb && count == 0 && !inChunk) {
+			return Status.EXPECTED_MB;
+		} else if (!nested && mb && (count != 0 || inChunk)) {
+			return Status.UNEXPECTED_MB;
+		} else if (inChunk && il) {
+			return Status.UNEXPECTED_IL;
+		} else if (!nested && cf && me) {
+			return Status.UNEXPECTED_ME;
+		} else if (inChunk && tnf != NdefRecord.TNF_UNCHANGED) {
+			return Status.EXPECTED_TNF_UNCHANGED;
+		} else if (!inChunk && tnf == NdefRecord.TNF_UNCHANGED) {
+			return Status.UNEXPECTED_TNF_UNCHANGED;
+		}
+		return Status.OK;
+	}
+
+	/**
+	 * Check the record headers of a single NDEF message, including messages nested within the well-known container
+	 * types, without creating any objects.
+	 *
+	 * @param data array containing the message
+	 * @param offset start offset
+	 * @param end end offset (exclusive)
+	 * @param nested true if the message is nested within another record, so that MB and ME flags are ignored,
+	 * and the message spans all bytes up to the end offset
+	 * @param validate false if header flags and TNF values are trusted, so that only the lengths and chunk boundaries are checked
+	 * @param maxPayloadSize max payload size, in bytes
+	 * @return the {@link Status} ordinal in the upper 32 bits; the offset just after the last record of the message, 
+	 * or the offset of the failing record, in the lower 32 bits
+	 */
+
+	static long scan(byte[] data, int offset, int end, boolean nested, boolean validate, int maxPayloadSize) {
+		return scan(data, offset, end, nested, validate, maxPayloadSize, null, -1);
+	}
+
+	/**
+	 * Check the record headers of a single NDEF message, including messages nested within the well-known container
+	 * types, optionally adding each logical record to an index.
+	 *
+	 * @param data array containing the message
+	 * @param offset start offset
+	 * @param end end offset (exclusive)
+	 * @param nested true if the message is nested within another record, so that MB and ME flags are ignored,
+	 * and the message spans all bytes up to the end offset
+	 * @param validate false if header flags and TNF values are trusted, so that only the lengths and chunk boundaries are checked
+	 * @param maxPayloadSize max payload size, in bytes
+	 * @param index target index, or null
+	 * @param parent index of the record containing the message, or -1 for a top-level message
+	 * @return the {@link Status} ordinal in the upper 32 bits; the offset just after the last record of the message, 
+	 * or the offset of the failing record, in the lower 32 bits
+	 */
+
+	static long scan(byte[] data, int offset, int end, boolean nested, boolean validate, int maxPayloadSize, NdefIndex index, int parent) {
+		int count = 0;
+
+		int chunkStart = 0;
+		byte chunkFlag = 0;
+		short chunkTnf = -1;
+		int chunkTypeOffset = 0;
+		int chunkTypeLength = 0;
+		int chunkIdLength = 0;
+		long chunkPayloadLength = 0;
+		boolean inChunk = false;
+
+		boolean me = false;
+		while (nested ? (offset < end || inChunk) : !me) {
+			int start = offset;
+			if(offset >= end) {
+				return toScanResult(Status.EXPECTED_MORE_DATA, start);
+			}
+			byte flag = data[offset++];
+
+			me = (flag & FLAG_ME) != 0;
+			boolean cf = (flag & FLAG_CF) != 0;
+			boolean sr = (flag & FLAG_SR) != 0;
+			boolean il = (flag & FLAG_IL) != 0;
+			short tnf = (short)(flag & 0x07);
+
+			if(validate) {
+				Status status = getFlagStatus(flag, nested, count, inChunk);
+				if(status != Status.OK) {
+					return toScanResult(status, start);
+				}
+			} else if(!nested && cf && me) {
+				// the message would end with the chunked record still pending
+				return toScanResult(Status.UNEXPECTED_ME, start);
+			}
+
+			int headerLength = 1 + (sr ? 1 : 4) + (il ? 1 : 0);
+			if(offset + headerLength > end) {
+				return toScanResult(Status.EXPECTED_MORE_DATA, start);
+			}
+
+			int typeLength = data[offset++] & 0xFF;
+			long payloadLength;
+			if(sr) {
+				payloadLength = data[offset++] & 0xFF;
+			} else {
+				payloadLength = ((long)(data[offset] & 0xFF) << 24) | ((data[offset + 1] & 0xFF) << 16) | ((data[offset + 2] & 0xFF) << 8) | (data[offset + 3] & 0xFF);
+				offset += 4;
+			}
+			int idLength = il ? (data[offset++] & 0xFF) : 0;
+
+			if (inChunk && typeLength != 0) {
+				return toScanResult(Status.UNEXPECTED_CHUNK_TYPE, start);
+			}
+			if (cf && !inChunk && typeLength == 0 && tnf != NdefRecord.TNF_UNKNOWN) {
+				return toScanResult(Status.EXPECTED_CHUNK_TYPE, start);
+			}
+
+			int typeOffset = offset;
+			int payloadOffset = typeOffset + typeLength + idLength;
+			if(payloadOffset > end) {
+				return toScanResult(Status.EXPECTED_MORE_DATA, start);
+			}
+			if(payloadLength > maxPayloadSize || (inChunk && chunkPayloadLength + payloadLength > maxPayloadSize)) {
+				return toScanResult(Status.PAYLOAD_TOO_LARGE, start);
+			}
+			if(payloadOffset + payloadLength > end) {
+				return toScanResult(Status.EXPECTED_MORE_DATA, start);
+			}
+			offset = payloadOffset + (int)payloadLength;
+
+			if (cf && !inChunk) {
+				// first chunk
+				chunkStart = start;
+				chunkFlag = flag;
+				chunkTnf = tnf;
+				chunkTypeOffset = typeOffset;
+				chunkTypeLength = typeLength;
+				chunkIdLength = idLength;
+				chunkPayloadLength = 0;
+			}
+			if (cf || inChunk) {
+				// any chunk
+				chunkPayloadLength += payloadLength;
+			}
+			if (cf) {
+				// more chunks to come
+				inChunk = true;
+				continue;
+			}
+			if (inChunk) {
+				// last chunk, nested messages are not scanned as the payload is not contiguous
+				inChunk = false;
+
+				if(validate && validateTnf(chunkTnf, chunkTypeLength, chunkIdLength, (int)chunkPayloadLength) != null) {
+					return toScanResult(Status.INVALID_TNF, start);
+				}
+				count++;
+
+				if(index != null) {
+					index.add(chunkStart, offset, chunkFlag, chunkTypeOffset, chunkTypeLength, chunkIdLength, -1, (int)chunkPayloadLength, parent, -1);
+				}
+				continue;
+			}
+
+			if(validate && validateTnf(tnf, typeLength, idLength, (int)payloadLength) != null) {
+				return toScanResult(Status.INVALID_TNF, start);
+			}
+			count++;
+
+			int nestedOffset = -1;
+			if(tnf == NdefRecord.TNF_WELL_KNOWN) {
+				nestedOffset = getNestedMessageOffset(data, typeOffset, typeLength);
+				if(nestedOffset > payloadLength) {
+					nestedOffset = -1;
+				}
+			}
+
+			int current = -1;
+			if(index != null) {
+				current = index.add(start, offset, flag, typeOffset, typeLength, idLength, payloadOffset, (int)payloadLength, parent, nestedOffset == -1 ? -1 : payloadOffset + nestedOffset);
+			}
+
+			if(nestedOffset != -1) {
+				long result = scan(data, payloadOffset + nestedOffset, offset, true, validate, maxPayloadSize, index, current);
+				if(result >>> 32 != 0) {
+					return result;
+				}
+				if(index != null) {
+					index.setNext(current);
+				}
+			}
+		}
+
+		return toScanResult(Status.OK, offset);
+	}
+
+	private static long toScanResult(Status status, int offset) {
+		return ((long)status.ordinal() << 32) | (offset & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Get the offset of the nested message within the payload of a well-known record.
+	 *
+	 * @return offset, or -1 if the type does not contain a nested message
+	 */
+
+	private static int getNestedMessageOffset(byte[] type, int typeOffset, int typeLength) {
+		if(typeLength == 1) {
+			if(type[typeOffset] == 'd') {
+				// gc data
+				return 0;
+			}
+		} else if(typeLength == 2) {
+			byte first = type[typeOffset];
+			byte second = type[typeOffset + 1];
+
+			if(first == 'S' && second == 'p') {
+				// smart poster
+				return 0;
+			}
+			if((first == 'G' && second == 'c') || (first == 'H' && (second == 's' || second == 'r'))) {
+				// generic control, handover select, handover request: nested message follows a single byte
+				return 1;
+			}
+		}
+		return -1;
+	}
+
+	static void ensureSanePayloadSize(long size) throws FormatException {
+		ensureSanePayloadSize(size, MAX_PAYLOAD_SIZE);
+	}
+
+	static void ensureSanePayloadSize(long size, int maxPayloadSize) throws FormatException {
+		if (size > maxPayloadSize) {
+			throw new FormatException("payload above max limit: " + size + " > " + maxPayloadSize);
+		}
+	}
+
+	/**
+	 * Simple TNF validation, like {@link NdefRecord} does.
+	 *
+	 * @return null if valid, or a string error if invalid.
+	 */
+
+	static String validateTnf(short tnf, int typeLength, int idLength, int payloadLength) {
+		switch (tnf) {
+			case NdefRecord.TNF_EMPTY:
+				if (typeLength != 0 || idLength != 0 || payloadLength != 0) {
+					return "unexpected data in TNF_EMPTY record";
+				}
+				return null;
+			case NdefRecord.TNF_WELL_KNOWN:
+			case NdefRecord.TNF_MIME_MEDIA:
+			case NdefRecord.TNF_ABSOLUTE_URI:
+			case NdefRecord.TNF_EXTERNAL_TYPE:
+				return null;
+			case NdefRecord.TNF_UNKNOWN:
+			case 0x07: // reserved
+				if (typeLength != 0) {
+					return "unexpected type field in TNF_UNKNOWN or TNF_RESERVEd record";
+				}
+				return null;
+			case NdefRecord.TNF_UNCHANGED:
+				return "unexpected TNF_UNCHANGED in first chunk or logical record";
+			default:
+				return String.format("unexpected tnf value: 0x%02x", tnf);
+		}
+	}
+}
@@ -0,0 +1,643 @@
+/***************************************************************************
+ *
+ * This file is part of the 'NDEF Tools for Android' project at
+ * http://code.google.com/p/ndef-tools-for-android/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ****************************************************************************/
+
+package com.github.skjolber.ndef;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import android.nfc.FormatException;
+import android.nfc.NdefRecord;
+
+/**
+ *
+ * Pull parser for NDEF data, in the style of StAX. Walks one or more back-to-back NDEF messages and reports
+ * each record as a sequence of events:<br><br>
+ *
+ * {@link #RECORD} when the record header has been read, then {@link #TYPE}, {@link #ID} and {@link #PAYLOAD}
+ * for each field which is not empty. {@link #END_DOCUMENT} is reported when the input ends after a complete message.<br><br>
+ *
+ * The type and id fields are read into reused buffers. The payload is not read unless requested, a payload
+ * which is not read is skipped when advancing to the next event. Record chunks are reported as-is, i.e.
+ * with their own header and TNF_UNCHANGED, unless the payload is read using {@link #getPayloadInputStream()},
+ * which spans all chunks of the record. Record headers are validated like {@link android.nfc.NdefMessage} does,
+ * but there is no payload size limit. This class is not thread-safe.
+ *
+ * @author Thomas Rorvik Skjolberg (skjolber@gmail.com)
+ *
+ */
+
+public class NdefReader implements Closeable {
+
+	/** Record header has been read */
+	public static final int RECORD = 1;
+	/** Record type field has been read */
+	public static final int TYPE = 2;
+	/** Record id field has been read */
+	public static final int ID = 3;
+	/** Record payload is available for reading */
+	public static final int PAYLOAD = 4;
+	/** No more messages */
+	public static final int END_DOCUMENT = 5;
+
+	private static final int DEFAULT_BUFFER_SIZE = 4096;
+
+	private static final byte FLAG_MB = (byte) 0x80;
+	private static final byte FLAG_ME = (byte) 0x40;
+	private static final byte FLAG_CF = (byte) 0x20;
+	private static final byte FLAG_SR = (byte) 0x10;
+	private static final byte FLAG_IL = (byte) 0x08;
+
+	/** source stream, or null if reading from an array */
+	private final InputStream in;
+
+	private byte[] buffer;
+	private int position;
+	private int limit;
+	/** absolute offset of the first byte in the buffer */
+	private long bufferOffset;
+
+	private int event;
+
+	// current record
+	private byte flags;
+	private int typeLength;
+	private int idLength;
+	private long payloadLength;
+	private long payloadRemaining;
+	private final byte[] type = new byte[255];
+	private final byte[] id = new byte[255];
+
+	// message state
+	private boolean inMessage;
+	private boolean inChunk;
+	private int recordCount;
+
+	/**
+	 * Array constructor.
+	 *
+	 * @param data NDEF data
+	 */
+
+	public NdefReader(byte[] data) {
+		this(data, 0, data.length);
+	}
+
+	/**
+	 * Array constructor.
+	 *
+	 * @param data array containing NDEF data
+	 * @param offset start offset
+	 * @param length number of bytes
+	 */
+
+	public NdefReader(byte[] data, int offset, int length) {
+		if(offset < 0 || length < 0 || offset + length > data.length) {
+			throw new IndexOutOfBoundsException();
+		}
+		this.in = null;
+		this.buffer = data;
+		this.position = offset;
+		this.limit = offset + length;
+		this.bufferOffset = -offset;
+	}
+
+	/**
+	 * {@link InputStream} constructor. The stream is read in blocks, so it need not be buffered.
+	 *
+	 * @param in stream containing NDEF data
+	 */
+
+	public NdefReader(InputStream in) {
+		this.in = in;
+		this.buffer = new byte[DEFAULT_BUFFER_SIZE];
+	}
+
+	/**
+	 * Advance to the next event.
+	 *
+	 * @return the next event
+	 * @throws FormatException if the data is not valid NDEF
+	 * @throws IOException if the underlying stream cannot be read
+	 * @throws NoSuchElementException if the previous event was {@link #END_DOCUMENT}
+	 */
+
+	public int next() throws FormatException, IOException {
+		if(event == END_DOCUMENT) {
+			throw new NoSuchElementException();
+		}
+		if(event == 0 || event == PAYLOAD) {
+			return event = readHeader();
+		}
+		// the fields of the current record, in order, skipping empty fields
+		if(event == RECORD && typeLength > 0) {
+			read(type, typeLength);
+
+			return event = TYPE;
+		}
+		if(event != ID && idLength > 0) {
+			read(id, idLength);
+
+			return event = ID;
+		}
+		if(payloadLength > 0 || (flags & FLAG_CF) != 0) {
+			return event = PAYLOAD;
+		}
+		return event = readHeader();
+	}
+
+	/**
+	 * Advance to the next {@link #RECORD} event, skipping the remaining fields of the current record.
+	 *
+	 * @return true if positioned at a record, false if the end of the input was reached
+	 * @throws FormatException if the data is not valid NDEF
+	 * @throws IOException if the underlying stream cannot be read
+	 */
+
+	public boolean nextRecord() throws FormatException, IOException {
+		int next;
+		do {
+			next = next();
+		} while(next != RECORD && next != END_DOCUMENT);
+
+		return next == RECORD;
+	}
+
+	private int readHeader() throws FormatException, IOException {
+		if(payloadRemaining > 0) {
+			skip(payloadRemaining);
+			payloadRemaining = 0;
+		}
+
+		if(!inMessage && !fill(1)) {
+			return END_DOCUMENT;
+		}
+		if(!fill(2)) {
+			throw new FormatException("expected more data");
+		}
+		byte flag = buffer[position];
+
+		boolean mb = (flag & FLAG_MB) != 0;
+		boolean me = (flag & FLAG_ME) != 0;
+		boolean cf = (flag & FLAG_CF) != 0;
+		boolean sr = (flag & FLAG_SR) != 0;
+		boolean il = (flag & FLAG_IL) != 0;
+		short tnf = (short)(flag & 0x07);
+
+		if (!mb && recordCount == 0 && !inChunk) {
+			throw new FormatException("expected MB flag");
+		} else if (mb && (recordCount != 0 || inChunk)) {
+			throw new FormatException("unexpected MB flag");
+		} else if (inChunk && il) {
+			throw new FormatException("unexpected IL flag in non-leading chunk");
+		} else if (cf && me) {
+			throw new FormatException("unexpected ME flag in non-trailing chunk");
+		} else if (inChunk && tnf != NdefRecord.TNF_UNCHANGED) {
+			throw new FormatException("expected TNF_UNCHANGED in non-leading chunk");
+		} else if (!inChunk && tnf == NdefRecord.TNF_UNCHANGED) {
+			throw new FormatException("unexpected TNF_UNCHANGED in first chunk or unchunked record");
+		}
+
+		int headerLength = 2 + (sr ? 1 : 4) + (il ? 1 : 0);
+		if(!fill(headerLength)) {
+			throw new FormatException("expected more data");
+		}
+
+		int index = position + 1;
+		int typeLength = buffer[index++] & 0xFF;
+		long payloadLength;
+		if(sr) {
+			payloadLength = buffer[index++] & 0xFF;
+		} else {
+			payloadLength = ((long)(buffer[index] & 0xFF) << 24) | ((buffer[index + 1] & 0xFF) << 16) | ((buffer[index + 2] & 0xFF) << 8) | (buffer[index + 3] & 0xFF);
+			index += 4;
+		}
+		int idLength = il ? (buffer[index++] & 0xFF) : 0;
+
+		if (inChunk && typeLength != 0) {
+			throw new FormatException("expected zero-length type in non-leading chunk");
+		}
+		if (cf && !inChunk && typeLength == 0 && tnf != NdefRecord.TNF_UNKNOWN) {
+			throw new FormatException("expected non-zero type length in first chunk");
+		}
+		if (!cf && !inChunk) {
+			if (tnf == NdefRecord.TNF_EMPTY && (typeLength != 0 || idLength != 0 || payloadLength != 0)) {
+				throw new FormatException("unexpected data in TNF_EMPTY record");
+			} else if ((tnf == NdefRecord.TNF_UNKNOWN || tnf == 0x07) && typeLength != 0) {
+				throw new FormatException("unexpected type field in TNF_UNKNOWN or TNF_RESERVEd record");
+			}
+		}
+		position = index;
+
+		this.flags = flag;
+		this.typeLength = typeLength;
+		this.idLength = idLength;
+		this.payloadLength = payloadLength;
+		this.payloadRemaining = payloadLength;
+
+		inChunk = cf;
+		if(!cf) {
+			recordCount++;
+		}
+		if(me) {
+			// next message
+			inMessage = false;
+			recordCount = 0;
+		} else {
+			inMessage = true;
+		}
+
+		return RECORD;
+	}
+
+	/**
+	 * Get the current event.
+	 *
+	 * @return current event, or zero if {@link #next()} has not yet been called.
+	 */
+
+	public int getEventType() {
+		return event;
+	}
+
+	/**
+	 * Get the offset of the next unread byte, relative to the start of the input.
+	 *
+	 * @return number of bytes consumed
+	 */
+
+	public long getOffset() {
+		return bufferOffset + position;
+	}
+
+	/**
+	 * Get the raw header flags byte of the current record, including the TNF.
+	 *
+	 * @return flags byte
+	 */
+
+	public byte getFlags() {
+		return flags;
+	}
+
+	public short getTnf() {
+		return (short)(flags & 0x07);
+	}
+
+	public boolean isMessageBegin() {
+		return (flags & FLAG_MB) != 0;
+	}
+
+	public boolean isMessageEnd() {
+		return (flags & FLAG_ME) != 0;
+	}
+
+	/**
+	 * Check whether the current record is a chunk followed by more chunks.
+	 *
+	 * @return true if the chunk flag is set
+	 */
+
+	public boolean isChunked() {
+		return (flags & FLAG_CF) != 0;
+	}
+
+	public boolean isShortRecord() {
+		return (flags & FLAG_SR) != 0;
+	}
+
+	public int getTypeLength() {
+		return typeLength;
+	}
+
+	public int getIdLength() {
+		return idLength;
+	}
+
+	public long getPayloadLength() {
+		return payloadLength;
+	}
+
+	/**
+	 * Get a copy of the type field. Available from the {@link #TYPE} event.
+	 *
+	 * @return type field bytes
+	 */
+
+	public byte[] getType() {
+		checkFieldRead(TYPE);
+		return Arrays.copyOf(type, typeLength);
+	}
+
+	/**
+	 * Compare the type field to the given bytes, without copying. Available from the {@link #TYPE} event.
+	 *
+	 * @param type type to compare with, for example {@link NdefRecord#RTD_URI}
+	 * @return true if the type field is equal to the given bytes
+	 */
+
+	public boolean typeEquals(byte[] type) {
+		checkFieldRead(TYPE);
+		if(type.length != typeLength) {
+			return false;
+		}
+		for(int i = 0; i < typeLength; i++) {
+			if(this.type[i] != type[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Get a copy of the id field. Available from the {@link #ID} event.
+	 *
+	 * @return id field bytes
+	 */
+
+	public byte[] getId() {
+		checkFieldRead(ID);
+		return Arrays.copyOf(id, idLength);
+	}
+
+	/**
+	 * Read (the remaining part of) the payload into a new array. Available at the {@link #PAYLOAD} event.
+	 *
+	 * @return payload bytes
+	 * @throws FormatException if the payload is truncated, or too big for an array
+	 * @throws IOException if the underlying stream cannot be read
+	 */
+
+	public byte[] getPayload() throws FormatException, IOException {
+		checkPayload();
+		if(payloadRemaining > Integer.MAX_VALUE - 8) {
+			throw new FormatException("payload too big for array: " + payloadRemaining);
+		}
+		byte[] payload = new byte[(int)payloadRemaining];
+		int count = 0;
+		while(count < payload.length) {
+			count += readPayload(payload, count, payload.length - count);
+		}
+		return payload;
+	}
+
+	/**
+	 * Read part of the payload. Available at the {@link #PAYLOAD} event.
+	 *
+	 * @param b destination array
+	 * @param off destination offset
+	 * @param len maximum number of bytes to read
+	 * @return number of bytes read, or -1 if the whole payload has been read
+	 * @throws FormatException if the payload is truncated
+	 * @throws IOException if the underlying stream cannot be read
+	 */
+
+	public int readPayload(byte[] b, int off, int len) throws FormatException, IOException {
+		checkPayload();
+		if(payloadRemaining == 0) {
+			return -1;
+		}
+		if(len == 0) {
+			return 0;
+		}
+		int count = (int)Math.min(len, payloadRemaining);
+		if(position < limit) {
+			count = Math.min(count, limit - position);
+			System.arraycopy(buffer, position, b, off, count);
+			position += count;
+		} else {
+			if(in == null) {
+				throw new FormatException("expected more data");
+			}
+			// read directly into the destination
+			bufferOffset += limit;
+			position = limit = 0;
+
+			count = in.read(b, off, count);
+			if(count == -1) {
+				throw new FormatException("expected more data");
+			}
+			bufferOffset += count;
+		}
+		payloadRemaining -= count;
+
+		return count;
+	}
+
+	/**
+	 * Get the number of payload bytes not yet read.
+	 *
+	 * @return number of remaining bytes
+	 */
+
+	public long getPayloadRemaining() {
+		return payloadRemaining;
+	}
+
+	/**
+	 * Get a stream over (the remaining part of) the payload. Available at the {@link #PAYLOAD} event.<br><br>
+	 *
+	 * For chunked records, the stream spans the payload of all following chunks, reading the chunk headers as it goes,
+	 * so that the whole logical payload can be processed in constant memory and without size limit. When the stream
+	 * has been read to the end, the reader is positioned at the last chunk. Use
+	 * {@link java.nio.channels.Channels#newChannel(InputStream)} if a channel is needed.<br><br>
+	 *
+	 * Invalid or truncated chunks result in an {@link IOException} with the {@link FormatException} as cause.
+	 *
+	 * @return payload stream
+	 */
+
+	public InputStream getPayloadInputStream() {
+		checkPayload();
+
+		return new PayloadInputStream();
+	}
+
+	private class PayloadInputStream extends InputStream {
+
+		@Override
+		public int read() throws IOException {
+			try {
+				if(!nextChunk()) {
+					return -1;
+				}
+				if(!fill(1)) {
+					throw new FormatException("expected more data");
+				}
+			} catch(FormatException e) {
+				throw new IOException(e);
+			}
+			payloadRemaining--;
+
+			return buffer[position++] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if(len == 0) {
+				return 0;
+			}
+			try {
+				if(!nextChunk()) {
+					return -1;
+				}
+				return readPayload(b, off, len);
+			} catch(FormatException e) {
+				throw new IOException(e);
+			}
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			if(n <= 0) {
+				return 0;
+			}
+			try {
+				if(!nextChunk()) {
+					return 0;
+				}
+				long count = Math.min(n, payloadRemaining);
+				NdefReader.this.skip(count);
+				payloadRemaining -= count;
+
+				return count;
+			} catch(FormatException e) {
+				throw new IOException(e);
+			}
+		}
+
+		@Override
+		public int available() {
+			if(event != PAYLOAD) {
+				return 0;
+			}
+			return (int)Math.min(payloadRemaining, limit - position);
+		}
+
+		/**
+		 * Advance past empty chunks.
+		 *
+		 * @return false if the end of the payload was reached
+		 */
+
+		private boolean nextChunk() throws FormatException, IOException {
+			checkPayload();
+			while(payloadRemaining == 0) {
+				if((flags & FLAG_CF) == 0) {
+					return false;
+				}
+				// within a chunked record, so there is always a next chunk
+				readHeader();
+				// continuation chunks have no type or id
+				event = PAYLOAD;
+			}
+			return true;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if(in != null) {
+			in.close();
+		}
+	}
+
+	private void checkFieldRead(int field) {
+		if(event < field || event == END_DOCUMENT) {
+			throw new IllegalStateException("Field not read yet, current event is " + event);
+		}
+	}
+
+	private void checkPayload() {
+		if(event != PAYLOAD) {
+			throw new IllegalStateException("Expected payload event, current event is " + event);
+		}
+	}
+
+	private void read(byte[] destination, int length) throws FormatException, IOException {
+		if(!fill(length)) {
+			throw new FormatException("expected more data");
+		}
+		System.arraycopy(buffer, position, destination, 0, length);
+		position += length;
+	}
+
+	/**
+	 * Make sure a number of bytes are available in the buffer.
+	 *
+	 * @param count number of bytes, at most the buffer size
+	 * @return false if the input ended before the bytes were available
+	 */
+
+	private boolean fill(int count) throws IOException {
+		if(limit - position >= count) {
+			return true;
+		}
+		if(in == null) {
+			return false;
+		}
+		if(position > 0) {
+			// compact
+			System.arraycopy(buffer, position, buffer, 0, limit - position);
+			bufferOffset += position;
+			limit -= position;
+			position = 0;
+		}
+		do {
+			int read = in.read(buffer, limit, buffer.length - limit);
+			if(read == -1) {
+				return false;
+			}
+			limit += read;
+		} while(limit < count);
+
+		return true;
+	}
+
+	private void skip(long count) throws FormatException, IOException {
+		long available = limit - position;
+		if(count <= available) {
+			position += count;
+
+			return;
+		}
+		if(in == null) {
+			throw new FormatException("expected more data");
+		}
+		count -= available;
+		bufferOffset += limit;
+		position = limit = 0;
+
+		while(count > 0) {
+			long skipped = in.skip(count);
+			if(skipped <= 0) {
+				// skip might not detect end of stream
+				if(in.read() == -1) {
+					throw new FormatException("expected more data");
+				}
+				skipped = 1;
+			}
+			count -= skipped;
+			bufferOffset += skipped;
+		}
+	}
+}
@@ -0,0 +1,141 @@
+/***************************************************************************
+ *
+ * This file is part of the 'NDEF Tools for Android' project at
+ * http://code.google.com/p/ndef-tools-for-android/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ****************************************************************************/
+
+package com.github.skjolber.ndef;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import android.annotation.SuppressLint;
+import android.nfc.FormatException;
+
+/**
+ *
+ * {@link Spliterator} which decodes the top-level records of a message scanned by {@link NdefIndex}, so that
+ * the records of large messages can be decoded in parallel.<br><br>
+ *
+ * Splitting happens at the record boundary closest to the middle of the remaining bytes, so that each half
+ * has about the same amount of data to decode. Records are decoded independently, so the decoder must be thread-safe
+ * for parallel use, like the default decoder is.<br><br>
+ *
+ * A record which cannot be decoded results in an {@link IllegalArgumentException} wrapping the {@link FormatException}.
+ *
+ * @author Thomas Rorvik Skjolberg (skjolber@gmail.com)
+ *
+ */
+
+@SuppressLint("NewApi")
+public final class NdefRecordSpliterator implements Spliterator<Record> {
+
+	private final NdefIndex index;
+
+	/** next record number within the message */
+	private int from;
+	/** last record number within the message (exclusive) */
+	private final int to;
+
+	/**
+	 * Create a spliterator over all top-level records.
+	 *
+	 * @param index scanned message
+	 */
+
+	public NdefRecordSpliterator(NdefIndex index) {
+		this(index, 0, index.getMessageRecordCount());
+	}
+
+	/**
+	 * Create a spliterator over a range of top-level records.
+	 *
+	 * @param index scanned message
+	 * @param from first record number within the message (inclusive)
+	 * @param to last record number within the message (exclusive)
+	 */
+
+	public NdefRecordSpliterator(NdefIndex index, int from, int to) {
+		if(from < 0 || to > index.getMessageRecordCount() || from > to) {
+			throw new IndexOutOfBoundsException("Records " + from + " to " + to + " of " + index.getMessageRecordCount());
+		}
+		this.index = index;
+		this.from = from;
+		this.to = to;
+	}
+
+	@Override
+	public boolean tryAdvance(Consumer<? super Record> action) {
+		if(from >= to) {
+			return false;
+		}
+		action.accept(decode(from++));
+
+		return true;
+	}
+
+	@Override
+	public void forEachRemaining(Consumer<? super Record> action) {
+		while(from < to) {
+			action.accept(decode(from++));
+		}
+	}
+
+	private Record decode(int n) {
+		try {
+			return index.decode(index.getMessageRecord(n));
+		} catch (FormatException e) {
+			throw new IllegalArgumentException("Unable to decode record " + n, e);
+		}
+	}
+
+	@Override
+	public Spliterator<Record> trySplit() {
+		if(to - from < 2) {
+			return null;
+		}
+		int start = index.getRecordOffset(index.getMessageRecord(from));
+		int end = index.getRecordEnd(index.getMessageRecord(to - 1));
+		int middle = start + (end - start) / 2;
+
+		// first record which starts after the middle, but leave at least one record in each part
+		int low = from + 1;
+		int high = to - 1;
+		while(low < high) {
+			int n = (low + high) >>> 1;
+			if(index.getRecordOffset(index.getMessageRecord(n)) <= middle) {
+				low = n + 1;
+			} else {
+				high = n;
+			}
+		}
+
+		NdefRecordSpliterator prefix = new NdefRecordSpliterator(index, from, low);
+		this.from = low;
+
+		return prefix;
+	}
+
+	@Override
+	public long estimateSize() {
+		return to - from;
+	}
+
+	@Override
+	public int characteristics() {
+		return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+	}
+}
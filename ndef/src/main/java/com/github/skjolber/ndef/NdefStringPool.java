@@ -0,0 +1,183 @@
+/***************************************************************************
+ *
+ * This file is part of the 'NDEF Tools for Android' project at
+ * http://code.google.com/p/ndef-tools-for-android/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ****************************************************************************/
+
+package com.github.skjolber.ndef;
+
+/**
+ *
+ * Bounded pool of strings decoded from bytes, for values which repeat across records, like MIME types, external types
+ * and carrier references.<br><br>
+ *
+ * Lookups hash the byte range and compare it to the bytes of the pooled string in the same slot, so a pooled value is
+ * returned without creating a new {@link String}. Each slot holds a single value, and a colliding value replaces it,
+ * so the pool never grows beyond its capacity. Only short ASCII values are pooled, as these decode to the same string
+ * in any ASCII-compatible charset; other values are decoded as usual.<br><br>
+ *
+ * This class is thread-safe without locking; concurrent misses for the same value may create more than one instance.
+ *
+ * @author Thomas Rorvik Skjolberg (skjolber@gmail.com)
+ *
+ */
+
+public final class NdefStringPool {
+
+	private static final NdefStringPool DEFAULT = new NdefStringPool(1024, 64);
+
+	/**
+	 * Get the pool used when parsing records.
+	 *
+	 * @return shared pool
+	 */
+
+	public static NdefStringPool getDefault() {
+		return DEFAULT;
+	}
+
+	/** immutable, so that a slot can be read without locking */
+	private static final class Entry {
+
+		private final int hash;
+		private final byte[] data;
+		private final String value;
+
+		private Entry(int hash, byte[] data, String value) {
+			this.hash = hash;
+			this.data = data;
+			this.value = value;
+		}
+	}
+
+	private final Entry[] table;
+	private final int maxLength;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param capacity number of slots, rounded up to a power of two
+	 * @param maxLength max length of a pooled value, in bytes. Longer values are decoded but not pooled.
+	 */
+
+	public NdefStringPool(int capacity, int maxLength) {
+		if(capacity <= 0) {
+			throw new IllegalArgumentException("Expected positive capacity");
+		}
+		if(maxLength < 0) {
+			throw new IllegalArgumentException("Expected non-negative max length");
+		}
+		int size = 1;
+		while(size < (1 << 30) && size < capacity) {
+			size <<= 1;
+		}
+		this.table = new Entry[size];
+		this.maxLength = maxLength;
+	}
+
+	/**
+	 * Get the string for UTF-8 bytes.
+	 *
+	 * @param data array containing the bytes
+	 * @param offset start offset
+	 * @param length number of bytes
+	 * @return pooled string, or a new string if the value is not pooled
+	 */
+
+	public String toUtf8String(byte[] data, int offset, int length) {
+		String value = get(data, offset, length);
+		if(value == null) {
+			return Record.toUtf8String(data, offset, length);
+		}
+		return value;
+	}
+
+	/**
+	 * Get the string for US-ASCII bytes.
+	 *
+	 * @param data array containing the bytes
+	 * @param offset start offset
+	 * @param length number of bytes
+	 * @return pooled string, or a new string if the value is not pooled
+	 */
+
+	public String toAsciiString(byte[] data, int offset, int length) {
+		String value = get(data, offset, length);
+		if(value == null) {
+			return Record.toAsciiString(data, offset, length);
+		}
+		return value;
+	}
+
+	private String get(byte[] data, int offset, int length) {
+		if(length == 0) {
+			return "";
+		}
+		if(length > maxLength) {
+			return null;
+		}
+		if(!Record.isAscii(data, offset, length)) {
+			return null;
+		}
+		int hash = Record.hashBytes(0, data, offset, length);
+
+		Entry[] table = this.table;
+		int index = hash & (table.length - 1);
+
+		Entry entry = table[index];
+		if(entry != null && entry.hash == hash && Record.equalsBytes(entry.data, data, offset, length)) {
+			return entry.value;
+		}
+
+		byte[] copy = new byte[length];
+		System.arraycopy(data, offset, copy, 0, length);
+		entry = new Entry(hash, copy, Record.toAsciiString(copy, 0, length));
+
+		table[index] = entry;
+
+		return entry.value;
+	}
+
+	/**
+	 * Remove all pooled values.
+	 */
+
+	public void clear() {
+		for(int i = 0; i < table.length; i++) {
+			table[i] = null;
+		}
+	}
+
+	/**
+	 * Get the number of slots.
+	 *
+	 * @return max number of pooled values
+	 */
+
+	public int getCapacity() {
+		return table.length;
+	}
+
+	/**
+	 * Get the max length of a pooled value.
+	 *
+	 * @return max length, in bytes
+	 */
+
+	public int getMaxLength() {
+		return maxLength;
+	}
+}
@@ -19,24 +19,10 @@
 
 package com.github.skjolber.ndef;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 
 import com.github.skjolber.ndef.externaltype.ExternalTypeRecord;
-import com.github.skjolber.ndef.wellknown.ActionRecord;
-import com.github.skjolber.ndef.wellknown.GcActionRecord;
-import com.github.skjolber.ndef.wellknown.GcDataRecord;
-import com.github.skjolber.ndef.wellknown.GcTargetRecord;
-import com.github.skjolber.ndef.wellknown.GenericControlRecord;
-import com.github.skjolber.ndef.wellknown.SignatureRecord;
-import com.github.skjolber.ndef.wellknown.SmartPosterRecord;
-import com.github.skjolber.ndef.wellknown.TextRecord;
-import com.github.skjolber.ndef.wellknown.UriRecord;
-import com.github.skjolber.ndef.wellknown.handover.AlternativeCarrierRecord;
-import com.github.skjolber.ndef.wellknown.handover.CollisionResolutionRecord;
-import com.github.skjolber.ndef.wellknown.handover.ErrorRecord;
-import com.github.skjolber.ndef.wellknown.handover.HandoverCarrierRecord;
-import com.github.skjolber.ndef.wellknown.handover.HandoverRequestRecord;
-import com.github.skjolber.ndef.wellknown.handover.HandoverSelectRecord;
 
 import android.annotation.SuppressLint;
 import android.nfc.FormatException;
@@ -160,7 +146,14 @@ public abstract class Record {
         	break;
         }
         case NdefRecord.TNF_MIME_MEDIA: {
-        	record = MimeRecord.parse(ndefRecord);
+        	byte[] type = ndefRecord.getType();
+        	RecordParser parser = RecordParserRegistry.getDefault().get(tnf, type, 0, type.length);
+        	if(parser != null) {
+        		byte[] payload = ndefRecord.getPayload();
+        		record = parser.parse(NdefDecoder.getDefault(), type, 0, type.length, payload, 0, payload.length);
+        	} else {
+        		record = MimeRecord.parse(ndefRecord);
+        	}
         	
         	break;
         }
@@ -170,7 +163,9 @@ public abstract class Record {
         	break;
         }
         case NdefRecord.TNF_EXTERNAL_TYPE: {
-        	record = ExternalTypeRecord.parse(ndefRecord);
+        	byte[] type = ndefRecord.getType();
+        	byte[] payload = ndefRecord.getPayload();
+        	record = ExternalTypeRecord.parse(NdefDecoder.getDefault(), type, 0, type.length, payload, 0, payload.length);
 
         	break;
         }
@@ -207,141 +202,268 @@ public abstract class Record {
      */
 	
 	protected static Record parseWellKnown(NdefRecord ndefRecord) throws FormatException {
-		
-        // lame type search among supported types
-        byte[] type = ndefRecord.getType();
-        if(type.length == 1) { 
-        	// uri = U
-        	// text = T
-        	// gctarget = t
-        	// gcdata = d
-        	// gcaction a
-        	switch(type[0]) {
-        	case 'U' : {
-        		return UriRecord.parseNdefRecord(ndefRecord);
-        	}
-        	case 'T' : {
-        		
-        		return TextRecord.parseNdefRecord(ndefRecord);
-        	}
-        	case 't' : {
-        		
-        		return GcTargetRecord.parseNdefRecord(ndefRecord);
-        	}
-        	case 'd' : {
-        		
-        		return GcDataRecord.parseNdefRecord(ndefRecord);
-        	}
-        	case 'a' : {
-        		
-        		return GcActionRecord.parseNdefRecord(ndefRecord);
-        	}
-        	}
-        	
-        } else if(type.length == 2) {
-
-        	// smartposter = Sp
-        	// genericcontrol = Gc
-        	// alternativecarrier = ac
-        	// handovercarrier = Hc
-        	// handoverselect = Hs
-        	// handoverrequest = Hr
-        	// collision resolution = cr
-
-        	switch(type[0]) {
-        	case 'S' : {
-        		if(type[1] == 'p') {
-        			return SmartPosterRecord.parseNdefRecord(ndefRecord);
-        		}
-        		break;
-        	}
-        	case 'G' : {
-        		if(type[1] == 'c') {
-        			return GenericControlRecord.parseNdefRecord(ndefRecord);
-        		}
-        		break;
-        	}
-        	case 'a' : {
-        		
-        		if(type[1] == 'c') {
-        			return AlternativeCarrierRecord.parseNdefRecord(ndefRecord);
-        		}
-        		break;
-        	}
-        	case 'c' : {
-        		
-        		if(type[1] == 'r') {
-        			return CollisionResolutionRecord.parseNdefRecord(ndefRecord);
-        		}
-        		break;
-        	}
-        	case 'H' : {
-        		if(type[1] == 'c') {
-        			return HandoverCarrierRecord.parseNdefRecord(ndefRecord);
-        		} else if(type[1] == 's') {
-            		return HandoverSelectRecord.parseNdefRecord(ndefRecord);
-        		} else if(type[1] == 'r') {
-            		return HandoverRequestRecord.parseNdefRecord(ndefRecord);
-            	}
-        		break;
-        	}
-        	}
-        	
-        } else if(type.length == 3) {
-        	// action = act
-        	// error = err
-        	// signature = Sig
-        	if(type[0] == 'a' && type[1] == 'c' && type[2] == 't') {
-        		return ActionRecord.parseNdefRecord(ndefRecord);
-        	} else if(type[0] == 'e' && type[1] == 'r' && type[2] == 'r') {
-        		return ErrorRecord.parseNdefRecord(ndefRecord);
-        	} else if(type[0] == 'S' && type[1] == 'i' && type[2] == 'g') {
-        		return SignatureRecord.parseNdefRecord(ndefRecord);
-        	} 
-        }
-        
-        return null;
-        
+		byte[] type = ndefRecord.getType();
+
+		RecordParser parser = RecordParserRegistry.getDefault().get(NdefRecord.TNF_WELL_KNOWN, type, 0, type.length);
+		if(parser != null) {
+			byte[] payload = ndefRecord.getPayload();
+
+			return parser.parse(NdefDecoder.getDefault(), type, 0, type.length, payload, 0, payload.length);
+		}
+		return null;
 	}
 	
 	/**
-	 * Parse single record.
+	 * Parse a record directly from its fields, without going via {@link NdefRecord}. The record id is not set.
 	 * 
-     * @param record record to parse
+	 * @param tnf record TNF
+	 * @param type array containing the record type
+	 * @param typeOffset type start offset
+	 * @param typeLength type length
+	 * @param payload array containing the record payload
+	 * @param payloadOffset payload start offset
+	 * @param payloadLength payload length
+	 * @return corresponding {@link Record} subclass - {@link UnsupportedRecord} is not known.
+	 * @throws FormatException if known record type cannot be parsed
+	 */
+
+	public static Record parse(short tnf, byte[] type, int typeOffset, int typeLength, byte[] payload, int payloadOffset, int payloadLength) throws FormatException {
+		return NdefDecoder.getDefault().parse(tnf, type, typeOffset, typeLength, payload, payloadOffset, payloadLength);
+	}
+
+	/**
+     * Parse a well-known record directly from its fields into a well-known high-level {@link Record}.
+     * 
+	 * @param type array containing the record type
+	 * @param typeOffset type start offset
+	 * @param typeLength type length
+	 * @param payload array containing the record payload
+	 * @param payloadOffset payload start offset
+	 * @param payloadLength payload length
      * @return corresponding {@link Record} subclass - or null if not known
      * @throws FormatException if known record type cannot be parsed
-	 * @throws IllegalArgumentException if zero or more than one record
+     */
+	
+	protected static Record parseWellKnown(byte[] type, int typeOffset, int typeLength, byte[] payload, int payloadOffset, int payloadLength) throws FormatException {
+		RecordParser parser = RecordParserRegistry.getDefault().get(NdefRecord.TNF_WELL_KNOWN, type, typeOffset, typeLength);
+		if(parser != null) {
+			return parser.parse(NdefDecoder.getDefault(), type, typeOffset, typeLength, payload, payloadOffset, payloadLength);
+		}
+		return null;
+	}
+	
+	/**
+	 * Parse single record. MB and ME flags are ignored.
+	 * 
+     * @param record record to parse
+     * @return corresponding {@link Record} subclass - or null if not known
+     * @throws FormatException if known record type cannot be parsed, or if zero or more than one record
 	 */
 	
 	protected static Record parse(byte[] record) throws FormatException {
-		NdefMessage message = new NdefMessage(record);
-		if(message.getRecords().length != 1) {
-			throw new IllegalArgumentException("Single record expected");
-		}
-		return Record.parse(message.getRecords()[0]);
+		return parse(record, 0, record.length);
 	}
 	
 	/**
-	 * Parse single record.
+	 * Parse single record. MB and ME flags are ignored.
 	 * 
      * @param record record to parse
      * @param offset start offset
      * @param length number of bytes
      * @return corresponding {@link Record} subclass - or null if not known
-     * @throws FormatException if known record type cannot be parsed
-	 * @throws IllegalArgumentException if zero or more than one record
+     * @throws FormatException if known record type cannot be parsed, or if zero or more than one record
 	 */
 
 	
 	protected static Record parse(byte[] record, int offset, int length) throws FormatException {
-		byte[] recordsPayload = new byte[length];
-		System.arraycopy(record, offset, recordsPayload, 0, length);
-		
-		return parse(recordsPayload);
+		return parse(NdefDecoder.getDefault(), record, offset, length);
 	}	
-	
+
+	/**
+	 * Parse single record. MB and ME flags are ignored.
+	 * 
+     * @param decoder decoder
+     * @param record record to parse
+     * @param offset start offset
+     * @param length number of bytes
+     * @return corresponding {@link Record} subclass - or null if not known
+     * @throws FormatException if known record type cannot be parsed, or if zero or more than one record
+	 */
+
+	protected static Record parse(NdefDecoder decoder, byte[] record, int offset, int length) throws FormatException {
+		return decoder.decodeRecord(record, offset, length);
+	}
+
+	/**
+	 * Parse nested message, i.e. the records within the payload of another record. MB and ME flags are ignored.
+	 * 
+	 * @param payload array containing the nested message
+	 * @param offset start offset
+	 * @param length number of bytes
+	 * @return corresponding {@link Message} consisting of one or more {@link Record}s.
+	 * @throws FormatException if known record type cannot be parsed
+	 */
+
+	protected static Message parseMessage(byte[] payload, int offset, int length) throws FormatException {
+		return parseMessage(NdefDecoder.getDefault(), payload, offset, length);
+	}
+
+	/**
+	 * Parse nested message, i.e. the records within the payload of another record. MB and ME flags are ignored.
+	 * 
+	 * @param decoder decoder
+	 * @param payload array containing the nested message
+	 * @param offset start offset
+	 * @param length number of bytes
+	 * @return corresponding {@link Message} consisting of one or more {@link Record}s.
+	 * @throws FormatException if known record type cannot be parsed
+	 */
+
+	protected static Message parseMessage(NdefDecoder decoder, byte[] payload, int offset, int length) throws FormatException {
+		return decoder.decodeNested(payload, offset, length);
+	}
+
+	/**
+	 * Check whether bytes are all ASCII. Bytes are checked 8 at a time, with a single branch for each 8 bytes.
+	 * 
+	 * @param data array containing the bytes
+	 * @param offset start offset
+	 * @param length number of bytes
+	 * @return true if no byte has the high bit set
+	 */
+
+	protected static boolean isAscii(byte[] data, int offset, int length) {
+		int end = offset + length;
+		int i = offset;
+		for(; i + 8 <= end; i += 8) {
+			if((data[i] | data[i + 1] | data[i + 2] | data[i + 3] | data[i + 4] | data[i + 5] | data[i + 6] | data[i + 7]) < 0) {
+				return false;
+			}
+		}
+		int bits = 0;
+		for(; i < end; i++) {
+			bits |= data[i];
+		}
+		return bits >= 0;
+	}
+
+	/**
+	 * Decode UTF-8 bytes. ASCII bytes, which are the common case for types, URIs and references,
+	 * are converted directly without going through the UTF-8 decoder.
+	 * 
+	 * @param data array containing the bytes
+	 * @param offset start offset
+	 * @param length number of bytes
+	 * @return the decoded string
+	 */
+
+	protected static String toUtf8String(byte[] data, int offset, int length) {
+		if(isAscii(data, offset, length)) {
+			// ASCII is a subset of Latin-1, which maps bytes directly to chars
+			return new String(data, offset, length, StandardCharsets.ISO_8859_1);
+		}
+		return new String(data, offset, length, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Decode US-ASCII bytes. Bytes outside of ASCII are decoded to the replacement character, like the US-ASCII charset does.
+	 * 
+	 * @param data array containing the bytes
+	 * @param offset start offset
+	 * @param length number of bytes
+	 * @return the decoded string
+	 */
+
+	protected static String toAsciiString(byte[] data, int offset, int length) {
+		if(isAscii(data, offset, length)) {
+			return new String(data, offset, length, StandardCharsets.ISO_8859_1);
+		}
+		return new String(data, offset, length, StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * Compare a string to ASCII bytes, without decoding the bytes.
+	 * 
+	 * @param string string to compare, or null
+	 * @param data array containing the bytes
+	 * @param offset start offset
+	 * @param length number of bytes
+	 * @return true if all bytes are ASCII and equal to the characters of the string
+	 */
+
+	protected static boolean equalsAscii(String string, byte[] data, int offset, int length) {
+		return equalsAscii(string, 0, data, offset, length);
+	}
+
+	/**
+	 * Compare the end of a string to ASCII bytes, without decoding the bytes.
+	 * 
+	 * @param string string to compare, or null
+	 * @param stringOffset index of the first character to compare
+	 * @param data array containing the bytes
+	 * @param offset start offset
+	 * @param length number of bytes
+	 * @return true if all bytes are ASCII and equal to the characters of the string from the given index
+	 */
+
+	protected static boolean equalsAscii(String string, int stringOffset, byte[] data, int offset, int length) {
+		if(string == null || string.length() - stringOffset != length) {
+			return false;
+		}
+		for(int i = 0; i < length; i++) {
+			byte b = data[offset + i];
+			if(b < 0 || string.charAt(stringOffset + i) != b) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Hash bytes, for tables which are indexed by the low bits of the hash.
+	 * 
+	 * @param seed initial hash value, for example the TNF of a record type
+	 * @param data array containing the bytes
+	 * @param offset start offset
+	 * @param length number of bytes
+	 * @return hash, with the high bits spread to the low bits
+	 */
+
+	protected static int hashBytes(int seed, byte[] data, int offset, int length) {
+		int hash = seed;
+		for(int i = offset; i < offset + length; i++) {
+			hash = 31 * hash + data[i];
+		}
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * Compare a whole array to a range of bytes.
+	 * 
+	 * @param key array to compare
+	 * @param data array containing the bytes
+	 * @param offset start offset
+	 * @param length number of bytes
+	 * @return true if the range has the same length and contents as the key
+	 */
+
+	protected static boolean equalsBytes(byte[] key, byte[] data, int offset, int length) {
+		if(key.length != length) {
+			return false;
+		}
+		for(int i = 0; i < length; i++) {
+			if(key[i] != data[offset + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	protected byte[] id = null;
 
+	/** the bytes this record was decoded from, or null if created or changed since */
+	private byte[] originalEncoding = null;
+
 	/**
 	 * Get the record id
 	 * 
@@ -360,6 +482,7 @@ public abstract class Record {
 
 	public void setId(byte[] id) {
 		this.id = id;
+		clearOriginalEncoding();
 	}
 
 	/**
@@ -371,6 +494,7 @@ public abstract class Record {
 	
 	public void setKey(String key) {
 		this.id = key.getBytes();
+		clearOriginalEncoding();
 	}
 	
 	/**
@@ -394,6 +518,71 @@ public abstract class Record {
 		return id != null && id.length > 0;
 	}
 
+	/**
+	 * Check whether this record still holds the bytes it was decoded from, so that it is written verbatim
+	 * by {@link Message#writeTo(java.nio.ByteBuffer)} and {@link Message#toByteArray()}. Setters clear the original bytes,
+	 * but changes made through objects returned by getters, like arrays and lists, are not detected.
+	 * 
+	 * @return true if the original bytes are kept
+	 * @see NdefDecoder#isPreserveEncoding()
+	 */
+
+	public boolean hasOriginalEncoding() {
+		return originalEncoding != null;
+	}
+
+	/**
+	 * Discard the bytes this record was decoded from, so that it is encoded from its fields. Setters call this
+	 * method, call it directly after changing the contents of objects returned by getters.
+	 */
+
+	public void clearOriginalEncoding() {
+		this.originalEncoding = null;
+	}
+
+	/**
+	 * Check whether the bytes this record was decoded from can be kept. Records which contain other records return false,
+	 * as the contained records could be changed without the container knowing.
+	 * 
+	 * @return true if supported
+	 */
+
+	protected boolean isOriginalEncodingSupported() {
+		return true;
+	}
+
+	byte[] getOriginalEncoding() {
+		return originalEncoding;
+	}
+
+	void setOriginalEncoding(byte[] originalEncoding) {
+		this.originalEncoding = originalEncoding;
+	}
+
+	/**
+	 * Convert record to its {@link NdefRecord} representation, from the original bytes if available.
+	 * 
+	 * @return record in {@link NdefRecord} form.
+	 */
+
+	NdefRecord toNdefRecord() {
+		byte[] encoded = originalEncoding;
+		if(encoded == null) {
+			return getNdefRecord();
+		}
+		byte flag = encoded[0];
+		boolean sr = (flag & FLAG_SR) != 0;
+		boolean il = (flag & FLAG_IL) != 0;
+
+		int typeLength = encoded[1] & 0xFF;
+		int idLength = il ? encoded[sr ? 3 : 6] & 0xFF : 0;
+		int typeOffset = 2 + (sr ? 1 : 4) + (il ? 1 : 0);
+		int idOffset = typeOffset + typeLength;
+		int payloadOffset = idOffset + idLength;
+
+		return new NdefRecord((short)(flag & 0x07), Arrays.copyOfRange(encoded, typeOffset, idOffset), Arrays.copyOfRange(encoded, idOffset, payloadOffset), Arrays.copyOfRange(encoded, payloadOffset, encoded.length));
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
@@ -425,12 +614,19 @@ public abstract class Record {
 	public abstract NdefRecord getNdefRecord();
 
 	/**
-	 * Convert record to bytes. 
+	 * Convert record to bytes. The original bytes are used if the record was decoded and has not been changed since.
 	 * 
 	 * @return record in byte form as it was an {@link NdefMessage} with a single record.
 	 */
 	@SuppressLint("NewApi")
 	public byte[] toByteArray() {
+		byte[] encoded = originalEncoding;
+		if(encoded != null) {
+			encoded = encoded.clone();
+			encoded[0] |= FLAG_MB | FLAG_ME;
+
+			return encoded;
+		}
 		if (android.os.Build.VERSION.SDK_INT >= 16) {
 			return new NdefMessage(getNdefRecord()).toByteArray();
 		} else {
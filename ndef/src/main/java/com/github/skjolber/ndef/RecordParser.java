@@ -0,0 +1,51 @@
+/***************************************************************************
+ *
+ * This file is part of the 'NDEF Tools for Android' project at
+ * http://code.google.com/p/ndef-tools-for-android/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ****************************************************************************/
+
+package com.github.skjolber.ndef;
+
+import android.nfc.FormatException;
+
+/**
+ *
+ * Parser for the payload of a single record type, as registered in a {@link RecordParserRegistry}.<br><br>
+ *
+ * Record fields are passed as ranges of arrays which might be reused by the caller, so copy what must be kept.
+ *
+ * @author Thomas Rorvik Skjolberg (skjolber@gmail.com)
+ *
+ */
+
+public interface RecordParser {
+
+	/**
+	 * Parse a record. The record id is set by the caller.
+	 *
+	 * @param decoder decoder for records nested within the payload, if any
+	 * @param type array containing the record type
+	 * @param typeOffset type start offset
+	 * @param typeLength type length
+	 * @param payload array containing the record payload
+	 * @param payloadOffset payload start offset
+	 * @param payloadLength payload length
+	 * @return a newly created {@link Record}, never null
+	 * @throws FormatException if the record cannot be parsed
+	 */
+
+	Record parse(NdefDecoder decoder, byte[] type, int typeOffset, int typeLength, byte[] payload, int payloadOffset, int payloadLength) throws FormatException;
+}
@@ -0,0 +1,290 @@
+/***************************************************************************
+ *
+ * This file is part of the 'NDEF Tools for Android' project at
+ * http://code.google.com/p/ndef-tools-for-android/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ****************************************************************************/
+
+package com.github.skjolber.ndef;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.github.skjolber.ndef.externaltype.ExternalTypeRecord;
+import com.github.skjolber.ndef.externaltype.ExternalTypeRecord.ExternalTypeRecordParser;
+
+import android.nfc.FormatException;
+import android.nfc.NdefRecord;
+
+/**
+ *
+ * Registry of {@link RecordParser}s, keyed on TNF and type bytes.<br><br>
+ *
+ * Lookups hash and compare the type bytes directly, so that no {@link String} is created to find the parser.
+ * Types are matched exactly, so a record type must have the same case as the registered type. External types
+ * fall back to parsers registered for the whole domain, see {@link #registerExternalType(String, String, ExternalTypeRecordParser)}.<br><br>
+ *
+ * Registration copies the current table, so lookups never block and always see a consistent snapshot.
+ *
+ * @author Thomas Rorvik Skjolberg (skjolber@gmail.com)
+ *
+ */
+
+public class RecordParserRegistry {
+
+	/** type which matches all types within an external type domain */
+	public static final String WILDCARD = "*";
+
+	/** key for domain wildcards, outside the range of TNF values so that it cannot collide with a record type */
+	private static final short WILDCARD_KEY = 0x100;
+
+	private static final Entry[] EMPTY_TABLE = new Entry[1];
+
+	private static final RecordParserRegistry DEFAULT = new RecordParserRegistry();
+
+	static {
+		BuiltInRecordParser.register(DEFAULT);
+	}
+
+	/**
+	 * Get the registry used by the static parse methods, like {@link Record#parse(NdefRecord)}. Types registered here
+	 * apply to all such parsing.
+	 *
+	 * @return shared registry, preloaded with the built-in record types
+	 */
+
+	public static RecordParserRegistry getDefault() {
+		return DEFAULT;
+	}
+
+	private static final class Entry {
+
+		private final short tnf;
+		private final byte[] type;
+		private final int hash;
+		private final RecordParser parser;
+		private final Entry next;
+
+		private Entry(short tnf, byte[] type, int hash, RecordParser parser, Entry next) {
+			this.tnf = tnf;
+			this.type = type;
+			this.hash = hash;
+			this.parser = parser;
+			this.next = next;
+		}
+	}
+
+	private static final class ExternalTypeRecordParserAdapter implements RecordParser {
+
+		private final ExternalTypeRecordParser parser;
+
+		private ExternalTypeRecordParserAdapter(ExternalTypeRecordParser parser) {
+			this.parser = parser;
+		}
+
+		@Override
+		public Record parse(NdefDecoder decoder, byte[] type, int typeOffset, int typeLength, byte[] payload, int payloadOffset, int payloadLength) throws FormatException {
+			String domainType = Record.toUtf8String(type, typeOffset, typeLength);
+
+			int colon = domainType.lastIndexOf(':');
+
+			ExternalTypeRecord record = parser.parse(domainType.substring(0, colon), domainType.substring(colon + 1), Arrays.copyOfRange(payload, payloadOffset, payloadOffset + payloadLength));
+			if(record == null) {
+				throw new IllegalArgumentException("External Type record " + domainType + " cannot be null");
+			}
+			return record;
+		}
+	}
+
+	/** immutable once published */
+	private volatile Entry[] table = EMPTY_TABLE;
+	private int size;
+
+	/**
+	 * Create an empty registry.
+	 */
+
+	public RecordParserRegistry() {
+	}
+
+	/**
+	 * Create a registry with the same types as another registry.
+	 *
+	 * @param registry registry to copy
+	 */
+
+	public RecordParserRegistry(RecordParserRegistry registry) {
+		synchronized (registry) {
+			this.table = registry.table;
+			this.size = registry.size;
+		}
+	}
+
+	/**
+	 * Register a parser, replacing any previous parser for the same TNF and type.
+	 *
+	 * @param tnf record TNF
+	 * @param type record type, for example <code>U</code>, <code>text/plain</code> or <code>example.com:mytype</code>
+	 * @param parser parser
+	 */
+
+	public void register(short tnf, String type, RecordParser parser) {
+		register(tnf, type.getBytes(StandardCharsets.UTF_8), parser);
+	}
+
+	/**
+	 * Register a parser, replacing any previous parser for the same TNF and type.
+	 *
+	 * @param tnf record TNF
+	 * @param type record type bytes
+	 * @param parser parser
+	 * @throws IllegalArgumentException if the TNF is not within 0 to 7
+	 */
+
+	public void register(short tnf, byte[] type, RecordParser parser) {
+		if(tnf < 0 || tnf > 0x07) {
+			throw new IllegalArgumentException("TNF out of range: " + tnf);
+		}
+		if(parser == null) {
+			throw new IllegalArgumentException("Expected parser");
+		}
+		put(tnf, type.clone(), parser);
+	}
+
+	private synchronized void put(short tnf, byte[] type, RecordParser parser) {
+		int hash = Record.hashBytes(tnf, type, 0, type.length);
+
+		Entry[] current = table;
+
+		int capacity = current.length;
+		while(capacity < (size + 1) * 2) {
+			capacity = capacity * 2;
+		}
+
+		// copy on write
+		Entry[] next = new Entry[capacity];
+		int count = 0;
+		for(Entry entry : current) {
+			for(; entry != null; entry = entry.next) {
+				if(entry.hash == hash && entry.tnf == tnf && Record.equalsBytes(entry.type, type, 0, type.length)) {
+					continue;
+				}
+				int index = entry.hash & (capacity - 1);
+				next[index] = new Entry(entry.tnf, entry.type, entry.hash, entry.parser, next[index]);
+				count++;
+			}
+		}
+		int index = hash & (capacity - 1);
+		next[index] = new Entry(tnf, type, hash, parser, next[index]);
+
+		this.size = count + 1;
+		this.table = next;
+	}
+
+	/**
+	 * Register a parser for an external type, replacing any previous parser for the same domain and type.
+	 * The parser is not asked whether it can parse the type. The domain and type are matched exactly, so they must
+	 * have the same case as the record types; note that {@link NdefRecord#createExternal(String, String, byte[])}
+	 * lower-cases them when encoding.
+	 *
+	 * @param domain external type domain, for example <code>example.com</code>
+	 * @param type external type type, or {@link #WILDCARD} to register the parser for all types within the domain
+	 * which have no parser of their own
+	 * @param parser parser
+	 */
+
+	public void registerExternalType(String domain, String type, ExternalTypeRecordParser parser) {
+		if(parser == null) {
+			throw new IllegalArgumentException("Expected parser");
+		}
+		if(domain.length() == 0) {
+			throw new IllegalArgumentException("Expected domain");
+		}
+		if(type.length() == 0) {
+			throw new IllegalArgumentException("Expected type");
+		}
+		if(type.equals(WILDCARD)) {
+			put(WILDCARD_KEY, domain.getBytes(StandardCharsets.UTF_8), new ExternalTypeRecordParserAdapter(parser));
+		} else {
+			register(NdefRecord.TNF_EXTERNAL_TYPE, domain + ':' + type, new ExternalTypeRecordParserAdapter(parser));
+		}
+	}
+
+	/**
+	 * Get the parser for a record type.
+	 *
+	 * @param tnf record TNF
+	 * @param type array containing the record type
+	 * @param typeOffset type start offset
+	 * @param typeLength type length
+	 * @return parser, or null if no parser is registered for the type
+	 */
+
+	public RecordParser get(short tnf, byte[] type, int typeOffset, int typeLength) {
+		Entry[] table = this.table;
+
+		RecordParser parser = get(table, tnf, type, typeOffset, typeLength);
+		if(parser == null && tnf == NdefRecord.TNF_EXTERNAL_TYPE) {
+			// domain wildcard, for non-empty types only
+			for(int i = typeOffset + typeLength - 1; i >= typeOffset; i--) {
+				if(type[i] == ':') {
+					if(i + 1 < typeOffset + typeLength) {
+						parser = get(table, WILDCARD_KEY, type, typeOffset, i - typeOffset);
+					}
+					break;
+				}
+			}
+		}
+		return parser;
+	}
+
+	private static RecordParser get(Entry[] table, short tnf, byte[] type, int typeOffset, int typeLength) {
+		int hash = Record.hashBytes(tnf, type, typeOffset, typeLength);
+		for(Entry entry = table[hash & (table.length - 1)]; entry != null; entry = entry.next) {
+			if(entry.hash == hash && entry.tnf == tnf && Record.equalsBytes(entry.type, type, typeOffset, typeLength)) {
+				return entry.parser;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Get the number of registered types.
+	 *
+	 * @return number of types
+	 */
+
+	public synchronized int size() {
+		return size;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		for(Entry entry : table) {
+			for(; entry != null; entry = entry.next) {
+				if(builder.length() > 0) {
+					builder.append(", ");
+				}
+				if(entry.tnf == WILDCARD_KEY) {
+					builder.append(NdefRecord.TNF_EXTERNAL_TYPE).append(':').append(new String(entry.type, StandardCharsets.UTF_8)).append(':').append(WILDCARD);
+				} else {
+					builder.append(entry.tnf).append(':').append(new String(entry.type, StandardCharsets.UTF_8));
+				}
+			}
+		}
+		return getClass().getSimpleName() + "[" + builder + "]";
+	}
+}
@@ -0,0 +1,45 @@
+/***************************************************************************
+ *
+ * This file is part of the 'NDEF Tools for Android' project at
+ * http://code.google.com/p/ndef-tools-for-android/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ****************************************************************************/
+
+package com.github.skjolber.ndef;
+
+/**
+ *
+ * Selects which records to decode, based on their header only. Records which are not selected are skipped,
+ * so that their payload is neither copied nor parsed.
+ *
+ * @author Thomas Rorvik Skjolberg (skjolber@gmail.com)
+ *
+ * @see RecordTypeSelector
+ */
+
+public interface RecordSelector {
+
+	/**
+	 * Check whether a record should be decoded.
+	 *
+	 * @param tnf record TNF
+	 * @param type array containing the record type
+	 * @param typeOffset type start offset
+	 * @param typeLength type length
+	 * @return true if the record should be decoded
+	 */
+
+	boolean select(short tnf, byte[] type, int typeOffset, int typeLength);
+}
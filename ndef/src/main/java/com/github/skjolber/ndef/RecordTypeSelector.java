@@ -0,0 +1,155 @@
+/***************************************************************************
+ *
+ * This file is part of the 'NDEF Tools for Android' project at
+ * http://code.google.com/p/ndef-tools-for-android/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ****************************************************************************/
+
+package com.github.skjolber.ndef;
+
+import java.nio.charset.StandardCharsets;
+
+import com.github.skjolber.ndef.externaltype.AndroidApplicationRecord;
+
+import android.nfc.NdefRecord;
+
+/**
+ *
+ * {@link RecordSelector} which selects records by TNF and type.<br><br>
+ *
+ * Types are matched exactly, including case. Not thread-safe while types are being added.
+ *
+ * @author Thomas Rorvik Skjolberg (skjolber@gmail.com)
+ *
+ */
+
+public class RecordTypeSelector implements RecordSelector {
+
+	private static final class Entry {
+
+		private final short tnf;
+		private final byte[] type;
+		private final int hash;
+		private final Entry next;
+
+		private Entry(short tnf, byte[] type, int hash, Entry next) {
+			this.tnf = tnf;
+			this.type = type;
+			this.hash = hash;
+			this.next = next;
+		}
+	}
+
+	/** selected types, chained on hash collisions */
+	private Entry[] types = new Entry[8];
+	private int size;
+	private final boolean[] tnfs = new boolean[8];
+
+	/**
+	 * Select all records of a TNF, regardless of type.
+	 *
+	 * @param tnf record TNF
+	 * @return this instance
+	 * @throws IllegalArgumentException if the TNF is not within 0 to 7
+	 */
+
+	public RecordTypeSelector add(short tnf) {
+		checkTnf(tnf);
+		tnfs[tnf] = true;
+
+		return this;
+	}
+
+	/**
+	 * Select records of a type.
+	 *
+	 * @param tnf record TNF
+	 * @param type record type, for example <code>U</code>, <code>text/plain</code> or <code>example.com:mytype</code>
+	 * @return this instance
+	 * @throws IllegalArgumentException if the TNF is not within 0 to 7
+	 */
+
+	public RecordTypeSelector add(short tnf, String type) {
+		return add(tnf, type.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Select well-known records of a type.
+	 *
+	 * @param type well-known type, for example {@link NdefRecord#RTD_URI}
+	 * @return this instance
+	 */
+
+	public RecordTypeSelector addWellKnown(byte[] type) {
+		return add(NdefRecord.TNF_WELL_KNOWN, type.clone());
+	}
+
+	/**
+	 * Select Android Application Records.
+	 *
+	 * @return this instance
+	 */
+
+	public RecordTypeSelector addAndroidApplication() {
+		return add(NdefRecord.TNF_EXTERNAL_TYPE, AndroidApplicationRecord.DOMAIN + ":" + AndroidApplicationRecord.TYPE);
+	}
+
+	private RecordTypeSelector add(short tnf, byte[] type) {
+		checkTnf(tnf);
+		if(contains(tnf, type, 0, type.length)) {
+			return this;
+		}
+		if(size + 1 > types.length / 2) {
+			Entry[] next = new Entry[types.length * 2];
+			for(Entry entry : types) {
+				for(; entry != null; entry = entry.next) {
+					int index = entry.hash & (next.length - 1);
+					next[index] = new Entry(entry.tnf, entry.type, entry.hash, next[index]);
+				}
+			}
+			types = next;
+		}
+		int hash = Record.hashBytes(tnf, type, 0, type.length);
+		int index = hash & (types.length - 1);
+		types[index] = new Entry(tnf, type, hash, types[index]);
+		size++;
+
+		return this;
+	}
+
+	@Override
+	public boolean select(short tnf, byte[] type, int typeOffset, int typeLength) {
+		if(tnfs[tnf & 0x07]) {
+			return true;
+		}
+		return contains(tnf, type, typeOffset, typeLength);
+	}
+
+	private boolean contains(short tnf, byte[] type, int typeOffset, int typeLength) {
+		int hash = Record.hashBytes(tnf, type, typeOffset, typeLength);
+		for(Entry entry = types[hash & (types.length - 1)]; entry != null; entry = entry.next) {
+			if(entry.hash == hash && entry.tnf == tnf && Record.equalsBytes(entry.type, type, typeOffset, typeLength)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void checkTnf(short tnf) {
+		if(tnf < 0 || tnf > 0x07) {
+			throw new IllegalArgumentException("TNF out of range: " + tnf);
+		}
+	}
+}
@@ -19,6 +19,7 @@
 
 package com.github.skjolber.ndef;
 
+import java.util.Arrays;
 
 import android.nfc.NdefRecord;
 
@@ -55,6 +56,15 @@ public class UnknownRecord extends Record {
 		
 		return new UnknownRecord(ndefRecord.getPayload());
 	}
+
+	public static Record parse(byte[] type, int typeOffset, int typeLength, byte[] payload, int payloadOffset, int payloadLength) {
+		// check that type is zero length
+		if(typeLength > 0) {
+			throw new IllegalArgumentException("Record type not expected");
+		}
+		
+		return new UnknownRecord(Arrays.copyOfRange(payload, payloadOffset, payloadOffset + payloadLength));
+	}
 	
 	private byte[] payload;
 
@@ -71,6 +81,7 @@ public class UnknownRecord extends Record {
 
 	public void setPayload(byte[] payload) {
 		this.payload = payload;
+		clearOriginalEncoding();
 	}
 
 	public boolean hasPayload() {
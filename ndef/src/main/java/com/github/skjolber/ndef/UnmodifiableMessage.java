@@ -0,0 +1,128 @@
+/***************************************************************************
+ *
+ * This file is part of the 'NDEF Tools for Android' project at
+ * http://code.google.com/p/ndef-tools-for-android/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ****************************************************************************/
+
+package com.github.skjolber.ndef;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+import android.annotation.SuppressLint;
+
+/**
+ *
+ * {@link Message} which cannot be modified, for messages shared between callers. The records themselves are not copied,
+ * so they must still be treated as read-only.
+ *
+ * @author Thomas Rorvik Skjolberg (skjolber@gmail.com)
+ *
+ */
+
+@SuppressLint("NewApi")
+final class UnmodifiableMessage extends Message {
+
+	private static final long serialVersionUID = 1L;
+
+	UnmodifiableMessage(List<Record> records) {
+		super(records);
+	}
+
+	@Override
+	public boolean add(Record element) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void add(int index, Record element) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public boolean addAll(Collection<? extends Record> c) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public boolean addAll(int index, Collection<? extends Record> c) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Record set(int index, Record element) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Record remove(int index) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void clear() {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	protected void removeRange(int fromIndex, int toIndex) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public boolean removeAll(Collection<?> c) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public boolean retainAll(Collection<?> c) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public boolean removeIf(Predicate<? super Record> filter) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void replaceAll(UnaryOperator<Record> operator) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void sort(Comparator<? super Record> c) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public List<Record> subList(int fromIndex, int toIndex) {
+		// sublists might write to the backing array directly
+		return Collections.unmodifiableList(super.subList(fromIndex, toIndex));
+	}
+
+	private Object writeReplace() {
+		return new Message((List<Record>)this);
+	}
+}
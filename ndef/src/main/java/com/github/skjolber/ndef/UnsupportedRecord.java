@@ -35,6 +35,23 @@ public class UnsupportedRecord extends Record {
 	public static UnsupportedRecord parse(NdefRecord ndefRecord) {
 		return new UnsupportedRecord(ndefRecord.getTnf(), ndefRecord.getType(), ndefRecord.getId(), ndefRecord.getPayload());
 	}
+
+	/**
+	 * Parse record type and payload. The id is set to an empty array, like an {@link NdefRecord} without id.
+	 * 
+	 * @param tnf record TNF
+	 * @param type type buffer
+	 * @param typeOffset type offset
+	 * @param typeLength type length
+	 * @param payload payload buffer
+	 * @param payloadOffset payload offset
+	 * @param payloadLength payload length
+	 * @return new record with copies of the type and payload
+	 */
+
+	public static UnsupportedRecord parse(short tnf, byte[] type, int typeOffset, int typeLength, byte[] payload, int payloadOffset, int payloadLength) {
+		return new UnsupportedRecord(tnf, Arrays.copyOfRange(type, typeOffset, typeOffset + typeLength), new byte[0], Arrays.copyOfRange(payload, payloadOffset, payloadOffset + payloadLength));
+	}
 	
 	private short tnf;
 	
@@ -64,6 +81,7 @@ public class UnsupportedRecord extends Record {
 
 	public void setTnf(short tnf) {
 		this.tnf = tnf;
+		clearOriginalEncoding();
 	}
 
 	public byte[] getType() {
@@ -72,6 +90,7 @@ public class UnsupportedRecord extends Record {
 
 	public void setType(byte[] type) {
 		this.type = type;
+		clearOriginalEncoding();
 	}
 
 	public byte[] getPayload() {
@@ -80,6 +99,7 @@ public class UnsupportedRecord extends Record {
 
 	public void setPayload(byte[] payload) {
 		this.payload = payload;
+		clearOriginalEncoding();
 	}
 
 	@Override
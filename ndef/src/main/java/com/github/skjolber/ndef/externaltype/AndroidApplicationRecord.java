@@ -19,7 +19,7 @@
 
 package com.github.skjolber.ndef.externaltype;
 
-import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Android Application Record. This is an Android-specific record type which attempts to launch the application specified by the package name. 
@@ -40,10 +40,14 @@ public class AndroidApplicationRecord extends ExternalTypeRecord {
 	public static final String DOMAIN = "android.com";
 	public static final String TYPE = "pkg";
 	
+	public static AndroidApplicationRecord parsePayload(byte[] payload, int offset, int length) {
+		return new AndroidApplicationRecord(toUtf8String(payload, offset, length));
+	}
+
 	private String packageName;
 
 	public AndroidApplicationRecord(byte[] packageNameBytes) {
-		this(new String(packageNameBytes, Charset.forName("UTF-8")));
+		this(new String(packageNameBytes, StandardCharsets.UTF_8));
 	}
 	
 	public AndroidApplicationRecord(String packageName) {
@@ -77,11 +81,12 @@ public class AndroidApplicationRecord extends ExternalTypeRecord {
 
 	public void setPackageName(String packageName) {
 		this.packageName = packageName;
+		clearOriginalEncoding();
 	}
 	
 	@Override
 	public byte[] getData() {
-		return packageName.getBytes(Charset.forName("UTF-8"));
+		return packageName.getBytes(StandardCharsets.UTF_8);
 	}
 	
 	/**
@@ -19,18 +19,24 @@
 
 package com.github.skjolber.ndef.externaltype;
 
-import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Locale;
 
+import com.github.skjolber.ndef.NdefDecoder;
+import com.github.skjolber.ndef.NdefStringPool;
 import com.github.skjolber.ndef.Record;
+import com.github.skjolber.ndef.RecordParser;
+import com.github.skjolber.ndef.RecordParserRegistry;
 
 import android.annotation.SuppressLint;
+import android.nfc.FormatException;
 import android.nfc.NdefRecord;
 
 /**
  * External type record.<br><br>
  * 
- * Note: Support for custom external types can be added via the {@link ExternalTypeRecordParser} interface, or by overloading this class.
+ * Note: Support for custom external types can be added via the {@link RecordParserRegistry}, the {@link ExternalTypeRecordParser} interface, or by overloading this class.
  * 
  * @author Thomas Rorvik Skjolberg (skjolber@gmail.com)
  *
@@ -65,51 +71,109 @@ public abstract class ExternalTypeRecord extends Record {
 	}
 	
 	/** for plugging in custom external types */
-	private static ExternalTypeRecordParser pluginExternalTypeParser;
+	private static volatile ExternalTypeRecordParser pluginExternalTypeParser;
 	
 	public static ExternalTypeRecordParser getPluginExternalTypeParser() {
 		return pluginExternalTypeParser;
 	}
 
+	/**
+	 * Set a single parser for custom external types, which is consulted for types without a registered parser.
+	 * 
+	 * @param pluginExternalTypeParser parser
+	 * @see #registerExternalTypeParser(String, String, ExternalTypeRecordParser)
+	 */
+
 	public static void setPluginExternalTypeParser(ExternalTypeRecordParser pluginExternalTypeParser) {
 		ExternalTypeRecord.pluginExternalTypeParser = pluginExternalTypeParser;
 	}
 
+	/**
+	 * Register a parser for a custom external type in the default {@link RecordParserRegistry}. Any number of parsers
+	 * can be registered; lookup time does not depend on the number of parsers.
+	 * 
+	 * @param domain external type domain
+	 * @param type external type type, or {@link RecordParserRegistry#WILDCARD} for all types within the domain
+	 * @param parser parser
+	 */
+
+	public static void registerExternalTypeParser(String domain, String type, ExternalTypeRecordParser parser) {
+		RecordParserRegistry.getDefault().registerExternalType(domain, type, parser);
+	}
+
 	public static ExternalTypeRecord parse(NdefRecord ndefRecord) {
-		String domainType = new String(ndefRecord.getType(), Charset.forName("UTF-8"));
+		byte[] type = ndefRecord.getType();
+		
+		RecordParser parser = RecordParserRegistry.getDefault().get(NdefRecord.TNF_EXTERNAL_TYPE, type, 0, type.length);
+		if(parser != null) {
+			byte[] payload = ndefRecord.getPayload();
+
+			try {
+				return toExternalTypeRecord(parser.parse(NdefDecoder.getDefault(), type, 0, type.length, payload, 0, payload.length));
+			} catch (FormatException e) {
+				throw new IllegalArgumentException(e.getMessage(), e);
+			}
+		}
+
+		return parse(type, 0, type.length, ndefRecord.getPayload());
+	}
+
+	public static ExternalTypeRecord parse(byte[] type, int typeOffset, int typeLength, byte[] payload, int payloadOffset, int payloadLength) {
+		try {
+			return parse(NdefDecoder.getDefault(), type, typeOffset, typeLength, payload, payloadOffset, payloadLength);
+		} catch (FormatException e) {
+			throw new IllegalArgumentException(e.getMessage(), e);
+		}
+	}
+
+	public static ExternalTypeRecord parse(NdefDecoder decoder, byte[] type, int typeOffset, int typeLength, byte[] payload, int payloadOffset, int payloadLength) throws FormatException {
+		RecordParser parser = decoder.getRegistry().get(NdefRecord.TNF_EXTERNAL_TYPE, type, typeOffset, typeLength);
+		if(parser != null) {
+			return toExternalTypeRecord(parser.parse(decoder, type, typeOffset, typeLength, payload, payloadOffset, payloadLength));
+		}
+
+		return parse(type, typeOffset, typeLength, Arrays.copyOfRange(payload, payloadOffset, payloadOffset + payloadLength));
+	}
+
+	private static ExternalTypeRecord toExternalTypeRecord(Record record) {
+		if(!(record instanceof ExternalTypeRecord)) {
+			throw new IllegalArgumentException("Expected External Type record, got " + record);
+		}
+		return (ExternalTypeRecord)record;
+	}
+
+	private static ExternalTypeRecord parse(byte[] typeBytes, int typeOffset, int typeLength, byte[] payload) {
+		// colon is ASCII, so it is never part of a multi-byte UTF-8 sequence
+		int colon = typeOffset + typeLength - 1;
+		while(colon >= typeOffset && typeBytes[colon] != ':') {
+			colon--;
+		}
 		
-		int colon = domainType.lastIndexOf(':');
+		NdefStringPool pool = NdefStringPool.getDefault();
 		
 		String type;
 		String domain;
-		if(colon == -1) {
-			domain = domainType;
+		if(colon < typeOffset) {
+			domain = pool.toUtf8String(typeBytes, typeOffset, typeLength);
 			type = null;
 		} else {
-			domain = domainType.substring(0, colon);
-			if(colon + 1 < domainType.length()) {
-				type = domainType.substring(colon + 1);
-			} else {
-				type = "";
-			}
+			domain = pool.toUtf8String(typeBytes, typeOffset, colon - typeOffset);
+			type = pool.toUtf8String(typeBytes, colon + 1, typeOffset + typeLength - colon - 1);
 		}
 
-		if(domain.equals(AndroidApplicationRecord.DOMAIN) && type.equals(AndroidApplicationRecord.TYPE)) {
-			return new AndroidApplicationRecord(ndefRecord.getPayload());
-		}
-		
 		// see if there is a custom parser
+		ExternalTypeRecordParser pluginExternalTypeParser = ExternalTypeRecord.pluginExternalTypeParser;
 		if(pluginExternalTypeParser != null) {
 			if(pluginExternalTypeParser.canParse(domain, type)) {
-				ExternalTypeRecord record = pluginExternalTypeParser.parse(domain, type, ndefRecord.getPayload());
+				ExternalTypeRecord record = pluginExternalTypeParser.parse(domain, type, payload);
 				if(record == null) {
-					throw new IllegalArgumentException("External Type record " + domainType + " cannot be null");
+					throw new IllegalArgumentException("External Type record " + domain + ":" + type + " cannot be null");
 				}
 				return record;
 			}
 		}
 		
-		return new GenericExternalTypeRecord(domain, type, ndefRecord.getPayload());
+		return new GenericExternalTypeRecord(domain, type, payload);
 	}
 	
 	public ExternalTypeRecord() {
@@ -160,8 +224,8 @@ public abstract class ExternalTypeRecord extends Record {
         if (domain.length() == 0) throw new IllegalArgumentException("domain is empty");
         if (type.length() == 0) throw new IllegalArgumentException("type is empty");
 
-        byte[] byteDomain = domain.getBytes(Charset.forName("UTF-8"));
-        byte[] byteType = type.getBytes(Charset.forName("UTF-8"));
+        byte[] byteDomain = domain.getBytes(StandardCharsets.UTF_8);
+        byte[] byteType = type.getBytes(StandardCharsets.UTF_8);
         byte[] b = new byte[byteDomain.length + 1 + byteType.length];
         System.arraycopy(byteDomain, 0, b, 0, byteDomain.length);
         b[byteDomain.length] = ':';
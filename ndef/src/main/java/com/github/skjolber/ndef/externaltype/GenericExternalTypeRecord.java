@@ -55,6 +55,7 @@ public class GenericExternalTypeRecord extends ExternalTypeRecord {
 
 	public void setData(byte[] data) {
 		this.data = data;
+		clearOriginalEncoding();
 	}
 
 	public boolean hasDomain() {
@@ -72,6 +73,7 @@ public class GenericExternalTypeRecord extends ExternalTypeRecord {
 
 	public void setDomain(String domain) {
 		this.domain = domain;
+		clearOriginalEncoding();
 	}
 
 	public String getType() {
@@ -80,6 +82,7 @@ public class GenericExternalTypeRecord extends ExternalTypeRecord {
 
 	public void setType(String type) {
 		this.type = type;
+		clearOriginalEncoding();
 	}
 	
 
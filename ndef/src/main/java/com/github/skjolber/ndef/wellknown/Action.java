@@ -40,12 +40,27 @@ public enum Action {
 	}
 
 	public static Action getActionByValue(byte value) {
+		Action action = findActionByValue(value);
+		if (action == null) {
+			throw new IllegalArgumentException("Unkown action value " + value);
+		}
+		return action;
+	}
+
+	/**
+	 * Look up an action without throwing an exception.
+	 * 
+	 * @param value action value
+	 * @return the action, or null if unknown
+	 */
+
+	public static Action findActionByValue(byte value) {
 		for (Action possibleAction : Action.values()) {
 			if (value == possibleAction.getValue()) {
 				return possibleAction;
 			}
 		}
-		throw new IllegalArgumentException("Unkown action value " + value);
+		return null;
 	}
 	
 	
@@ -21,6 +21,7 @@ package com.github.skjolber.ndef.wellknown;
 
 import com.github.skjolber.ndef.Record;
 
+import android.nfc.FormatException;
 import android.nfc.NdefRecord;
 
 /**
@@ -35,7 +36,30 @@ import android.nfc.NdefRecord;
 public class ActionRecord extends Record {
 
 	public static ActionRecord parseNdefRecord(NdefRecord ndefRecord) {
-		return new ActionRecord(Action.getActionByValue(ndefRecord.getPayload()[0]));
+		byte[] payload = ndefRecord.getPayload();
+		
+		try {
+			return parsePayload(payload, 0, payload.length);
+		} catch (FormatException e) {
+			throw new IllegalArgumentException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Check that a payload holds all the fields of the record, with known values.
+	 * 
+	 * @return true if the payload can be parsed
+	 */
+	
+	public static boolean isValidPayload(byte[] payload, int offset, int length) {
+		return length >= 1 && Action.findActionByValue(payload[offset]) != null;
+	}
+
+	public static ActionRecord parsePayload(byte[] payload, int offset, int length) throws FormatException {
+		if(!isValidPayload(payload, offset, length)) {
+			throw new FormatException("Expected known action in " + length + " bytes payload");
+		}
+		return new ActionRecord(Action.getActionByValue(payload[offset]));
 	}
 
 	public static byte[] type = {'a', 'c', 't'};
@@ -55,6 +79,7 @@ public class ActionRecord extends Record {
 
 	public void setAction(Action action) {
 		this.action = action;
+		clearOriginalEncoding();
 	}
 
 	public boolean hasAction() {
@@ -19,6 +19,7 @@
 
 package com.github.skjolber.ndef.wellknown;
 
+import com.github.skjolber.ndef.NdefDecoder;
 import com.github.skjolber.ndef.Record;
 
 import android.annotation.SuppressLint;
@@ -42,11 +43,39 @@ public class GcActionRecord extends Record {
 
 	public static GcActionRecord parseNdefRecord(NdefRecord ndefRecord) throws FormatException {
 		byte[] payload = ndefRecord.getPayload();
+
+		return parsePayload(payload, 0, payload.length);
+	}
+
+	public static GcActionRecord parsePayload(byte[] payload, int offset, int length) throws FormatException {
+		return parsePayload(NdefDecoder.getDefault(), payload, offset, length);
+	}
+
+	/**
+	 * Check that a payload holds all the fields of the record, with known values.
+	 * 
+	 * @return true if the payload can be parsed
+	 */
+	
+	public static boolean isValidPayload(byte[] payload, int offset, int length) {
+		if(length < 1) {
+			return false;
+		}
+		if((payload[offset] & GcActionRecord.NUMERIC_CODE) != 0) {
+			return length >= 2 && Action.findActionByValue(payload[offset + 1]) != null;
+		}
+		return true;
+	}
+
+	public static GcActionRecord parsePayload(NdefDecoder decoder, byte[] payload, int offset, int length) throws FormatException {
+		if(!isValidPayload(payload, offset, length)) {
+			throw new FormatException("Expected action flag and action, not " + length + " bytes payload");
+		}
 	
-		if ((payload[0] & GcActionRecord.NUMERIC_CODE) != 0) {
-			return new GcActionRecord(Action.getActionByValue(payload[1]));
+		if ((payload[offset] & GcActionRecord.NUMERIC_CODE) != 0) {
+			return new GcActionRecord(Action.getActionByValue(payload[offset + 1]));
 		} else {
-			return new GcActionRecord(Record.parse(payload, 1, payload.length - 1));
+			return new GcActionRecord(Record.parse(decoder, payload, offset + 1, length - 1));
 		}
 		
 	}
@@ -118,6 +147,12 @@ public class GcActionRecord extends Record {
 		return true;
 	}
 
+	@Override
+	protected boolean isOriginalEncodingSupported() {
+		// nested records can be changed directly
+		return false;
+	}
+
 	@Override
 	public NdefRecord getNdefRecord() {
 		byte[] payload = null;
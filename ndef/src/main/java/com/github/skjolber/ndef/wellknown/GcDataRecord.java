@@ -22,7 +22,7 @@ package com.github.skjolber.ndef.wellknown;
 import java.util.ArrayList;
 import java.util.List;
 
-import com.github.skjolber.ndef.Message;
+import com.github.skjolber.ndef.NdefDecoder;
 import com.github.skjolber.ndef.Record;
 
 import android.nfc.FormatException;
@@ -42,10 +42,17 @@ public class GcDataRecord extends Record {
 	
 	public static GcDataRecord parseNdefRecord(NdefRecord ndefRecord) throws FormatException {
 		byte[] payload = ndefRecord.getPayload();
+
+		return parsePayload(payload, 0, payload.length);
+	}
+
+	public static GcDataRecord parsePayload(byte[] payload, int offset, int length) throws FormatException {
+		return parsePayload(NdefDecoder.getDefault(), payload, offset, length);
+	}
+
+	public static GcDataRecord parsePayload(NdefDecoder decoder, byte[] payload, int offset, int length) throws FormatException {
 		
-		normalizeMessageBeginEnd(payload);
-				
-		return new GcDataRecord(Message.parseNdefMessage(payload));
+		return new GcDataRecord(parseMessage(decoder, payload, offset, length));
 	}
 	
 	private List<Record> records;
@@ -96,6 +103,12 @@ public class GcDataRecord extends Record {
 		return true;
 	}
 
+	@Override
+	protected boolean isOriginalEncodingSupported() {
+		// nested records can be changed directly
+		return false;
+	}
+
 	@Override
 	public NdefRecord getNdefRecord() {
 		NdefRecord[] ndefRecords = new NdefRecord[records.size()];
@@ -19,6 +19,7 @@
 
 package com.github.skjolber.ndef.wellknown;
 
+import com.github.skjolber.ndef.NdefDecoder;
 import com.github.skjolber.ndef.Record;
 
 import android.annotation.SuppressLint;
@@ -41,6 +42,18 @@ public class GcTargetRecord extends Record {
 		return new GcTargetRecord(parse(ndefRecord.getPayload()));
 	}
 
+	public static GcTargetRecord parsePayload(byte[] payload, int offset, int length) throws FormatException {
+		return parsePayload(NdefDecoder.getDefault(), payload, offset, length);
+	}
+
+	public static GcTargetRecord parsePayload(NdefDecoder decoder, byte[] payload, int offset, int length) throws FormatException {
+		Record targetIdentifier = parse(decoder, payload, offset, length);
+		if (!(targetIdentifier instanceof UriRecord) && !(targetIdentifier instanceof TextRecord)) {
+			throw new FormatException("Expected " + TextRecord.class.getSimpleName() + " or " + UriRecord.class.getSimpleName() + " target identifier, not " + targetIdentifier.getClass().getName() + ".");
+		}
+		return new GcTargetRecord(targetIdentifier);
+	}
+
 	private Record targetIdentifier;
 
 	public GcTargetRecord(Record targetIdentifier) {
@@ -96,6 +109,12 @@ public class GcTargetRecord extends Record {
 		return true;
 	}
 
+	@Override
+	protected boolean isOriginalEncodingSupported() {
+		// nested records can be changed directly
+		return false;
+	}
+
 	@Override
 	public NdefRecord getNdefRecord() {
 		if (!hasTargetIdentifier()) {
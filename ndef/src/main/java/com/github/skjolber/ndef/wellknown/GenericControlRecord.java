@@ -23,6 +23,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import com.github.skjolber.ndef.Message;
+import com.github.skjolber.ndef.NdefDecoder;
 import com.github.skjolber.ndef.Record;
 
 import android.nfc.FormatException;
@@ -59,13 +60,33 @@ public class GenericControlRecord extends Record {
 	
 	public static GenericControlRecord parseNdefRecord(NdefRecord ndefRecord) throws FormatException {
 		byte[] payload = ndefRecord.getPayload();
+
+		return parsePayload(payload, 0, payload.length);
+	}
+
+	public static GenericControlRecord parsePayload(byte[] payload, int offset, int length) throws FormatException {
+		return parsePayload(NdefDecoder.getDefault(), payload, offset, length);
+	}
+
+	/**
+	 * Check that a payload holds all the fields of the record.
+	 * 
+	 * @return true if the payload can be parsed without reading past offset + length
+	 */
 	
-		normalizeMessageBeginEnd(payload, 1, payload.length -1);
-		
-		Message payloadNdefMessage = Message.parseNdefMessage(payload, 1, payload.length - 1);
+	public static boolean isValidPayload(byte[] payload, int offset, int length) {
+		return length >= 1;
+	}
+
+	public static GenericControlRecord parsePayload(NdefDecoder decoder, byte[] payload, int offset, int length) throws FormatException {
+		if(!isValidPayload(payload, offset, length)) {
+			throw new FormatException("Expected configuration byte");
+		}
+	
+		Message payloadNdefMessage = parseMessage(decoder, payload, offset + 1, length - 1);
 
 		GenericControlRecord genericControlRecord = new GenericControlRecord();
-		genericControlRecord.setConfigurationByte(payload[0]);
+		genericControlRecord.setConfigurationByte(payload[offset]);
 		
 		for (Record record : payloadNdefMessage) {
 			if (record instanceof GcTargetRecord) {
@@ -75,12 +96,12 @@ public class GenericControlRecord extends Record {
 			} else if (record instanceof GcDataRecord) {
 				genericControlRecord.setData((GcDataRecord)record);
 			} else {
-				throw new IllegalArgumentException("Unexpected record " + record.getClass().getName());
+				throw new FormatException("Unexpected record " + record.getClass().getName());
 			}
 		}
 
 		if (!genericControlRecord.hasTarget()) {
-			throw new IllegalArgumentException("Expected target record");
+			throw new FormatException("Expected target record");
 		}
 		
 		return genericControlRecord;
@@ -214,6 +235,12 @@ public class GenericControlRecord extends Record {
 		return true;
 	}
 	
+	@Override
+	protected boolean isOriginalEncodingSupported() {
+		// nested records can be changed directly
+		return false;
+	}
+
 	@Override
 	public NdefRecord getNdefRecord() {
 		if(!hasTarget()) {
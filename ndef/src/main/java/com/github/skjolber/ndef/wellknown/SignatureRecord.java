@@ -21,13 +21,14 @@ package com.github.skjolber.ndef.wellknown;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
 import com.github.skjolber.ndef.Record;
 
+import android.nfc.FormatException;
 import android.nfc.NdefRecord;
 
 /**
@@ -47,9 +48,65 @@ public class SignatureRecord extends Record {
 	public static SignatureRecord parseNdefRecord(NdefRecord ndefRecord) {
 		byte[] payload = ndefRecord.getPayload();
 	
+		try {
+			return parsePayload(payload, 0, payload.length);
+		} catch (FormatException e) {
+			throw new IllegalArgumentException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Check that a payload holds all the fields of the record, following the signature, certificate and uri sizes,
+	 * with a known signature type and certificate format.
+	 * 
+	 * @return true if the payload can be parsed
+	 */
+	
+	public static boolean isValidPayload(byte[] payload, int offset, int length) {
+		int end = offset + length;
+		int index = offset + 2;
+		if(index > end) {
+			return false;
+		}
+		int header = payload[offset + 1] & 0xFF;
+		SignatureType type = SignatureType.findSignatureType(header & 0x7F);
+		if(type == null) {
+			return false;
+		}
+		if((header & 0x80) == 0 && type == SignatureType.NOT_PRESENT) {
+			return true;
+		}
+		if(index + 2 > end) {
+			return false;
+		}
+		index += 2 + (((payload[index] & 0xFF) << 8) + (payload[index + 1] & 0xFF));
+		if(index + 1 > end) {
+			return false;
+		}
+		int certificateHeader = payload[index++] & 0xFF;
+		if(CertificateFormat.findCertificateFormat((certificateHeader >> 4) & 0x7) == null) {
+			return false;
+		}
+		int numberOfCertificates = certificateHeader & 0xF;
+		if((certificateHeader & 0x80) != 0) {
+			numberOfCertificates++;
+		}
+		for(int i = 0; i < numberOfCertificates; i++) {
+			if(index + 2 > end) {
+				return false;
+			}
+			index += 2 + (((payload[index] & 0xFF) << 8) + (payload[index + 1] & 0xFF));
+		}
+		return index <= end;
+	}
+
+	public static SignatureRecord parsePayload(byte[] payload, int offset, int length) throws FormatException {
+		if(!isValidPayload(payload, offset, length)) {
+			throw new FormatException("Expected known signature type, certificate format and sizes within " + length + " bytes payload");
+		}
 		SignatureRecord signatureRecord = new SignatureRecord();
 		
-		int index = 0;
+		int index = offset;
 		
 		int version = payload[index++] & 0xFF;
 		
@@ -72,7 +129,7 @@ public class SignatureRecord extends Record {
 				index+= size;
 
 				if(signatureUriPresent) {
-					signatureRecord.setSignatureUri(new String(signatureOrUri, Charset.forName("UTF-8")));
+					signatureRecord.setSignatureUri(toUtf8String(signatureOrUri, 0, signatureOrUri.length));
 				} else {
 					signatureRecord.setSignature(signatureOrUri);
 				}
@@ -103,7 +160,7 @@ public class SignatureRecord extends Record {
 				
 				index+= certificateUriSize;
 				
-				signatureRecord.setCertificateUri(new String(certificateUri, Charset.forName("UTF-8")));
+				signatureRecord.setCertificateUri(toUtf8String(certificateUri, 0, certificateUri.length));
 			}
 			
 		} else {
@@ -133,13 +190,27 @@ public class SignatureRecord extends Record {
 		}
 
 		public static SignatureType toSignatureType(int i) {
+			SignatureType type = findSignatureType(i);
+			if(type == null) {
+				throw new IllegalArgumentException("Unexpected signature type " + i);
+			}
+			return type;
+		}
+		
+		/**
+		 * Look up a signature type without throwing an exception.
+		 * 
+		 * @param i signature type value
+		 * @return the signature type, or null if unknown
+		 */
+		
+		public static SignatureType findSignatureType(int i) {
 			for(SignatureType type : values()) {
 				if(type.value == i) {
 					return type;
 				}
 			}
-			
-			throw new IllegalArgumentException("Unexpected signature type " + i);
+			return null;
 		}
 		
 	}
@@ -159,13 +230,27 @@ public class SignatureRecord extends Record {
 		}
 
 		public static CertificateFormat toCertificateFormat(int i) {
+			CertificateFormat format = findCertificateFormat(i);
+			if(format == null) {
+				throw new IllegalArgumentException("Unexpected certificate format " + i);
+			}
+			return format;
+		}
+		
+		/**
+		 * Look up a certificate format without throwing an exception.
+		 * 
+		 * @param i certificate format value
+		 * @return the certificate format, or null if unknown
+		 */
+		
+		public static CertificateFormat findCertificateFormat(int i) {
 			for(CertificateFormat type : values()) {
 				if(type.value == i) {
 					return type;
 				}
 			}
-			
-			throw new IllegalArgumentException("Unexpected certificate format " + i);
+			return null;
 		}
 		
 	}
@@ -245,6 +330,7 @@ public class SignatureRecord extends Record {
 
 	public void setSignatureType(SignatureType signatureType) {
 		this.signatureType = signatureType;
+		clearOriginalEncoding();
 	}
 
 	public CertificateFormat getCertificateFormat() {
@@ -253,6 +339,7 @@ public class SignatureRecord extends Record {
 
 	public void setCertificateFormat(CertificateFormat certificateFormat) {
 		this.certificateFormat = certificateFormat;
+		clearOriginalEncoding();
 	}
 
 	public List<byte[]> getCertificates() {
@@ -261,6 +348,7 @@ public class SignatureRecord extends Record {
 
 	public void setCertificates(List<byte[]> certificates) {
 		this.certificates = certificates;
+		clearOriginalEncoding();
 	}
 
 	public byte getVersion() {
@@ -269,6 +357,7 @@ public class SignatureRecord extends Record {
 
 	public void setVersion(byte version) {
 		this.version = version;
+		clearOriginalEncoding();
 	}
 
 	public byte[] getSignature() {
@@ -277,6 +366,7 @@ public class SignatureRecord extends Record {
 
 	public void setSignature(byte[] signature) {
 		this.signature = signature;
+		clearOriginalEncoding();
 	}
 
 	public String getSignatureUri() {
@@ -285,6 +375,7 @@ public class SignatureRecord extends Record {
 
 	public void setSignatureUri(String signatureUri) {
 		this.signatureUri = signatureUri;
+		clearOriginalEncoding();
 	}
 
 	public String getCertificateUri() {
@@ -293,6 +384,7 @@ public class SignatureRecord extends Record {
 
 	public void setCertificateUri(String certificateUri) {
 		this.certificateUri = certificateUri;
+		clearOriginalEncoding();
 	}
 
 	public boolean hasSignatureType() {
@@ -305,6 +397,7 @@ public class SignatureRecord extends Record {
 
 	public void add(byte[] certificate) {
 		this.certificates.add(certificate);
+		clearOriginalEncoding();
 	}
 
 	@Override
@@ -428,7 +521,7 @@ public class SignatureRecord extends Record {
 						throw new IllegalArgumentException("Expected signature size " + signatureOrUri.length + " <= 65535");
 					}
 				} else {
-					signatureOrUri = signatureUri.getBytes(Charset.forName("UTF-8"));
+					signatureOrUri = signatureUri.getBytes(StandardCharsets.UTF_8);
 
 					if(signatureOrUri.length > 65535) {
 						throw new IllegalArgumentException("Expected signature uri byte size " + signatureOrUri.length + " <= 65535");
@@ -464,7 +557,7 @@ public class SignatureRecord extends Record {
 
 				if(hasCertificateUri()) {
 
-					byte[] certificateUriBytes = certificateUri.getBytes(Charset.forName("UTF-8"));
+					byte[] certificateUriBytes = certificateUri.getBytes(StandardCharsets.UTF_8);
 
 					if(certificateUriBytes.length > 65535) {
 						throw new IllegalArgumentException("Expected certificate uri byte size " + certificateUriBytes.length + " <= 65535");
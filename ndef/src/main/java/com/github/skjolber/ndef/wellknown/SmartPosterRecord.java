@@ -22,6 +22,7 @@ package com.github.skjolber.ndef.wellknown;
 import java.util.List;
 
 import com.github.skjolber.ndef.Message;
+import com.github.skjolber.ndef.NdefDecoder;
 import com.github.skjolber.ndef.Record;
 
 import android.nfc.FormatException;
@@ -47,13 +48,20 @@ public class SmartPosterRecord extends Record {
 
 	public static SmartPosterRecord parseNdefRecord(NdefRecord ndefRecord) throws FormatException {
 		byte[] payload = ndefRecord.getPayload();
-	
-		normalizeMessageBeginEnd(payload);
 
+		return parsePayload(payload, 0, payload.length);
+	}
+
+	public static SmartPosterRecord parsePayload(byte[] payload, int offset, int length) throws FormatException {
+		return parsePayload(NdefDecoder.getDefault(), payload, offset, length);
+	}
+
+	public static SmartPosterRecord parsePayload(NdefDecoder decoder, byte[] payload, int offset, int length) throws FormatException {
+	
 		SmartPosterRecord smartPosterRecord = new SmartPosterRecord();
 		
-		if(payload.length > 0) {
-			List<Record> records = Message.parseNdefMessage(payload);
+		if(length > 0) {
+			List<Record> records = parseMessage(decoder, payload, offset, length);
 	
 			for (Record record : records) {
 				if (record instanceof UriRecord) {
@@ -160,6 +168,12 @@ public class SmartPosterRecord extends Record {
 		return true;
 	}
 
+	@Override
+	protected boolean isOriginalEncodingSupported() {
+		// nested records can be changed directly
+		return false;
+	}
+
 	@Override
 	public NdefRecord getNdefRecord() {
 		Message message = new Message();
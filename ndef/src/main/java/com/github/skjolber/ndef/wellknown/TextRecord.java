@@ -21,10 +21,12 @@ package com.github.skjolber.ndef.wellknown;
 
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Locale;
 
 import com.github.skjolber.ndef.Record;
 
+import android.nfc.FormatException;
 import android.nfc.NdefRecord;
 
 /**
@@ -47,16 +49,122 @@ public class TextRecord extends Record {
 	public static TextRecord parseNdefRecord(NdefRecord ndefRecord) {
 		byte[] payload = ndefRecord.getPayload();
 	
-		int status = payload[0] & 0xff;
+		try {
+			return parsePayload(payload, 0, payload.length);
+		} catch (FormatException e) {
+			throw new IllegalArgumentException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Check that a payload holds all the fields of the record.
+	 * 
+	 * @return true if the payload can be parsed without reading past offset + length
+	 */
+	
+	public static boolean isValidPayload(byte[] payload, int offset, int length) {
+		if(length < 1) {
+			return false;
+		}
+		return 1 + (payload[offset] & TextRecord.LANGUAGE_CODE_MASK) <= length;
+	}
+
+	public static TextRecord parsePayload(byte[] payload, int offset, int length) throws FormatException {
+		return parsePayload(payload, offset, length, null);
+	}
+
+	/**
+	 * Parse text record payload into an existing record. The text and locale of the existing record are kept
+	 * if they correspond to the payload.
+	 * 
+	 * @param payload payload buffer
+	 * @param offset payload offset
+	 * @param length payload length
+	 * @param target record to reuse, or null to create a new record
+	 * @return the parsed record
+	 * @throws FormatException if the language code does not fit within the payload
+	 */
+
+	public static TextRecord parsePayload(byte[] payload, int offset, int length, TextRecord target) throws FormatException {
+		if(!isValidPayload(payload, offset, length)) {
+			throw new FormatException("Expected status byte and language code, not " + length + " bytes payload");
+		}
+		int status = payload[offset] & 0xff;
 		int languageCodeLength = (status & TextRecord.LANGUAGE_CODE_MASK);
-		String languageCode = new String(payload, 1, languageCodeLength);
 
 		Charset textEncoding = ((status & TEXT_ENCODING_MASK) != 0) ? TextRecord.UTF16 : TextRecord.UTF8;
 
-		return new TextRecord(new String(payload, 1 + languageCodeLength, payload.length - languageCodeLength - 1, textEncoding), textEncoding, new Locale(languageCode));
+		int textOffset = offset + 1 + languageCodeLength;
+		int textLength = length - languageCodeLength - 1;
+
+		Locale locale = getLanguageCode(payload, offset + 1, languageCodeLength).locale;
+
+		if(target == null) {
+			target = new TextRecord();
+		} else if(target.encoding == textEncoding && target.isText(payload, textOffset, textLength)) {
+			target.locale = locale;
+
+			return target;
+		}
+		target.locale = locale;
+		target.encoding = textEncoding;
+		target.text = null;
+		target.encodedText = Arrays.copyOfRange(payload, textOffset, textOffset + textLength);
+
+		return target;
+	}
+
+	private static final class LanguageCode {
+
+		private final Locale locale;
+		/** language and country, as in the record payload */
+		private final String tag;
+		private final byte[] data;
+
+		private LanguageCode(Locale locale, String tag, byte[] data) {
+			this.locale = locale;
+			this.tag = tag;
+			this.data = data;
+		}
+	}
+
+	/** direct-mapped caches, a colliding language code replaces the previous one */
+	private static final LanguageCode[] LANGUAGE_CODES_BY_DATA = new LanguageCode[64];
+	private static final LanguageCode[] LANGUAGE_CODES_BY_LOCALE = new LanguageCode[64];
+
+	private static LanguageCode getLanguageCode(byte[] payload, int offset, int length) {
+		int index = hashBytes(0, payload, offset, length) & (LANGUAGE_CODES_BY_DATA.length - 1);
+
+		LanguageCode languageCode = LANGUAGE_CODES_BY_DATA[index];
+		if(languageCode == null || !equalsBytes(languageCode.data, payload, offset, length)) {
+			String tag = toUtf8String(payload, offset, length);
+
+			languageCode = new LanguageCode(new Locale(tag), tag, Arrays.copyOfRange(payload, offset, offset + length));
+
+			LANGUAGE_CODES_BY_DATA[index] = languageCode;
+		}
+		return languageCode;
+	}
+
+	private static LanguageCode getLanguageCode(Locale locale) {
+		int hash = locale.hashCode();
+		int index = (hash ^ (hash >>> 16)) & (LANGUAGE_CODES_BY_LOCALE.length - 1);
+
+		LanguageCode languageCode = LANGUAGE_CODES_BY_LOCALE[index];
+		if(languageCode == null || !languageCode.locale.equals(locale)) {
+			String tag = (locale.getLanguage() + (locale.getCountry() == null || locale.getCountry().length() == 0 ? ""
+							: ("-" + locale.getCountry())));
+
+			languageCode = new LanguageCode(locale, tag, tag.getBytes(StandardCharsets.UTF_8));
+
+			LANGUAGE_CODES_BY_LOCALE[index] = languageCode;
+		}
+		return languageCode;
 	}
 
 	private String text;
+	/** text bytes in the record encoding, for parsed records */
+	private byte[] encodedText;
 	private Charset encoding;
 	private Locale locale;
 
@@ -85,10 +193,36 @@ public class TextRecord extends Record {
 	public TextRecord() {
 	}
 
+	/**
+	 * Get the text. Parsed records decode the text on the first call.
+	 * 
+	 * @return the text
+	 */
+
 	public String getText() {
+		String text = this.text;
+		if(text == null) {
+			// encodedText stays set: the record is encoded and refilled from it, not from the decoded text
+			byte[] encodedText = this.encodedText;
+			if(encodedText != null) {
+				if(encoding == UTF8) {
+					text = toUtf8String(encodedText, 0, encodedText.length);
+				} else {
+					text = new String(encodedText, encoding);
+				}
+				this.text = text;
+			}
+		}
 		return text;
 	}
 
+	private boolean isText(byte[] payload, int offset, int length) {
+		if(encodedText != null) {
+			return equalsBytes(encodedText, payload, offset, length);
+		}
+		return encoding == UTF8 && equalsAscii(text, payload, offset, length);
+	}
+
 	public Locale getLocale() {
 		return locale;
 	}
@@ -99,21 +233,29 @@ public class TextRecord extends Record {
 
 	public void setText(String text) {
 		this.text = text;
+		this.encodedText = null;
+		clearOriginalEncoding();
 	}
 
 	public void setEncoding(Charset encoding) {
 		if (!encoding.equals(UTF8) && !encoding.equals(UTF16))
 			throw new IllegalArgumentException("unsupported encoding. only utf8 and utf16 are allowed.");
 
+		// decode using the current encoding
+		this.text = getText();
+		this.encodedText = null;
+
 		this.encoding = encoding;
+		clearOriginalEncoding();
 	}
 
 	public void setLocale(Locale locale) {
 		this.locale = locale;
+		clearOriginalEncoding();
 	}
 
 	public boolean hasText() {
-		return text != null;
+		return text != null || encodedText != null;
 	}
 
 	public boolean hasLocale() {
@@ -130,6 +272,7 @@ public class TextRecord extends Record {
 		int result = super.hashCode();
 		result = prime * result + ((encoding == null) ? 0 : encoding.hashCode());
 		result = prime * result + ((locale == null) ? 0 : locale.hashCode());
+		String text = getText();
 		result = prime * result + ((text == null) ? 0 : text.hashCode());
 		return result;
 	}
@@ -155,11 +298,12 @@ public class TextRecord extends Record {
 		}
 		else if (!locale.equals(other.locale))
 			return false;
+		String text = getText();
 		if (text == null) {
-			if (other.text != null)
+			if (other.getText() != null)
 				return false;
 		}
-		else if (!text.equals(other.text))
+		else if (!text.equals(other.getText()))
 			return false;
 		return true;
 	}
@@ -178,20 +322,22 @@ public class TextRecord extends Record {
 			throw new IllegalArgumentException("Expected text");
 		}
 
-		String languageAndLocale = (locale.getLanguage() + (locale.getCountry() == null || locale.getCountry().length() == 0 ? ""
-						: ("-" + locale.getCountry())));
-		
-		if (android.os.Build.VERSION.SDK_INT >= 21 && TextRecord.UTF8.equals(encoding)) {
-			return NdefRecord.createTextRecord(languageAndLocale, text);
+		LanguageCode languageCode = getLanguageCode(locale);
+
+		if (android.os.Build.VERSION.SDK_INT >= 21 && TextRecord.UTF8.equals(encoding) && encodedText == null) {
+			return NdefRecord.createTextRecord(languageCode.tag, text);
 		}
 
-		byte[] languageData = languageAndLocale.getBytes();
+		byte[] languageData = languageCode.data;
 
 		if (languageData.length > TextRecord.LANGUAGE_CODE_MASK) {
 			throw new IllegalArgumentException("Expected language code length <= 32 bytes, not " + languageData.length + " bytes");
 		}
 		
-		byte[] textData = text.getBytes(encoding);
+		byte[] textData = encodedText;
+		if(textData == null) {
+			textData = text.getBytes(encoding);
+		}
 		byte[] payload = new byte[1 + languageData.length + textData.length];
 
 		byte status = (byte)(languageData.length | (TextRecord.UTF16.equals(encoding) ? 0x80 : 0x00));
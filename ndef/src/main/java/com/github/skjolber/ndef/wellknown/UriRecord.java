@@ -19,7 +19,7 @@
 
 package com.github.skjolber.ndef.wellknown;
 
-import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Locale;
 
@@ -45,28 +45,83 @@ public class UriRecord extends Record {
 
     private static final byte[] RTD_URI = {0x55};   // "U"
 
-	@SuppressLint("NewApi")
 	public static UriRecord parseNdefRecord(NdefRecord ndefRecord) {
-		
-		if (android.os.Build.VERSION.SDK_INT >= 16) {
-			return new UriRecord(ndefRecord.toUri());
-		} else {
-			byte[] payload = ndefRecord.getPayload();
-	        if (payload.length < 2) {
-	            return null;
-	        }
-	
-	        // payload[0] contains the URI Identifier Code, as per
-	        // NFC Forum "URI Record Type Definition" section 3.2.2.
-	        int prefixIndex = (payload[0] & (byte)0xFF);
-	        if (prefixIndex < 0 || prefixIndex >= URI_PREFIX_MAP.length) {
-	            return null;
-	        }
-	        String prefix = URI_PREFIX_MAP[prefixIndex];
-	        String suffix = new String(Arrays.copyOfRange(payload, 1, payload.length),
-	        		Charset.forName("UTF-8"));
-	        return new UriRecord(Uri.parse(prefix + suffix));
+		byte[] payload = ndefRecord.getPayload();
+
+		return parsePayload(payload, 0, payload.length);
+	}
+
+	/**
+	 * Parse URI record payload, with the same result as {@link NdefRecord#toUri()}. The {@link Uri} is not created
+	 * until {@link #getUri()} is called.
+	 * 
+	 * @param payload payload buffer
+	 * @param offset payload offset
+	 * @param length payload length
+	 * @return the parsed record, or null if not a valid URI record for this SDK version
+	 */
+
+	public static UriRecord parsePayload(byte[] payload, int offset, int length) {
+		return parsePayload(payload, offset, length, null);
+	}
+
+	/**
+	 * Parse URI record payload into an existing record. The {@link Uri} of the existing record is kept if it
+	 * corresponds to the payload.
+	 * 
+	 * @param payload payload buffer
+	 * @param offset payload offset
+	 * @param length payload length
+	 * @param target record to reuse, or null to create a new record
+	 * @return the parsed record, or null if not a valid URI record for this SDK version
+	 */
+
+	public static UriRecord parsePayload(byte[] payload, int offset, int length, UriRecord target) {
+		if(target == null) {
+			target = new UriRecord();
+		}
+        if (length < 2) {
+        	if(android.os.Build.VERSION.SDK_INT < 16) {
+        		return null;
+        	}
+        	target.setUri(null);
+        	
+        	return target;
+        }
+        // payload[0] contains the URI Identifier Code, as per
+        // NFC Forum "URI Record Type Definition" section 3.2.2.
+        int prefixIndex = payload[offset] & 0xFF;
+        if (prefixIndex >= (android.os.Build.VERSION.SDK_INT >= 16 ? URI_PREFIX_MAP.length : LEGACY_URI_PREFIX_COUNT)) {
+        	if(android.os.Build.VERSION.SDK_INT < 16) {
+        		return null;
+        	}
+        	// same as NdefRecord.toUri()
+        	target.setUri(null);
+
+        	return target;
+        }
+        if(!target.isUri(prefixIndex, payload, offset + 1, length - 1)) {
+        	target.uri = null;
+        	target.identifierCode = prefixIndex;
+        	target.suffix = Arrays.copyOfRange(payload, offset + 1, offset + length);
+        }
+        target.clearOriginalEncoding();
+
+        return target;
+	}
+
+	private boolean isUri(int identifierCode, byte[] payload, int offset, int length) {
+		byte[] suffix = this.suffix;
+		if(suffix != null) {
+			return this.identifierCode == identifierCode && equalsBytes(suffix, payload, offset, length);
 		}
+		if(uri == null) {
+			return false;
+		}
+		String string = uri.toString();
+		String prefix = URI_PREFIX_MAP[identifierCode];
+
+		return string.startsWith(prefix) && equalsAscii(string, prefix.length(), payload, offset, length);
 	}
 
    /**
@@ -74,7 +129,6 @@ public class UriRecord extends Record {
      * This is a mapping of "URI Identifier Codes" to URI string prefixes,
      * per section 3.2.2 of the NFC Forum URI Record Type Definition document.
      */
-	@Deprecated
     private static final String[] URI_PREFIX_MAP = new String[] {
             "", // 0x00
             "http://www.", // 0x01
@@ -111,10 +165,104 @@ public class UriRecord extends Record {
             "urn:epc:pat:", // 0x20
             "urn:epc:raw:", // 0x21
             "urn:epc:", // 0x22
+            "urn:nfc:", // 0x23
     };
 
+    /** Number of prefixes known to SDK versions before 16 */
+    private static final int LEGACY_URI_PREFIX_COUNT = 0x23;
+
+	/** trie of the URI prefixes, for finding the identifier code without comparing each prefix */
+	private static final PrefixNode URI_PREFIX_TRIE = new PrefixNode();
+
+	static {
+		for (int i = 1; i < URI_PREFIX_MAP.length; i++) {
+			PrefixNode node = URI_PREFIX_TRIE;
+			String prefix = URI_PREFIX_MAP[i];
+			for(int k = 0; k < prefix.length(); k++) {
+				node = node.add(prefix.charAt(k));
+			}
+			node.identifierCode = i;
+		}
+	}
+
+	private static final class PrefixNode {
+
+		private char[] keys = new char[0];
+		private PrefixNode[] children = new PrefixNode[0];
+		/** identifier code of the prefix ending at this node, or 0 */
+		private int identifierCode;
+
+		private PrefixNode get(int c) {
+			for(int i = 0; i < keys.length; i++) {
+				if(keys[i] == c) {
+					return children[i];
+				}
+			}
+			return null;
+		}
+
+		private PrefixNode add(char c) {
+			PrefixNode node = get(c);
+			if(node == null) {
+				node = new PrefixNode();
+
+				keys = Arrays.copyOf(keys, keys.length + 1);
+				keys[keys.length - 1] = c;
+				children = Arrays.copyOf(children, children.length + 1);
+				children[children.length - 1] = node;
+			}
+			return node;
+		}
+	}
+
+	/**
+	 * Find the identifier code for a URI, like {@link NdefRecord#createUri(Uri)} does: the first prefix in
+	 * the map which the URI starts with.
+	 * 
+	 * @param uri URI string
+	 * @param count number of prefixes to consider
+	 * @return identifier code, or 0 if no prefix matches
+	 */
+
+	private static int getIdentifierCode(String uri, int count) {
+		int identifierCode = 0;
+		PrefixNode node = URI_PREFIX_TRIE;
+		for(int i = 0; i < uri.length(); i++) {
+			node = node.get(uri.charAt(i));
+			if(node == null) {
+				break;
+			}
+			identifierCode = firstIdentifierCode(identifierCode, node.identifierCode, count);
+		}
+		return identifierCode;
+	}
+
+	private static int getIdentifierCode(String prefix, byte[] suffix, int count) {
+		int identifierCode = 0;
+		PrefixNode node = URI_PREFIX_TRIE;
+		for(int i = 0; i < prefix.length() + suffix.length; i++) {
+			node = node.get(i < prefix.length() ? prefix.charAt(i) : suffix[i - prefix.length()]);
+			if(node == null) {
+				break;
+			}
+			identifierCode = firstIdentifierCode(identifierCode, node.identifierCode, count);
+		}
+		return identifierCode;
+	}
+
+	private static int firstIdentifierCode(int identifierCode, int candidate, int count) {
+		if(candidate != 0 && candidate < count && (identifierCode == 0 || candidate < identifierCode)) {
+			return candidate;
+		}
+		return identifierCode;
+	}
+
 	private Uri uri;
 
+	/** URI identifier code and suffix bytes, for parsed records */
+	private int identifierCode;
+	private byte[] suffix;
+
 	public UriRecord(Uri uri) {
 		this.uri = uri;
 	}
@@ -126,22 +274,61 @@ public class UriRecord extends Record {
 		this(Uri.parse(uriString));
 	}
 
+	/**
+	 * Get the URI. Parsed records create the {@link Uri} on the first call.
+	 * 
+	 * @return the URI
+	 */
+
+	@SuppressLint("NewApi")
 	public Uri getUri() {
+		Uri uri = this.uri;
+		if(uri == null && suffix != null) {
+			// the suffix stays set, so that getNdefRecord() still writes the identifier code and suffix as parsed
+			uri = Uri.parse(getUriString());
+			if (android.os.Build.VERSION.SDK_INT >= 16) {
+				uri = uri.normalizeScheme();
+			}
+			this.uri = uri;
+		}
 		return uri;
 	}
 
+	/**
+	 * Get the URI string, without creating a {@link Uri} for parsed records. The string is the same as
+	 * the string representation of {@link #getUri()}, except that the scheme is not normalized until the
+	 * {@link Uri} is created.
+	 * 
+	 * @return the URI string, or null if there is no URI
+	 */
+
+	public String getUriString() {
+		Uri uri = this.uri;
+		if(uri != null) {
+			return uri.toString();
+		}
+		byte[] suffix = this.suffix;
+		if(suffix != null) {
+			return URI_PREFIX_MAP[identifierCode] + toUtf8String(suffix, 0, suffix.length);
+		}
+		return null;
+	}
+
 	public void setUri(Uri uri) {
 		this.uri = uri;
+		this.suffix = null;
+		clearOriginalEncoding();
 	}
 
 	public boolean hasUri() {
-		return uri != null;
+		return uri != null || suffix != null;
 	}
 
 	@Override
 	public int hashCode() {
 		final int prime = 31;
 		int result = super.hashCode();
+		Uri uri = getUri();
 		result = prime * result + ((uri == null) ? 0 : uri.hashCode());
 		return result;
 	}
@@ -155,11 +342,12 @@ public class UriRecord extends Record {
 		if (getClass() != obj.getClass())
 			return false;
 		UriRecord other = (UriRecord)obj;
+		Uri uri = getUri();
 		if (uri == null) {
-			if (other.uri != null)
+			if (other.getUri() != null)
 				return false;
 		}
-		else if (!uri.equals(other.uri))
+		else if (!uri.equals(other.getUri()))
 			return false;
 		return true;
 	}
@@ -170,6 +358,12 @@ public class UriRecord extends Record {
 		if(!hasUri()) {
 			throw new IllegalArgumentException("Expected URI");
 		}
+		byte[] suffix = this.suffix;
+		if(suffix != null && isAscii(suffix, 0, suffix.length) && !hasUpperCaseScheme(identifierCode, suffix)) {
+			// same result as encoding the URI, which would not change the bytes
+			return createUri(identifierCode, suffix, android.os.Build.VERSION.SDK_INT >= 14 ? URI_PREFIX_MAP.length : LEGACY_URI_PREFIX_COUNT);
+		}
+		Uri uri = getUri();
 		if (android.os.Build.VERSION.SDK_INT >= 14) {
 			return NdefRecord.createUri(uri);
 		} else {
@@ -186,15 +380,10 @@ public class UriRecord extends Record {
         String uriString = uri.toString();
         if (uriString.length() == 0) throw new IllegalArgumentException("Uri is empty");
 
-        byte prefix = 0;
-        for (int i = 1; i < URI_PREFIX_MAP.length; i++) {
-            if (uriString.startsWith(URI_PREFIX_MAP[i])) {
-                prefix = (byte) i;
-                uriString = uriString.substring(URI_PREFIX_MAP[i].length());
-                break;
-            }
-        }
-        byte[] uriBytes = uriString.getBytes(Charset.forName("UTF-8"));
+        byte prefix = (byte)getIdentifierCode(uriString, LEGACY_URI_PREFIX_COUNT);
+        uriString = uriString.substring(URI_PREFIX_MAP[prefix].length());
+
+        byte[] uriBytes = uriString.getBytes(StandardCharsets.UTF_8);
         byte[] recordBytes = new byte[uriBytes.length + 1];
         recordBytes[0] = prefix;
         System.arraycopy(uriBytes, 0, recordBytes, 1, uriBytes.length);
@@ -202,6 +391,48 @@ public class UriRecord extends Record {
 		return new android.nfc.NdefRecord(TNF_WELL_KNOWN, RTD_URI, new byte[]{}, recordBytes);
     }
     
+	private static NdefRecord createUri(int identifierCode, byte[] suffix, int count) {
+		String prefix = URI_PREFIX_MAP[identifierCode];
+
+		int code = getIdentifierCode(prefix, suffix, count);
+		int skip = URI_PREFIX_MAP[code].length();
+
+		byte[] payload = new byte[1 + prefix.length() + suffix.length - skip];
+		payload[0] = (byte)code;
+		int index = 1;
+		for(int i = skip; i < prefix.length(); i++) {
+			payload[index++] = (byte)prefix.charAt(i);
+		}
+		System.arraycopy(suffix, Math.max(0, skip - prefix.length()), payload, index, payload.length - index);
+
+		return new NdefRecord(TNF_WELL_KNOWN, RTD_URI, new byte[]{}, payload);
+	}
+
+	/**
+	 * Check whether the scheme of a URI is not lowercase, in which case encoding normalizes it.
+	 */
+
+	private static boolean hasUpperCaseScheme(int identifierCode, byte[] suffix) {
+		if(identifierCode != 0) {
+			// all prefixes include a lowercase scheme
+			return false;
+		}
+		boolean upperCase = false;
+		for(int i = 0; i < suffix.length; i++) {
+			byte b = suffix[i];
+			if(b == ':') {
+				return upperCase;
+			}
+			if(b == '/' || b == '?' || b == '#') {
+				break;
+			}
+			if(b >= 'A' && b <= 'Z') {
+				upperCase = true;
+			}
+		}
+		return false;
+	}
+
     @Deprecated
     protected static Uri normalizeScheme(Uri uri) {
         String scheme = uri.getScheme();
@@ -20,12 +20,14 @@
 package com.github.skjolber.ndef.wellknown.handover;
 
 import java.io.ByteArrayOutputStream;
-import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.github.skjolber.ndef.NdefStringPool;
 import com.github.skjolber.ndef.Record;
 
+import android.nfc.FormatException;
 import android.nfc.NdefRecord;
 
 /**
@@ -47,31 +49,69 @@ public class AlternativeCarrierRecord extends Record {
 
 	public static AlternativeCarrierRecord parseNdefRecord(NdefRecord ndefRecord) {
 		byte[] payload = ndefRecord.getPayload();
+
+		try {
+			return parsePayload(payload, 0, payload.length);
+		} catch (FormatException e) {
+			throw new IllegalArgumentException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Check that a payload holds all the fields of the record, following the data reference lengths, with a known
+	 * carrier power state.
+	 * 
+	 * @return true if the payload can be parsed
+	 */
+	
+	public static boolean isValidPayload(byte[] payload, int offset, int length) {
+		int end = offset + length;
+		if(offset + 2 > end) {
+			return false;
+		}
+		if(CarrierPowerState.findCarrierPowerState(payload[offset]) == null) {
+			return false;
+		}
+		int index = offset + 2 + (payload[offset + 1] & 0xFF);
+		if(index + 1 > end) {
+			return false;
+		}
+		int auxiliaryDataReferenceCount = payload[index++] & 0xFF;
+		for (int i = 0; i < auxiliaryDataReferenceCount; i++) {
+			if(index + 1 > end) {
+				return false;
+			}
+			index += 1 + (payload[index] & 0xFF);
+		}
+		// reserved end byte not checked
+		return index <= end;
+	}
+
+	public static AlternativeCarrierRecord parsePayload(byte[] payload, int offset, int length) throws FormatException {
+		if(!isValidPayload(payload, offset, length)) {
+			throw new FormatException("Expected known carrier power state and data references within " + length + " bytes payload");
+		}
 		AlternativeCarrierRecord alternativeCarrierRecord = new AlternativeCarrierRecord();
 
 		// cps
-		alternativeCarrierRecord.setCarrierPowerState(CarrierPowerState.toCarrierPowerState(payload[0]));
+		alternativeCarrierRecord.setCarrierPowerState(CarrierPowerState.toCarrierPowerState(payload[offset]));
 
 		// carrier data reference
-		short carrierDataReferenceLength = (short)payload[1];
-		alternativeCarrierRecord.setCarrierDataReference(new String(payload, 2, carrierDataReferenceLength,
-				Charset.forName("US-ASCII")));
+		int carrierDataReferenceLength = payload[offset + 1] & 0xFF;
+		alternativeCarrierRecord.setCarrierDataReference(NdefStringPool.getDefault().toAsciiString(payload, offset + 2, carrierDataReferenceLength));
 
 		// auxiliary data reference
-		short auxiliaryDataReferenceCount = (short)payload[2 + carrierDataReferenceLength];
+		int auxiliaryDataReferenceCount = payload[offset + 2 + carrierDataReferenceLength] & 0xFF;
 
-		int index = 2 + carrierDataReferenceLength + 1;
+		int index = offset + 2 + carrierDataReferenceLength + 1;
 		for (int i = 0; i < auxiliaryDataReferenceCount; i++) {
-			short auxiliaryDataReferenceLength = (short)payload[index];
+			int auxiliaryDataReferenceLength = payload[index] & 0xFF;
 
-			alternativeCarrierRecord.addAuxiliaryDataReference(new String(payload, index + 1,
-					auxiliaryDataReferenceLength, Charset.forName("US-ASCII")));
+			alternativeCarrierRecord.addAuxiliaryDataReference(NdefStringPool.getDefault().toAsciiString(payload, index + 1, auxiliaryDataReferenceLength));
 
 			index += 1 + auxiliaryDataReferenceLength;
 		}
 
-		// reserved end byte not checked
-		
 		return alternativeCarrierRecord;
 	}
 
@@ -90,14 +130,27 @@ public class AlternativeCarrierRecord extends Record {
 		}
 
 		public static CarrierPowerState toCarrierPowerState(byte value) {
+			CarrierPowerState state = findCarrierPowerState(value);
+			if (state == null) {
+				throw new IllegalArgumentException("Unknown carrier power state " + value);
+			}
+			return state;
+		}
 
+		/**
+		 * Look up a carrier power state without throwing an exception.
+		 * 
+		 * @param value carrier power state value
+		 * @return the carrier power state, or null if unknown
+		 */
+
+		public static CarrierPowerState findCarrierPowerState(byte value) {
 			for (CarrierPowerState state : values()) {
 				if (state.value == value) {
 					return state;
 				}
 			}
-
-			throw new IllegalArgumentException("Unknown carrier power state " + value);
+			return null;
 		}
 	}
 
@@ -133,6 +186,7 @@ public class AlternativeCarrierRecord extends Record {
 
 	public void setCarrierPowerState(CarrierPowerState carrierPowerState) {
 		this.carrierPowerState = carrierPowerState;
+		clearOriginalEncoding();
 	}
 
 	public String getCarrierDataReference() {
@@ -141,6 +195,7 @@ public class AlternativeCarrierRecord extends Record {
 
 	public void setCarrierDataReference(String carrierDataReference) {
 		this.carrierDataReference = carrierDataReference;
+		clearOriginalEncoding();
 	}
 
 	public List<String> getAuxiliaryDataReferences() {
@@ -149,10 +204,12 @@ public class AlternativeCarrierRecord extends Record {
 
 	public void setAuxiliaryDataReferences(List<String> auxiliaryDataReference) {
 		this.auxiliaryDataReferences = auxiliaryDataReference;
+		clearOriginalEncoding();
 	}
 
 	public void addAuxiliaryDataReference(String string) {
 		this.auxiliaryDataReferences.add(string);
+		clearOriginalEncoding();
 	}
 
 	@Override
@@ -201,6 +258,7 @@ public class AlternativeCarrierRecord extends Record {
 
 	public void setAuxiliaryDataReference(int index, String reference) {
 		auxiliaryDataReferences.set(index, reference);
+		clearOriginalEncoding();
 	}
 
 	public boolean hasCarrierDataReference() {
@@ -213,6 +271,7 @@ public class AlternativeCarrierRecord extends Record {
 
 	public void removeAuxiliaryDataReference(int index) {
 		auxiliaryDataReferences.remove(index);
+		clearOriginalEncoding();
 	}
 
 	public boolean hasAuxiliaryDataReferences() {
@@ -234,7 +293,7 @@ public class AlternativeCarrierRecord extends Record {
 		if (!hasCarrierDataReference()) {
 			throw new IllegalArgumentException("Expected carrier data reference");
 		}
-		byte[] carrierDataReferenceChar = carrierDataReference.getBytes(Charset.forName("US-ASCII"));
+		byte[] carrierDataReferenceChar = carrierDataReference.getBytes(StandardCharsets.US_ASCII);
 		if (carrierDataReferenceChar.length > 255) {
 			throw new IllegalArgumentException("Expected carrier data reference '" + carrierDataReference
 					+ "' <= 255 bytes");
@@ -249,7 +308,7 @@ public class AlternativeCarrierRecord extends Record {
 
 		for (String auxiliaryDataReference : auxiliaryDataReferences) {
 
-			byte[] auxiliaryDataReferenceChar = auxiliaryDataReference.getBytes(Charset.forName("US-ASCII"));
+			byte[] auxiliaryDataReferenceChar = auxiliaryDataReference.getBytes(StandardCharsets.US_ASCII);
 			// carrier data reference length (1)
 
 			if (auxiliaryDataReferenceChar.length > 255) {
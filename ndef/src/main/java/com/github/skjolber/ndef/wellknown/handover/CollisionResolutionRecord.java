@@ -21,6 +21,7 @@ package com.github.skjolber.ndef.wellknown.handover;
 
 import com.github.skjolber.ndef.Record;
 
+import android.nfc.FormatException;
 import android.nfc.NdefRecord;
 
 /**
@@ -41,9 +42,30 @@ public class CollisionResolutionRecord extends Record {
 	
 		byte[] payload = ndefRecord.getPayload();
 		
+		try {
+			return parsePayload(payload, 0, payload.length);
+		} catch (FormatException e) {
+			throw new IllegalArgumentException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Check that a payload holds all the fields of the record.
+	 * 
+	 * @return true if the payload can be parsed without reading past offset + length
+	 */
+	
+	public static boolean isValidPayload(byte[] payload, int offset, int length) {
+		return length >= 2;
+	}
+
+	public static CollisionResolutionRecord parsePayload(byte[] payload, int offset, int length) throws FormatException {
+		if(!isValidPayload(payload, offset, length)) {
+			throw new FormatException("Expected 2 bytes payload, not " + length);
+		}
 		CollisionResolutionRecord collisionResolutionRecord = new CollisionResolutionRecord();
 	
-		collisionResolutionRecord.setRandomNumber((((payload[0] << 8) | payload[1]) & 0xFFFF));
+		collisionResolutionRecord.setRandomNumber((((payload[offset] << 8) | payload[offset + 1]) & 0xFFFF));
 	
 		return collisionResolutionRecord;
 	}
@@ -67,6 +89,7 @@ public class CollisionResolutionRecord extends Record {
 
 	public void setRandomNumber(int randomNumber) {
 		this.randomNumber = randomNumber;
+		clearOriginalEncoding();
 	}
 
 	@Override
@@ -21,6 +21,7 @@ package com.github.skjolber.ndef.wellknown.handover;
 
 import com.github.skjolber.ndef.Record;
 
+import android.nfc.FormatException;
 import android.nfc.NdefRecord;
 
 /**
@@ -41,7 +42,38 @@ public class ErrorRecord extends Record {
 
 		byte[] payload = ndefRecord.getPayload();
 		
-		ErrorReason errorReason = ErrorReason.toErrorReason(payload[0]);
+		try {
+			return parsePayload(payload, 0, payload.length);
+		} catch (FormatException e) {
+			throw new IllegalArgumentException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Check that a payload holds all the fields of the record, with known values.
+	 * 
+	 * @return true if the payload can be parsed
+	 */
+	
+	public static boolean isValidPayload(byte[] payload, int offset, int length) {
+		if(length < 1) {
+			return false;
+		}
+		ErrorReason errorReason = ErrorReason.findErrorReason(payload[offset]);
+		if(errorReason == null) {
+			return false;
+		}
+		if(errorReason == ErrorReason.PermanenteMemoryConstraints) {
+			return length >= 5;
+		}
+		return length >= 2;
+	}
+
+	public static ErrorRecord parsePayload(byte[] payload, int offset, int length) throws FormatException {
+		if(!isValidPayload(payload, offset, length)) {
+			throw new FormatException("Expected known error reason and error data, not " + length + " bytes payload");
+		}
+		ErrorReason errorReason = ErrorReason.toErrorReason(payload[offset]);
 		
 		ErrorRecord errorRecord = new ErrorRecord();
 
@@ -57,7 +89,7 @@ public class ErrorRecord extends Record {
 				 * the subsequent receipt of a Handover Request Message by the Handover Selector.
 				 */
 
-				number = Short.valueOf((short)(payload[1] & 0xFFFF));
+				number = Short.valueOf((short)(payload[offset + 1] & 0xFFFF));
 
 				break;
 			}
@@ -69,8 +101,8 @@ public class ErrorRecord extends Record {
 				 * by the total length of the NDEF message, including all header information.
 				 */
 
-				number = Long.valueOf(((long)(payload[1] & 0xFF) << 24) + ((payload[2] & 0xFF) << 16)
-						+ ((payload[3] & 0xFF) << 8) + ((payload[4] & 0xFF) << 0));
+				number = Long.valueOf(((long)(payload[offset + 1] & 0xFF) << 24) + ((payload[offset + 2] & 0xFF) << 16)
+						+ ((payload[offset + 3] & 0xFF) << 8) + ((payload[offset + 4] & 0xFF) << 0));
 
 				break;
 			}
@@ -83,7 +115,7 @@ public class ErrorRecord extends Record {
 				 * Handover Request Message by the Handover Selector.
 				 */
 
-				number = Short.valueOf((short)(payload[1] & 0xFFFF));
+				number = Short.valueOf((short)(payload[offset + 1] & 0xFFFF));
 
 				break;
 			}
@@ -133,6 +165,21 @@ public class ErrorRecord extends Record {
 		}
 
 		public static ErrorReason toErrorReason(byte errorReason) {
+			ErrorReason reason = findErrorReason(errorReason);
+			if (reason == null) {
+				throw new IllegalArgumentException("Unexpected error reason code " + errorReason);
+			}
+			return reason;
+		}
+
+		/**
+		 * Look up an error reason without throwing an exception.
+		 * 
+		 * @param errorReason error reason code
+		 * @return the error reason, or null if unknown
+		 */
+
+		public static ErrorReason findErrorReason(byte errorReason) {
 			if (errorReason == TemporaryMemoryConstraints.value) {
 				return TemporaryMemoryConstraints;
 			}
@@ -142,7 +189,7 @@ public class ErrorRecord extends Record {
 			else if (errorReason == CarrierSpecificConstraints.value) {
 				return CarrierSpecificConstraints;
 			}
-			throw new IllegalArgumentException("Unexpected error reason code " + errorReason);
+			return null;
 		}
 	}
 
@@ -171,6 +218,7 @@ public class ErrorRecord extends Record {
 
 	public void setErrorReason(ErrorReason errorReason) {
 		this.errorReason = errorReason;
+		clearOriginalEncoding();
 	}
 
 	public Number getErrorData() {
@@ -179,6 +227,7 @@ public class ErrorRecord extends Record {
 
 	public void setErrorData(Number errorData) {
 		this.errorData = errorData;
+		clearOriginalEncoding();
 	}
 
 	@Override
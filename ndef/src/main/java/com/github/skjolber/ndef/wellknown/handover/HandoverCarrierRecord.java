@@ -21,15 +21,16 @@
 package com.github.skjolber.ndef.wellknown.handover;
 
 import java.io.ByteArrayOutputStream;
-import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 
+import com.github.skjolber.ndef.NdefDecoder;
+import com.github.skjolber.ndef.NdefStringPool;
 import com.github.skjolber.ndef.Record;
 import com.github.skjolber.ndef.externaltype.ExternalTypeRecord;
 
 import android.annotation.SuppressLint;
 import android.nfc.FormatException;
-import android.nfc.NdefMessage;
 import android.nfc.NdefRecord;
 
 /**
@@ -47,61 +48,87 @@ import android.nfc.NdefRecord;
 public class HandoverCarrierRecord extends Record {
 
 	public static HandoverCarrierRecord parseNdefRecord(NdefRecord ndefRecord) throws FormatException {
-		
 		byte[] payload = ndefRecord.getPayload();
+
+		return parsePayload(payload, 0, payload.length);
+	}
+
+	public static HandoverCarrierRecord parsePayload(byte[] payload, int offset, int length) throws FormatException {
+		return parsePayload(NdefDecoder.getDefault(), payload, offset, length);
+	}
+
+	/**
+	 * Check that a payload holds all the fields of the record, with a known carrier type format. For the
+	 * well-known and external formats, the carrier type must be a record of the same TNF.
+	 * 
+	 * @return true if the payload can be parsed, except for the carrier type record contents
+	 */
+	
+	public static boolean isValidPayload(byte[] payload, int offset, int length) {
+		if(length < 2) {
+			return false;
+		}
+		CarrierTypeFormat carrierTypeFormat = CarrierTypeFormat.findCarrierTypeFormat((short)(payload[offset] & 0x7));
+		if(carrierTypeFormat == null) {
+			return false;
+		}
+		int carrierTypeLength = payload[offset + 1] & 0xFF;
+		if(2 + carrierTypeLength > length) {
+			return false;
+		}
+		if(carrierTypeFormat == CarrierTypeFormat.WellKnown || carrierTypeFormat == CarrierTypeFormat.External) {
+			// check the tnf type in the record header instead of the class type
+			return carrierTypeLength > 0 && (payload[offset + 2] & 0x07) == carrierTypeFormat.getValue();
+		}
+		return true;
+	}
+
+	public static HandoverCarrierRecord parsePayload(NdefDecoder decoder, byte[] payload, int offset, int length) throws FormatException {
+		if(!isValidPayload(payload, offset, length)) {
+			throw new FormatException("Expected known carrier type format and carrier type, not " + length + " bytes payload");
+		}
 		
-		CarrierTypeFormat carrierTypeFormat = CarrierTypeFormat.toCarrierTypeFormat((byte)(payload[0] & 0x7));
+		CarrierTypeFormat carrierTypeFormat = CarrierTypeFormat.toCarrierTypeFormat((byte)(payload[offset] & 0x7));
 		
 		HandoverCarrierRecord handoverCarrierRecord = new HandoverCarrierRecord();
 		handoverCarrierRecord.setCarrierTypeFormat(carrierTypeFormat);
 
-		int carrierTypeLength = (int)(payload[1] & 0xFF);
+		int carrierTypeLength = (int)(payload[offset + 1] & 0xFF);
 
 		switch (carrierTypeFormat) {
 			case WellKnown: {
 				// NFC Forum well-known type [NFC RTD]
-				
-				// parse records 'manually' here, so that we can check the tnf type instead of the class type
-				byte[] recordsPayload = new byte[carrierTypeLength];
-				System.arraycopy(payload, 2, recordsPayload, 0, carrierTypeLength);
-				NdefMessage message = new NdefMessage(recordsPayload);
-				
-				NdefRecord[] records = message.getRecords();
-				if(records.length != 1) {
-					throw new IllegalArgumentException();
-				}
-				if(records[0].getTnf() != NdefRecord.TNF_WELL_KNOWN) {
-					throw new IllegalArgumentException("Expected well-known type carrier type");
-				}
-				
-				handoverCarrierRecord.setCarrierType(Record.parse(records[0]));
+
+				handoverCarrierRecord.setCarrierType(Record.parse(decoder, payload, offset + 2, carrierTypeLength));
 
 				break;
 			}
 			case Media: {
 
 				// Media-type as defined in RFC 2046 [RFC 2046]
-				handoverCarrierRecord.setCarrierType(new String(payload, 2, carrierTypeLength, Charset.forName("US-ASCII")));
+				handoverCarrierRecord.setCarrierType(NdefStringPool.getDefault().toAsciiString(payload, offset + 2, carrierTypeLength));
 
 				break;
 			}
 			case AbsoluteURI: {
 				// Absolute URI as defined in RFC 3986 [RFC 3986]
-				handoverCarrierRecord.setCarrierType(new String(payload, 2, carrierTypeLength, Charset.forName("US-ASCII")));
+				handoverCarrierRecord.setCarrierType(NdefStringPool.getDefault().toAsciiString(payload, offset + 2, carrierTypeLength));
 
 				break;
 			}
 			case External: {
 				// NFC Forum external type [NFC RTD]
 
-				Record record = Record.parse(payload, 2, carrierTypeLength);
+				Record record = Record.parse(decoder, payload, offset + 2, carrierTypeLength);
 
 				if (record instanceof ExternalTypeRecord) {
 					handoverCarrierRecord.setCarrierType(record);
 				}
 				else {
-					throw new IllegalArgumentException("Expected external type carrier type, not " + record.getClass().getSimpleName());
+					throw new FormatException("Expected external type carrier type, not " + record.getClass().getSimpleName());
 				}
+
+				break;
 			}
 			default: {
 				throw new RuntimeException();
@@ -110,12 +137,12 @@ public class HandoverCarrierRecord extends Record {
 		}
 
 		// The number of CARRIER_DATA octets is equal to the NDEF record PAYLOAD_LENGTH minus the CARRIER_TYPE_LENGTH minus 2.		
-		int carrierDataLength = payload.length - 2 - carrierTypeLength;
+		int carrierDataLength = length - 2 - carrierTypeLength;
 
 		byte[] carrierData;
 		if (carrierDataLength > 0) {
 			carrierData = new byte[carrierDataLength];
-			System.arraycopy(payload, 2 + carrierTypeLength, carrierData, 0, carrierDataLength);
+			System.arraycopy(payload, offset + 2 + carrierTypeLength, carrierData, 0, carrierDataLength);
 		}
 		else {
 			carrierData = null;
@@ -142,12 +169,27 @@ public class HandoverCarrierRecord extends Record {
 		}
 
 		public static CarrierTypeFormat toCarrierTypeFormat(short value) {
+			CarrierTypeFormat carrierTypeFormat = findCarrierTypeFormat(value);
+			if (carrierTypeFormat == null) {
+				throw new IllegalArgumentException("Unknown carrier type format " + value);
+			}
+			return carrierTypeFormat;
+		}
+
+		/**
+		 * Look up a carrier type format without throwing an exception.
+		 * 
+		 * @param value carrier type format value
+		 * @return the carrier type format, or null if unknown
+		 */
+
+		public static CarrierTypeFormat findCarrierTypeFormat(short value) {
 			for (CarrierTypeFormat carrierTypeFormat : values()) {
 				if (carrierTypeFormat.value == value) {
 					return carrierTypeFormat;
 				}
 			}
-			throw new IllegalArgumentException("Unknown carrier type format " + value);
+			return null;
 		}
 	}
 
@@ -260,6 +302,12 @@ public class HandoverCarrierRecord extends Record {
 	}
 
 	@SuppressLint({ "NewApi", "NewApi" })
+	@Override
+	protected boolean isOriginalEncodingSupported() {
+		// nested records can be changed directly
+		return false;
+	}
+
 	@Override
 	public NdefRecord getNdefRecord() {
 		ByteArrayOutputStream bout = new ByteArrayOutputStream();
@@ -288,7 +336,7 @@ public class HandoverCarrierRecord extends Record {
 				// Media-type as defined in RFC 2046 [RFC 2046]
 				String string = (String)carrierType;
 
-				encoded = string.getBytes(Charset.forName("US-ASCII"));
+				encoded = string.getBytes(StandardCharsets.US_ASCII);
 
 				break;
 			}
@@ -296,7 +344,7 @@ public class HandoverCarrierRecord extends Record {
 				// Absolute URI as defined in RFC 3986 [RFC 3986]
 				String string = (String)carrierType;
 
-				encoded = string.getBytes(Charset.forName("US-ASCII"));
+				encoded = string.getBytes(StandardCharsets.US_ASCII);
 
 				break;
 			}
@@ -24,6 +24,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import com.github.skjolber.ndef.Message;
+import com.github.skjolber.ndef.NdefDecoder;
 import com.github.skjolber.ndef.Record;
 
 import android.nfc.FormatException;
@@ -50,22 +51,41 @@ public class HandoverRequestRecord extends Record {
 
 	public static HandoverRequestRecord parseNdefRecord(NdefRecord ndefRecord) throws FormatException {
 		byte[] payload = ndefRecord.getPayload();
+
+		return parsePayload(payload, 0, payload.length);
+	}
+
+	public static HandoverRequestRecord parsePayload(byte[] payload, int offset, int length) throws FormatException {
+		return parsePayload(NdefDecoder.getDefault(), payload, offset, length);
+	}
+
+	/**
+	 * Check that a payload holds all the fields of the record.
+	 * 
+	 * @return true if the payload can be parsed without reading past offset + length
+	 */
+	
+	public static boolean isValidPayload(byte[] payload, int offset, int length) {
+		return length >= 1;
+	}
+
+	public static HandoverRequestRecord parsePayload(NdefDecoder decoder, byte[] payload, int offset, int length) throws FormatException {
+		if(!isValidPayload(payload, offset, length)) {
+			throw new FormatException("Expected version byte");
+		}
 		
 		HandoverRequestRecord handoverRequestRecord = new HandoverRequestRecord();
 
-		byte minorVersion = (byte)(payload[0] & 0x0F);
-		byte majorVersion = (byte)((payload[0] >> 4) & 0x0F);
+		byte minorVersion = (byte)(payload[offset] & 0x0F);
+		byte majorVersion = (byte)((payload[offset] >> 4) & 0x0F);
 
 		handoverRequestRecord.setMinorVersion(minorVersion);
 		handoverRequestRecord.setMajorVersion(majorVersion);
 
-		normalizeMessageBeginEnd(payload, 1, payload.length -1);
-
-		List<Record> records = Message.parseNdefMessage(payload, 1, payload.length -1);
+		List<Record> records = parseMessage(decoder, payload, offset + 1, length - 1);
 
 		if (records.isEmpty()) {
-			throw new IllegalArgumentException(
-					"Expected collision resolution record and at least one alternative carrier");
+			throw new FormatException("Expected collision resolution record and at least one alternative carrier");
 		}
 
 		for (int i = 0; i < records.size(); i++) {
@@ -80,7 +100,7 @@ public class HandoverRequestRecord extends Record {
 		}
 
 		if (handoverRequestRecord.getAlternativeCarriers().size() == 0)
-			throw new IllegalArgumentException("Expected at least one alternative carrier");
+			throw new FormatException("Expected at least one alternative carrier");
 
 		return handoverRequestRecord;
 	}
@@ -217,6 +237,12 @@ public class HandoverRequestRecord extends Record {
 		return true;
 	}
 
+	@Override
+	protected boolean isOriginalEncodingSupported() {
+		// nested records can be changed directly
+		return false;
+	}
+
 	@Override
 	public NdefRecord getNdefRecord() {
 
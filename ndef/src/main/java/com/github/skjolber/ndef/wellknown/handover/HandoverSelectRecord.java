@@ -23,6 +23,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import com.github.skjolber.ndef.Message;
+import com.github.skjolber.ndef.NdefDecoder;
 import com.github.skjolber.ndef.Record;
 
 import android.nfc.FormatException;
@@ -47,20 +48,40 @@ public class HandoverSelectRecord extends Record {
 
 	public static HandoverSelectRecord parseNdefRecord(NdefRecord ndefRecord) throws FormatException {
 		byte[] payload = ndefRecord.getPayload();
+
+		return parsePayload(payload, 0, payload.length);
+	}
+
+	public static HandoverSelectRecord parsePayload(byte[] payload, int offset, int length) throws FormatException {
+		return parsePayload(NdefDecoder.getDefault(), payload, offset, length);
+	}
+
+	/**
+	 * Check that a payload holds all the fields of the record.
+	 * 
+	 * @return true if the payload can be parsed without reading past offset + length
+	 */
+	
+	public static boolean isValidPayload(byte[] payload, int offset, int length) {
+		return length >= 1;
+	}
+
+	public static HandoverSelectRecord parsePayload(NdefDecoder decoder, byte[] payload, int offset, int length) throws FormatException {
+		if(!isValidPayload(payload, offset, length)) {
+			throw new FormatException("Expected version byte");
+		}
 		
 		HandoverSelectRecord handoverSelectRecord = new HandoverSelectRecord();
 
-		byte minorVersion = (byte)(payload[0] & 0x0F);
-		byte majorVersion = (byte)((payload[0] >> 4) & 0x0F);
+		byte minorVersion = (byte)(payload[offset] & 0x0F);
+		byte majorVersion = (byte)((payload[offset] >> 4) & 0x0F);
 
 		handoverSelectRecord.setMinorVersion(minorVersion);
 		handoverSelectRecord.setMajorVersion(majorVersion);
 
 		// The Handover Selector MAY acknowledge zero, one, or more of the proposed alternative carriers at its own discretion.
-		if(payload.length > 1) {
-			normalizeMessageBeginEnd(payload, 1, payload.length -1);
-			
-			List<Record> records = Message.parseNdefMessage(payload, 1, payload.length -1);
+		if(length > 1) {
+			List<Record> records = parseMessage(decoder, payload, offset + 1, length - 1);
 
 			// Only Alternative Carrier Records and Error Records have a defined meaning in the payload of a Handover Select Record.
 			// However, an implementation SHALL NOT raise an error if it encounters other record types, but SHOULD silently ignore them.
@@ -216,6 +237,12 @@ public class HandoverSelectRecord extends Record {
 		return true;
 	}
 
+	@Override
+	protected boolean isOriginalEncodingSupported() {
+		// nested records can be changed directly
+		return false;
+	}
+
 	@Override
 	public NdefRecord getNdefRecord() {
 
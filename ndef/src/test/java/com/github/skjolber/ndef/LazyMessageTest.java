@@ -0,0 +1,98 @@
+/***************************************************************************
+ *
+ * This file is part of the 'NDEF Tools for Android' project at
+ * http://code.google.com/p/ndef-tools-for-android/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ****************************************************************************/
+
+package com.github.skjolber.ndef;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.github.skjolber.ndef.wellknown.UriRecord;
+
+import android.nfc.NdefMessage;
+import android.nfc.NdefRecord;
+
+/**
+ *
+ * Lazy decoding test.
+ *
+ * @author Thomas Rorvik Skjolberg (skjolber@gmail.com)
+ *
+ */
+
+public class LazyMessageTest {
+
+	@Test
+	public void testDecodeOnAccess() throws Exception {
+		byte[] encoded = new Message(NdefEncodeDecodeRoundtripTest.records).getNdefMessage().toByteArray();
+
+		LazyMessage message = LazyMessage.parseNdefMessage(encoded);
+		assertEquals(NdefEncodeDecodeRoundtripTest.records.length, message.size());
+
+		NdefRecord[] ndefRecords = new NdefMessage(encoded).getRecords();
+		for(int i = 0; i < message.size(); i++) {
+			assertEquals(ndefRecords[i].getTnf(), message.getTnf(i));
+			assertTrue(Arrays.equals(ndefRecords[i].getType(), message.getType(i)));
+			assertFalse(message.isDecoded(i));
+		}
+
+		assertEquals(NdefEncodeDecodeRoundtripTest.records[0], message.get(0));
+		assertTrue(message.isDecoded(0));
+		assertFalse(message.isDecoded(1));
+
+		// undecoded records are passed through
+		assertTrue(Arrays.equals(encoded, message.getNdefMessage().toByteArray()));
+
+		// iteration decodes all
+		int count = 0;
+		for(Record record : message) {
+			assertEquals(NdefEncodeDecodeRoundtripTest.records[count], record);
+			count++;
+		}
+		assertEquals(message.size(), count);
+	}
+
+	@Test
+	public void testListOperations() throws Exception {
+		byte[] encoded = new Message(NdefEncodeDecodeRoundtripTest.records).getNdefMessage().toByteArray();
+
+		Message eager = Message.parseNdefMessage(encoded);
+		assertEquals(eager, LazyMessage.parseNdefMessage(encoded));
+		assertEquals(LazyMessage.parseNdefMessage(encoded), eager);
+		assertEquals(eager.hashCode(), LazyMessage.parseNdefMessage(encoded).hashCode());
+		assertEquals(eager, new ArrayList<Record>(LazyMessage.parseNdefMessage(encoded)));
+
+		LazyMessage message = LazyMessage.parseNdefMessage(encoded);
+		UriRecord uriRecord = new UriRecord("http://appended.uri");
+		message.add(uriRecord);
+		assertFalse(message.isDecoded(0));
+		assertEquals(NdefRecord.TNF_WELL_KNOWN, message.getTnf(message.size() - 1));
+
+		message.remove(0);
+		assertEquals(eager.size(), message.size());
+		assertTrue(message.isDecoded(0));
+
+		List<Record> expected = new ArrayList<Record>(eager.subList(1, eager.size()));
+		expected.add(uriRecord);
+		assertEquals(expected, message);
+	}
+}
@@ -0,0 +1,147 @@
+/***************************************************************************
+ *
+ * This file is part of the 'NDEF Tools for Android' project at
+ * http://code.google.com/p/ndef-tools-for-android/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ****************************************************************************/
+
+package com.github.skjolber.ndef;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Iterator;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.skjolber.ndef.wellknown.UriRecord;
+
+import android.nfc.FormatException;
+
+/**
+ *
+ * Check that {@link NdefDecodeCache} returns cached messages for equal bytes only, and evicts the least recently used.
+ *
+ * @author Thomas Rorvik Skjolberg (skjolber@gmail.com)
+ *
+ */
+
+public class NdefDecodeCacheTest {
+
+	private static byte[] encode(String uri) {
+		return new Message(new UriRecord(uri)).getNdefMessage().toByteArray();
+	}
+
+	@Test
+	public void testHitsAndMisses() throws Exception {
+		NdefDecodeCache cache = new NdefDecodeCache(10);
+
+		byte[] encoded = encode("http://first.uri");
+		Message message = cache.decode(encoded);
+		assertEquals(Message.parseNdefMessage(encoded), message);
+		assertEquals(0, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+
+		// equal bytes in another array, at an offset
+		byte[] copy = new byte[encoded.length + 2];
+		System.arraycopy(encoded, 0, copy, 1, encoded.length);
+		assertSame(message, cache.decode(copy, 1, encoded.length));
+		assertEquals(1, cache.getHitCount());
+
+		assertNotSame(message, cache.decode(encode("http://second.uri")));
+		assertEquals(2, cache.getMissCount());
+		assertEquals(2, cache.size());
+
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertNotSame(message, cache.decode(encoded));
+	}
+
+	@Test
+	public void testReadOnly() throws Exception {
+		NdefDecodeCache cache = new NdefDecodeCache(10);
+
+		byte[] encoded = encode("http://first.uri");
+		Message message = cache.decode(encoded);
+
+		assertThrows(UnsupportedOperationException.class, () -> message.add(new UriRecord("http://second.uri")));
+		assertThrows(UnsupportedOperationException.class, () -> message.set(0, new UriRecord("http://second.uri")));
+		assertThrows(UnsupportedOperationException.class, () -> message.remove(0));
+		assertThrows(UnsupportedOperationException.class, () -> message.clear());
+		assertThrows(UnsupportedOperationException.class, () -> message.subList(0, 1).set(0, new UriRecord("http://second.uri")));
+		assertThrows(UnsupportedOperationException.class, () -> {
+			Iterator<Record> iterator = message.iterator();
+			iterator.next();
+			iterator.remove();
+		});
+		assertThrows(UnsupportedOperationException.class, () -> Message.parseInto(message, encode("http://second.uri")));
+
+		// other callers see the original message
+		assertEquals(Message.parseNdefMessage(encoded), cache.decode(encoded));
+
+		// copies can be modified
+		Message copy = new Message(message);
+		copy.clear();
+		assertEquals(1, message.size());
+	}
+
+	@Test
+	public void testHashCollision() throws Exception {
+		// same hash, different bytes
+		byte[] first = new Message(new MimeRecord("a/b", new byte[]{1, 40})).getNdefMessage().toByteArray();
+		byte[] second = new Message(new MimeRecord("a/b", new byte[]{2, 9})).getNdefMessage().toByteArray();
+
+		NdefDecodeCache cache = new NdefDecodeCache(10);
+		Message firstMessage = cache.decode(first);
+		Message secondMessage = cache.decode(second);
+		assertEquals(0, cache.getHitCount());
+		assertArrayEquals(new byte[]{2, 9}, ((MimeRecord)secondMessage.get(0)).getData());
+
+		assertSame(firstMessage, cache.decode(first));
+		assertSame(secondMessage, cache.decode(second));
+	}
+
+	@Test
+	public void testEviction() throws Exception {
+		NdefDecodeCache cache = new NdefDecodeCache(2);
+
+		Message first = cache.decode(encode("http://first.uri"));
+		Message second = cache.decode(encode("http://second.uri"));
+
+		// first is now the most recently used
+		assertSame(first, cache.decode(encode("http://first.uri")));
+
+		cache.decode(encode("http://third.uri"));
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictionCount());
+
+		assertSame(first, cache.decode(encode("http://first.uri")));
+		assertNotSame(second, cache.decode(encode("http://second.uri")));
+	}
+
+	@Test
+	public void testInvalidMessagesNotCached() throws Exception {
+		NdefDecodeCache cache = new NdefDecodeCache(NdefDecoder.getDefault(), 10, 16);
+
+		byte[] encoded = encode("http://first.uri");
+		assertThrows(FormatException.class, () -> cache.decode(encoded, 0, encoded.length - 1));
+		assertEquals(0, cache.size());
+
+		// above max message size
+		byte[] large = encode("http://a.long.uri/which/is/not/cached");
+		assertNotSame(cache.decode(large), cache.decode(large));
+		assertEquals(0, cache.size());
+		assertEquals(3, cache.getMissCount());
+	}
+}
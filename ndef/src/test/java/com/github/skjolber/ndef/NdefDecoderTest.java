@@ -0,0 +1,627 @@
+/***************************************************************************
+ *
+ * This file is part of the 'NDEF Tools for Android' project at
+ * http://code.google.com/p/ndef-tools-for-android/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ****************************************************************************/
+
+package com.github.skjolber.ndef;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.github.skjolber.ndef.DecodeResult.Status;
+import com.github.skjolber.ndef.NdefDecoder.Strictness;
+import com.github.skjolber.ndef.externaltype.GenericExternalTypeRecord;
+import com.github.skjolber.ndef.wellknown.GcDataRecord;
+import com.github.skjolber.ndef.wellknown.SmartPosterRecord;
+import com.github.skjolber.ndef.wellknown.TextRecord;
+import com.github.skjolber.ndef.wellknown.UriRecord;
+import com.github.skjolber.ndef.wellknown.handover.AlternativeCarrierRecord;
+import com.github.skjolber.ndef.wellknown.handover.AlternativeCarrierRecord.CarrierPowerState;
+import com.github.skjolber.ndef.wellknown.handover.HandoverCarrierRecord;
+import com.github.skjolber.ndef.wellknown.handover.HandoverCarrierRecord.CarrierTypeFormat;
+import com.github.skjolber.ndef.wellknown.handover.HandoverSelectRecord;
+
+import android.net.Uri;
+import android.nfc.FormatException;
+import android.nfc.NdefMessage;
+import android.nfc.NdefRecord;
+
+/**
+ *
+ * Check that direct decoding gives the same result as decoding via {@link NdefMessage}.
+ *
+ * @author Thomas Rorvik Skjolberg (skjolber@gmail.com)
+ *
+ */
+
+public class NdefDecoderTest {
+
+	@Test
+	public void testEquivalentToNdefMessage() throws Exception {
+		for(int version = 10; version <= 29; version++) {
+			android.os.Build.VERSION.SDK_INT = version;
+
+			Message message = new Message(NdefEncodeDecodeRoundtripTest.records);
+			byte[] encoded = message.getNdefMessage().toByteArray();
+
+			Message expected = new Message(new NdefMessage(encoded));
+			Message decoded = Message.parseNdefMessage(encoded);
+
+			assertEquals(expected.size(), decoded.size());
+			for(int i = 0; i < expected.size(); i++) {
+				assertEquals(expected.get(i), decoded.get(i), expected.get(i).getClass().getName());
+			}
+			assertArrayEquals(encoded, decoded.getNdefMessage().toByteArray());
+		}
+	}
+
+	@Test
+	public void testRecordId() throws Exception {
+		Record record = new UnknownRecord(new byte[]{0x01, 0x02});
+		record.setKey("id");
+
+		Message decoded = Message.parseNdefMessage(new Message(record).getNdefMessage().toByteArray());
+		assertEquals(1, decoded.size());
+		assertEquals("id", decoded.get(0).getKey());
+		assertEquals(record, decoded.get(0));
+	}
+
+	@Test
+	public void testChunkedRecord() throws Exception {
+		// mime type record 'a/b' with payload split over three chunks
+		byte[] chunked = new byte[] {
+				(byte)0xB2, 0x03, 0x02, 'a', '/', 'b', 0x01, 0x02, // MB, CF, SR, TNF_MIME_MEDIA
+				(byte)0x36, 0x00, 0x01, 0x03, // CF, SR, TNF_UNCHANGED
+				(byte)0x56, 0x00, 0x02, 0x04, 0x05 // ME, SR, TNF_UNCHANGED
+		};
+
+		Message decoded = Message.parseNdefMessage(chunked);
+		assertEquals(1, decoded.size());
+
+		MimeRecord mimeRecord = (MimeRecord)decoded.get(0);
+		assertEquals("a/b", mimeRecord.getMimeType());
+		assertArrayEquals(new byte[]{0x01, 0x02, 0x03, 0x04, 0x05}, mimeRecord.getData());
+	}
+
+	@Test
+	public void testInvalidMessages() throws Exception {
+		byte[] encoded = new Message(NdefEncodeDecodeRoundtripTest.records).getNdefMessage().toByteArray();
+
+		assertThrows(FormatException.class, () -> Message.parseNdefMessage(new byte[0]));
+		assertThrows(FormatException.class, () -> Message.parseNdefMessage(Arrays.copyOf(encoded, encoded.length - 1)));
+		assertThrows(FormatException.class, () -> Message.parseNdefMessage(Arrays.copyOf(encoded, encoded.length + 1)));
+
+		byte[] noMessageBegin = encoded.clone();
+		noMessageBegin[0] &= 0x7F;
+		assertThrows(FormatException.class, () -> Message.parseNdefMessage(noMessageBegin));
+	}
+
+	@Test
+	public void testNestedMessageInputNotModified() throws Exception {
+		SmartPosterRecord smartPosterRecord = new SmartPosterRecord(new TextRecord("Title", Charset.forName("UTF-8"), new Locale("no")), new UriRecord("http://smartposter.uri"), null);
+
+		byte[] encoded = new Message(smartPosterRecord).getNdefMessage().toByteArray();
+		// clear the MB flag of the first nested record; header, type length, short payload length and 'Sp' type precede it
+		assertEquals((byte)0x80, (byte)(encoded[5] & 0x80));
+		encoded[5] &= 0x7F;
+
+		byte[] input = encoded.clone();
+
+		Message decoded = Message.parseNdefMessage(input);
+		assertEquals(smartPosterRecord, decoded.get(0));
+		assertArrayEquals(encoded, input);
+	}
+
+	@Test
+	public void testContainerPayloadNotModified() throws Exception {
+		SmartPosterRecord smartPosterRecord = new SmartPosterRecord(new TextRecord("Title", Charset.forName("UTF-8"), new Locale("no")), new UriRecord("http://smartposter.uri"), null);
+
+		byte[] payload = smartPosterRecord.getNdefRecord().getPayload();
+		// set the ME flag of the first of two nested records
+		payload[0] |= 0x40;
+		byte[] expected = payload.clone();
+
+		assertEquals(smartPosterRecord, SmartPosterRecord.parsePayload(payload, 0, payload.length));
+		assertArrayEquals(expected, payload);
+	}
+
+	@Test
+	public void testNestedHandoverMessage() throws Exception {
+		AlternativeCarrierRecord alternativeCarrierRecord = new AlternativeCarrierRecord(CarrierPowerState.Active, "0");
+
+		HandoverSelectRecord handoverSelectRecord = new HandoverSelectRecord();
+		handoverSelectRecord.add(alternativeCarrierRecord);
+
+		GenericExternalTypeRecord carrierType = new GenericExternalTypeRecord("example.com", "carrier", new byte[]{0x01});
+		HandoverCarrierRecord handoverCarrierRecord = new HandoverCarrierRecord(CarrierTypeFormat.External, carrierType, new byte[1024]);
+		handoverCarrierRecord.setKey("0");
+
+		Message message = new Message();
+		message.add(handoverSelectRecord);
+		message.add(handoverCarrierRecord);
+
+		byte[] encoded = message.getNdefMessage().toByteArray();
+		byte[] input = new byte[encoded.length + 4];
+		System.arraycopy(encoded, 0, input, 2, encoded.length);
+
+		Message decoded = Message.parseNdefMessage(input, 2, encoded.length);
+		assertEquals(message, decoded);
+	}
+
+	private static class CustomRecord extends MimeRecord {
+
+		public CustomRecord(byte[] data) {
+			super("application/x-custom", data);
+		}
+	}
+
+	@Test
+	public void testRegistryAppliesToNestedMessages() throws Exception {
+		RecordParserRegistry registry = new RecordParserRegistry(RecordParserRegistry.getDefault());
+		registry.register(NdefRecord.TNF_MIME_MEDIA, "application/x-custom", new RecordParser() {
+			@Override
+			public Record parse(NdefDecoder decoder, byte[] type, int typeOffset, int typeLength, byte[] payload, int payloadOffset, int payloadLength) {
+				return new CustomRecord(Arrays.copyOfRange(payload, payloadOffset, payloadOffset + payloadLength));
+			}
+		});
+		NdefDecoder decoder = new NdefDecoder(registry);
+
+		GcDataRecord gcDataRecord = new GcDataRecord();
+		gcDataRecord.add(new MimeRecord("application/x-custom", new byte[]{0x01}));
+		byte[] encoded = new Message(gcDataRecord).getNdefMessage().toByteArray();
+
+		GcDataRecord decoded = (GcDataRecord)decoder.decode(encoded).get(0);
+		assertTrue(decoded.getRecords().get(0) instanceof CustomRecord);
+
+		// the default decoder is not affected
+		GcDataRecord defaultDecoded = (GcDataRecord)Message.parseNdefMessage(encoded).get(0);
+		assertEquals(MimeRecord.class, defaultDecoded.getRecords().get(0).getClass());
+	}
+
+	@Test
+	public void testStrictness() throws Exception {
+		byte[] encoded = new Message(NdefEncodeDecodeRoundtripTest.records).getNdefMessage().toByteArray();
+		byte[] noMessageBegin = encoded.clone();
+		noMessageBegin[0] &= 0x7F;
+
+		NdefDecoder strict = new NdefDecoder(RecordParserRegistry.getDefault(), Strictness.STRICT, 1024);
+		assertThrows(FormatException.class, () -> strict.decode(noMessageBegin));
+
+		NdefDecoder lenient = new NdefDecoder(RecordParserRegistry.getDefault(), Strictness.LENIENT, 1024);
+		assertEquals(strict.decode(encoded), lenient.decode(noMessageBegin));
+
+		// reserved TNF with a type
+		byte[] invalidTnf = new byte[] {(byte)0xD7, 0x01, 0x01, 'x', 0x01};
+		assertThrows(FormatException.class, () -> strict.decode(invalidTnf));
+
+		NdefDecoder trusted = new NdefDecoder(RecordParserRegistry.getDefault(), Strictness.TRUSTED, 1024);
+		assertTrue(trusted.decode(invalidTnf).get(0) instanceof UnsupportedRecord);
+		assertEquals(strict.decode(encoded), trusted.decode(encoded));
+	}
+
+	@Test
+	public void testHeaderErrorBeforeInvalidRecord() throws Exception {
+		// alternative carrier record without carrier data reference, followed by a trailing byte
+		byte[] alternativeCarrier = new byte[] {(byte)0xD1, 0x02, 0x01, 'a', 'c', 0x74, 0x01};
+		// empty signature record, followed by trailing bytes
+		byte[] signature = new byte[] {(byte)0xD1, 0x03, 0x00, 'S', 'i', 'g', 0x2D, 0x00};
+
+		NdefDecoder decoder = NdefDecoder.getDefault();
+		for(byte[] data : new byte[][]{alternativeCarrier, signature}) {
+			FormatException e = assertThrows(FormatException.class, () -> decoder.decode(data));
+			assertTrue(e.getMessage().startsWith(Status.TRAILING_DATA.getMessage()), e.getMessage());
+			e = assertThrows(FormatException.class, () -> decoder.decode(data, 0, data.length, null));
+			assertTrue(e.getMessage().startsWith(Status.TRAILING_DATA.getMessage()), e.getMessage());
+			e = assertThrows(FormatException.class, () -> decoder.decodeInto(new Message(), data, 0, data.length));
+			assertTrue(e.getMessage().startsWith(Status.TRAILING_DATA.getMessage()), e.getMessage());
+
+			assertEquals(Status.TRAILING_DATA, decoder.tryDecode(data).getStatus());
+		}
+	}
+
+	@Test
+	public void testTrustedChunkWithMessageEnd() throws Exception {
+		// MB, ME, CF, SR, TNF_MIME_MEDIA: the message ends within a chunked record
+		byte[] chunked = new byte[] {(byte)0xF2, 0x03, 0x01, 'a', '/', 'b', 0x01};
+		// ... and the last chunk follows anyway
+		byte[] trailing = new byte[] {(byte)0xF2, 0x03, 0x01, 'a', '/', 'b', 0x01, 0x56, 0x00, 0x01, 0x02};
+
+		NdefDecoder trusted = new NdefDecoder(RecordParserRegistry.getDefault(), Strictness.TRUSTED, 1024);
+		for(byte[] data : new byte[][]{chunked, trailing}) {
+			FormatException e = assertThrows(FormatException.class, () -> trusted.decode(data));
+			assertTrue(e.getMessage().startsWith(Status.UNEXPECTED_ME.getMessage()), e.getMessage());
+			assertThrows(FormatException.class, () -> trusted.decodeInto(new Message(), data, 0, data.length));
+			assertThrows(FormatException.class, () -> NdefIndex.scan(data, 0, data.length, trusted));
+
+			DecodeResult result = trusted.tryDecode(data);
+			assertEquals(Status.UNEXPECTED_ME, result.getStatus());
+			assertEquals(0, result.getOffset());
+		}
+	}
+
+	@Test
+	public void testMaxPayloadSize() throws Exception {
+		byte[] encoded = new Message(new MimeRecord("a/b", new byte[16])).getNdefMessage().toByteArray();
+
+		assertEquals(1, new NdefDecoder(RecordParserRegistry.getDefault(), Strictness.STRICT, 16).decode(encoded).size());
+		assertThrows(FormatException.class, () -> new NdefDecoder(RecordParserRegistry.getDefault(), Strictness.STRICT, 15).decode(encoded));
+	}
+
+	@Test
+	public void testTryDecode() throws Exception {
+		byte[] encoded = new Message(NdefEncodeDecodeRoundtripTest.records).getNdefMessage().toByteArray();
+
+		NdefDecoder decoder = NdefDecoder.getDefault();
+
+		DecodeResult result = decoder.tryDecode(encoded);
+		assertTrue(result.isSuccess());
+		assertEquals(Message.parseNdefMessage(encoded), result.getMessage());
+
+		assertEquals(Status.EXPECTED_MORE_DATA, decoder.tryDecode(Arrays.copyOf(encoded, encoded.length - 1)).getStatus());
+
+		result = decoder.tryDecode(Arrays.copyOf(encoded, encoded.length + 1));
+		assertEquals(Status.TRAILING_DATA, result.getStatus());
+		assertEquals(encoded.length, result.getOffset());
+
+		byte[] noMessageBegin = encoded.clone();
+		noMessageBegin[0] &= 0x7F;
+		result = decoder.tryDecode(noMessageBegin);
+		assertEquals(Status.EXPECTED_MB, result.getStatus());
+		assertEquals(0, result.getOffset());
+		assertNull(result.getMessage());
+	}
+
+	@Test
+	public void testTryDecodeInvalidRecord() throws Exception {
+		// alternative carrier record with an invalid carrier power state
+		byte[] encoded = new Message(new AlternativeCarrierRecord(CarrierPowerState.Active, "0")).getNdefMessage().toByteArray();
+		assertEquals(0x01, encoded[5]); // header, type length, short payload length and 'ac' type precede it
+		encoded[5] = 0x07;
+
+		DecodeResult result = NdefDecoder.getDefault().tryDecode(encoded);
+		assertEquals(Status.INVALID_RECORD, result.getStatus());
+		assertEquals(3, result.getOffset());
+	}
+
+	@Test
+	public void testTryDecodeAgreesWithDecode() throws Exception {
+		byte[] encoded = new Message(NdefEncodeDecodeRoundtripTest.records).getNdefMessage().toByteArray();
+
+		NdefDecoder decoder = NdefDecoder.getDefault();
+
+		Random random = new Random(1);
+		for(int i = 0; i < 1000; i++) {
+			byte[] junk = encoded.clone();
+			for(int k = 0; k < 1 + random.nextInt(3); k++) {
+				junk[random.nextInt(junk.length)] = (byte)random.nextInt();
+			}
+
+			DecodeResult result = decoder.tryDecode(junk);
+
+			Message message;
+			try {
+				message = decoder.decode(junk);
+			} catch(Exception e) {
+				message = null;
+			}
+			assertEquals(message, result.getMessage());
+		}
+	}
+
+	@Test
+	public void testDecodeJunkRecords() throws Exception {
+		NdefDecoder decoder = NdefDecoder.getDefault();
+
+		Random random = new Random(1);
+		for(Record record : NdefEncodeDecodeRoundtripTest.records) {
+			byte[] encoded = new Message(record).getNdefMessage().toByteArray();
+
+			for(int i = 0; i < 2000; i++) {
+				byte[] junk = encoded.clone();
+				for(int k = 0; k < 1 + random.nextInt(3); k++) {
+					junk[random.nextInt(junk.length)] = (byte)random.nextInt();
+				}
+
+				// invalid input is only reported as FormatException
+				Message message;
+				try {
+					message = decoder.decode(junk);
+				} catch(FormatException e) {
+					message = null;
+				}
+
+				DecodeResult result = decoder.tryDecode(junk);
+				assertEquals(message, result.getMessage());
+			}
+		}
+	}
+
+	@Test
+	public void testTryDecodeParserFailure() throws Exception {
+		RecordParserRegistry registry = new RecordParserRegistry(RecordParserRegistry.getDefault());
+		registry.register(NdefRecord.TNF_MIME_MEDIA, "application/x-invalid", new RecordParser() {
+			@Override
+			public Record parse(NdefDecoder decoder, byte[] type, int typeOffset, int typeLength, byte[] payload, int payloadOffset, int payloadLength) throws FormatException {
+				throw new FormatException("Invalid");
+			}
+		});
+		registry.register(NdefRecord.TNF_MIME_MEDIA, "application/x-bug", new RecordParser() {
+			@Override
+			public Record parse(NdefDecoder decoder, byte[] type, int typeOffset, int typeLength, byte[] payload, int payloadOffset, int payloadLength) {
+				throw new IllegalStateException();
+			}
+		});
+		NdefDecoder decoder = new NdefDecoder(registry);
+
+		// rejected by the parser
+		byte[] invalid = new Message(new MimeRecord("application/x-invalid", new byte[]{0x01})).getNdefMessage().toByteArray();
+		DecodeResult result = decoder.tryDecode(invalid);
+		assertEquals(Status.INVALID_RECORD, result.getStatus());
+		assertEquals(3, result.getOffset());
+
+		// nested within a container
+		GcDataRecord gcDataRecord = new GcDataRecord();
+		gcDataRecord.add(new MimeRecord("application/x-invalid", new byte[]{0x01}));
+		assertEquals(Status.INVALID_RECORD, decoder.tryDecode(new Message(gcDataRecord).getNdefMessage().toByteArray()).getStatus());
+
+		// bugs in parsers are not mistaken for invalid input
+		byte[] bug = new Message(new MimeRecord("application/x-bug", new byte[]{0x01})).getNdefMessage().toByteArray();
+		assertThrows(IllegalStateException.class, () -> decoder.tryDecode(bug));
+	}
+
+	@Test
+	public void testByteBuffer() throws Exception {
+		Message message = new Message(NdefEncodeDecodeRoundtripTest.records);
+		message.add(new MimeRecord("application/octet-stream", new byte[300])); // not a short record
+		byte[] encoded = message.getNdefMessage().toByteArray();
+
+		Message expected = Message.parseNdefMessage(encoded);
+
+		for(ByteBuffer buffer : new ByteBuffer[]{ByteBuffer.allocate(encoded.length + 4), ByteBuffer.allocateDirect(encoded.length + 4)}) {
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+			buffer.position(2);
+			assertEquals(encoded.length, message.writeTo(buffer));
+			assertEquals(encoded.length + 2, buffer.position());
+
+			byte[] written = new byte[encoded.length];
+			buffer.position(2);
+			buffer.get(written);
+			assertArrayEquals(encoded, written);
+
+			buffer.position(2);
+			buffer.limit(encoded.length + 2);
+			assertEquals(expected, Message.parse(buffer));
+			assertEquals(buffer.limit(), buffer.position());
+
+			buffer.clear();
+			buffer.position(5);
+			assertThrows(BufferOverflowException.class, () -> message.writeTo(buffer));
+			assertEquals(5, buffer.position());
+		}
+	}
+
+	@Test
+	public void testDecodeInto() throws Exception {
+		UriRecord uriRecord = new UriRecord("http://first.uri");
+		uriRecord.setKey("id");
+		MimeRecord mimeRecord = new MimeRecord("a/b", new byte[]{1, 2, 3});
+		Message message = new Message(uriRecord, new TextRecord("Title", Locale.ENGLISH), mimeRecord);
+		byte[] encoded = message.getNdefMessage().toByteArray();
+
+		Message target = Message.parseNdefMessage(encoded);
+		Record uri = target.get(0);
+		Record text = target.get(1);
+		Record mime = target.get(2);
+		byte[] data = ((MimeRecord)mime).getData();
+		String title = ((TextRecord)text).getText();
+		Locale locale = ((TextRecord)text).getLocale();
+
+		// same shape, different contents
+		mimeRecord.setData(new byte[]{4, 5, 6});
+		uriRecord.setUri(android.net.Uri.parse("http://second.uri"));
+		byte[] changed = message.getNdefMessage().toByteArray();
+
+		assertSame(target, Message.parseInto(target, changed));
+		assertEquals(Message.parseNdefMessage(changed), target);
+		assertSame(uri, target.get(0));
+		assertSame(text, target.get(1));
+		assertSame(mime, target.get(2));
+		assertSame(data, ((MimeRecord)mime).getData());
+		assertSame(title, ((TextRecord)text).getText());
+		assertSame(locale, ((TextRecord)text).getLocale());
+
+		// different shape
+		byte[] other = new Message(new TextRecord("Other", Locale.ENGLISH), new UriRecord("http://third.uri")).getNdefMessage().toByteArray();
+		Message.parseInto(target, other);
+		assertEquals(Message.parseNdefMessage(other), target);
+		assertNull(target.get(0).getId());
+
+		// into empty
+		assertEquals(Message.parseNdefMessage(encoded), Message.parseInto(new Message(), encoded));
+	}
+
+	@Test
+	public void testPreserveEncoding() throws Exception {
+		byte[] text = new TextRecord("Title", Locale.ENGLISH).toByteArray();
+		text[0] &= 0x3F; // clear MB and ME
+
+		// uri record with a short payload in long form, which NdefMessage would write in short form
+		byte[] encoded = new byte[10 + text.length];
+		System.arraycopy(new byte[]{(byte)0x81, 0x01, 0x00, 0x00, 0x00, 0x03, 'U', 0x03, 'a', 'b'}, 0, encoded, 0, 10);
+		System.arraycopy(text, 0, encoded, 10, text.length);
+		encoded[10] |= 0x40;
+
+		NdefDecoder decoder = new NdefDecoder(RecordParserRegistry.getDefault(), Strictness.STRICT, 1024, true);
+		Message message = decoder.decode(encoded);
+		assertTrue(message.get(0).hasOriginalEncoding());
+		assertTrue(message.get(1).hasOriginalEncoding());
+		assertArrayEquals(encoded, message.toByteArray());
+		assertEquals(new NdefMessage(encoded), message.getNdefMessage());
+
+		ByteBuffer buffer = ByteBuffer.allocate(encoded.length);
+		message.writeTo(buffer);
+		assertArrayEquals(encoded, buffer.array());
+
+		// a single record is written as a complete message
+		byte[] uri = message.get(0).toByteArray();
+		assertEquals((byte)0xC1, uri[0]);
+		assertEquals(10, uri.length);
+
+		// changed records are encoded again
+		((TextRecord)message.get(1)).setText("Changed");
+		assertFalse(message.get(1).hasOriginalEncoding());
+		byte[] changed = message.toByteArray();
+		assertArrayEquals(Arrays.copyOf(encoded, 10), Arrays.copyOf(changed, 10));
+		assertEquals(message, Message.parseNdefMessage(changed));
+
+		// records are swapped, flags are updated
+		message.add(0, message.remove(1));
+		assertEquals(message, decoder.decode(message.toByteArray()));
+
+		// off by default
+		assertFalse(Message.parseNdefMessage(encoded).get(0).hasOriginalEncoding());
+	}
+
+	@Test
+	public void testPreserveEncodingNotSupported() throws Exception {
+		NdefDecoder decoder = new NdefDecoder(RecordParserRegistry.getDefault(), Strictness.STRICT, 1024, true);
+
+		// container records
+		byte[] encoded = new Message(new SmartPosterRecord(new TextRecord("Title"), new UriRecord("http://smartposter.uri"), null)).getNdefMessage().toByteArray();
+		SmartPosterRecord smartPosterRecord = (SmartPosterRecord)decoder.decode(encoded).get(0);
+		assertFalse(smartPosterRecord.hasOriginalEncoding());
+		assertTrue(smartPosterRecord.getTitle().hasOriginalEncoding());
+
+		// chunked records
+		byte[] chunked = new byte[] {
+				(byte)0xB2, 0x03, 0x02, 'a', '/', 'b', 0x01, 0x02, // MB, CF, SR, TNF_MIME_MEDIA
+				(byte)0x36, 0x00, 0x01, 0x03, // CF, SR, TNF_UNCHANGED
+				(byte)0x56, 0x00, 0x02, 0x04, 0x05 // ME, SR, TNF_UNCHANGED
+		};
+		assertFalse(decoder.decode(chunked).get(0).hasOriginalEncoding());
+
+		// reused records
+		Message target = decoder.decode(new Message(new UriRecord("http://first.uri")).getNdefMessage().toByteArray());
+		byte[] other = new Message(new UriRecord("http://second.uri")).getNdefMessage().toByteArray();
+		assertArrayEquals(other, decoder.decodeInto(target, other, 0, other.length).toByteArray());
+		assertArrayEquals(other, NdefDecoder.getDefault().decodeInto(target, other, 0, other.length).toByteArray());
+		assertFalse(target.get(0).hasOriginalEncoding());
+	}
+
+	@Test
+	public void testAsciiFastPath() throws Exception {
+		byte[] ascii = "0123456789abcdefghij".getBytes(Charset.forName("US-ASCII"));
+		assertTrue(Record.isAscii(ascii, 0, ascii.length));
+		for(int i = 0; i < ascii.length; i++) {
+			// high bit in every position of the 8-byte blocks and the tail
+			byte[] bytes = ascii.clone();
+			bytes[i] = (byte)0xC3;
+			assertFalse(Record.isAscii(bytes, 0, bytes.length));
+			assertTrue(Record.isAscii(bytes, i + 1, bytes.length - i - 1));
+
+			assertEquals(new String(bytes, Charset.forName("US-ASCII")), Record.toAsciiString(bytes, 0, bytes.length));
+		}
+
+		Message message = new Message();
+		message.add(new TextRecord("bl\u00e5b\u00e6rsyltet\u00f8y", Locale.ENGLISH));
+		message.add(new UriRecord("http://example.com/\u00e6\u00f8\u00e5"));
+		message.add(new MimeRecord("text/plain", new byte[]{1}));
+
+		assertEquals(message, NdefDecoder.getDefault().decode(message.getNdefMessage().toByteArray()));
+	}
+
+	@Test
+	public void testLazyText() throws Exception {
+		Message message = new Message();
+		message.add(new TextRecord("bl\u00e5", TextRecord.UTF16, new Locale("nb")));
+		message.add(new TextRecord("Title", Locale.ENGLISH));
+		byte[] encoded = message.getNdefMessage().toByteArray();
+
+		Message first = NdefDecoder.getDefault().decode(encoded);
+		Message second = NdefDecoder.getDefault().decode(encoded);
+
+		TextRecord textRecord = (TextRecord)first.get(0);
+		assertTrue(textRecord.hasText());
+		assertSame(textRecord.getLocale(), ((TextRecord)second.get(0)).getLocale());
+		assertEquals(new Locale("nb"), textRecord.getLocale());
+
+		// encoded without decoding the text
+		assertArrayEquals(encoded, first.getNdefMessage().toByteArray());
+		assertEquals("bl\u00e5", textRecord.getText());
+
+		// the text is decoded using the original encoding
+		TextRecord other = (TextRecord)second.get(0);
+		other.setEncoding(TextRecord.UTF8);
+		assertEquals("bl\u00e5", other.getText());
+		assertEquals("bl\u00e5", ((TextRecord)Message.parseNdefMessage(new Message(other).getNdefMessage().toByteArray()).get(0)).getText());
+	}
+
+	@Test
+	public void testLazyUri() throws Exception {
+		String[] uris = new String[] {
+				"http://www.example.com/path",
+				"urn:epc:id:sgtin:1.2.3",
+				"urn:nfc:sn:1",
+				"HTTP://example.com",
+				"mailto:bl\u00e5@example.com",
+				"custom:x"
+		};
+		for(String uri : uris) {
+			NdefRecord expected = NdefRecord.createUri(Uri.parse(uri));
+			byte[] payload = expected.getPayload();
+
+			// encoded with all prefix codes which could hold the URI
+			for(int code = 0; code < 0x24; code++) {
+				UriRecord uriRecord = UriRecord.parsePayload(payload, 0, payload.length);
+				String uriString = uriRecord.getUriString();
+				if(code != 0 && !uriString.startsWith(uriPrefix(code))) {
+					continue;
+				}
+				byte[] suffix = uriString.substring(uriPrefix(code).length()).getBytes(Charset.forName("UTF-8"));
+				byte[] other = new byte[1 + suffix.length];
+				other[0] = (byte)code;
+				System.arraycopy(suffix, 0, other, 1, suffix.length);
+
+				UriRecord otherRecord = UriRecord.parsePayload(other, 0, other.length);
+				assertTrue(otherRecord.hasUri());
+				assertArrayEquals(payload, otherRecord.getNdefRecord().getPayload(), uri + " " + code);
+				assertEquals(expected.toUri(), otherRecord.getUri());
+			}
+		}
+
+		// scheme is normalized when encoding
+		byte[] upperCase = new byte[] {0x00, 'H', 'T', 'T', 'P', ':', '/', '/', 'x'};
+		UriRecord uriRecord = UriRecord.parsePayload(upperCase, 0, upperCase.length);
+		assertEquals("HTTP://x", uriRecord.getUriString());
+		assertArrayEquals(NdefRecord.createUri("http://x").getPayload(), uriRecord.getNdefRecord().getPayload());
+		assertEquals("http://x", uriRecord.getUriString());
+	}
+
+	private static String uriPrefix(int code) {
+		NdefRecord ndefRecord = new NdefRecord(NdefRecord.TNF_WELL_KNOWN, NdefRecord.RTD_URI, null, new byte[]{(byte)code, 'x'});
+		String uri = ndefRecord.toUri().toString();
+		return uri.substring(0, uri.length() - 1);
+	}
+}
@@ -0,0 +1,180 @@
+/***************************************************************************
+ *
+ * This file is part of the 'NDEF Tools for Android' project at
+ * http://code.google.com/p/ndef-tools-for-android/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ****************************************************************************/
+
+package com.github.skjolber.ndef;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.github.skjolber.ndef.wellknown.SmartPosterRecord;
+import com.github.skjolber.ndef.wellknown.TextRecord;
+import com.github.skjolber.ndef.wellknown.UriRecord;
+
+import android.nfc.FormatException;
+
+/**
+ *
+ * Check that fragmented input gives the same handler callbacks as {@link NdefParser}.
+ *
+ * @author Thomas Rorvik Skjolberg (skjolber@gmail.com)
+ *
+ */
+
+public class NdefFeedParserTest {
+
+	private static class CollectingHandler extends DefaultNdefHandler {
+
+		private List<String> events = new ArrayList<String>();
+
+		@Override
+		public void onMessageStart() {
+			events.add("start");
+		}
+
+		@Override
+		public void onRecord(short tnf, byte[] data, int typeOffset, int typeLength, int idOffset, int idLength, byte[] payload, int payloadOffset, int payloadLength) {
+			events.add(tnf + ":" + Arrays.toString(Arrays.copyOfRange(data, typeOffset, typeOffset + typeLength)) + ":" + Arrays.toString(Arrays.copyOfRange(data, idOffset, idOffset + idLength)) + ":" + Arrays.toString(Arrays.copyOfRange(payload, payloadOffset, payloadOffset + payloadLength)));
+		}
+
+		@Override
+		public void onNestedMessageStart() {
+			events.add("(");
+		}
+
+		@Override
+		public void onNestedMessageEnd() {
+			events.add(")");
+		}
+
+		@Override
+		public void onMessageEnd() {
+			events.add("end");
+		}
+	}
+
+	private static byte[] getEncoded() {
+		Message message = new Message(NdefEncodeDecodeRoundtripTest.records);
+		message.add(new SmartPosterRecord(new TextRecord("Title"), new UriRecord("http://smartposter.uri"), null));
+
+		return message.getNdefMessage().toByteArray();
+	}
+
+	@Test
+	public void testSingleByteFeeds() throws Exception {
+		byte[] encoded = getEncoded();
+
+		CollectingHandler expected = new CollectingHandler();
+		NdefParser.parse(encoded, expected);
+
+		CollectingHandler handler = new CollectingHandler();
+		NdefFeedParser parser = new NdefFeedParser(handler);
+		for(int i = 0; i < encoded.length; i++) {
+			assertFalse(parser.isMessageComplete());
+			assertTrue(parser.getBytesNeeded() >= 1);
+
+			parser.feed(encoded, i, 1);
+		}
+		assertTrue(parser.isMessageComplete());
+		assertEquals(expected.events, handler.events);
+	}
+
+	@Test
+	public void testRandomFeeds() throws Exception {
+		byte[] encoded = getEncoded();
+
+		// two back-to-back messages
+		byte[] messages = Arrays.copyOf(encoded, encoded.length * 2);
+		System.arraycopy(encoded, 0, messages, encoded.length, encoded.length);
+
+		CollectingHandler expected = new CollectingHandler();
+		NdefParser.parse(encoded, expected);
+		NdefParser.parse(encoded, expected);
+
+		Random random = new Random(1);
+		for(int k = 0; k < 100; k++) {
+			CollectingHandler handler = new CollectingHandler();
+			NdefFeedParser parser = new NdefFeedParser(handler);
+
+			int offset = 0;
+			while(offset < messages.length) {
+				int length = Math.min(messages.length - offset, 1 + random.nextInt(64));
+				parser.feed(Arrays.copyOfRange(messages, offset, offset + length));
+				offset += length;
+			}
+			assertTrue(parser.isMessageComplete());
+			assertEquals(2, parser.getMessageCount());
+			assertEquals(expected.events, handler.events);
+		}
+	}
+
+	@Test
+	public void testBytesNeeded() throws Exception {
+		byte[] encoded = new UriRecord("http://first.uri").toByteArray();
+
+		NdefFeedParser parser = new NdefFeedParser(new DefaultNdefHandler());
+		assertEquals(3, parser.getBytesNeeded());
+		parser.feed(encoded, 0, 2);
+		assertEquals(1, parser.getBytesNeeded());
+		parser.feed(encoded, 2, 2);
+		assertEquals(encoded.length - 4, parser.getBytesNeeded());
+		parser.feed(encoded, 4, encoded.length - 4);
+		assertTrue(parser.isMessageComplete());
+	}
+
+	@Test
+	public void testChunkedRecord() throws Exception {
+		// mime type record 'a/b' with payload split over three chunks
+		byte[] chunked = new byte[] {
+				(byte)0xB2, 0x03, 0x02, 'a', '/', 'b', 0x01, 0x02, // MB, CF, SR, TNF_MIME_MEDIA
+				(byte)0x36, 0x00, 0x01, 0x03, // CF, SR, TNF_UNCHANGED
+				(byte)0x56, 0x00, 0x02, 0x04, 0x05 // ME, SR, TNF_UNCHANGED
+		};
+
+		CollectingHandler expected = new CollectingHandler();
+		NdefParser.parse(chunked, expected);
+
+		CollectingHandler handler = new CollectingHandler();
+		NdefFeedParser parser = new NdefFeedParser(handler);
+		for(int i = 0; i < chunked.length; i++) {
+			parser.feed(chunked, i, 1);
+		}
+		assertEquals(expected.events, handler.events);
+	}
+
+	@Test
+	public void testInvalidData() throws Exception {
+		byte[] encoded = getEncoded();
+
+		byte[] noMessageBegin = encoded.clone();
+		noMessageBegin[0] &= 0x7F;
+
+		NdefFeedParser parser = new NdefFeedParser(new DefaultNdefHandler());
+		assertThrows(FormatException.class, () -> parser.feed(noMessageBegin));
+
+		parser.reset();
+		parser.feed(encoded, 0, encoded.length - 1);
+		assertFalse(parser.isMessageComplete());
+		assertEquals(1, parser.getBytesNeeded());
+	}
+}
@@ -0,0 +1,129 @@
+/***************************************************************************
+ *
+ * This file is part of the 'NDEF Tools for Android' project at
+ * http://code.google.com/p/ndef-tools-for-android/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ****************************************************************************/
+
+package com.github.skjolber.ndef;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.github.skjolber.ndef.wellknown.SmartPosterRecord;
+import com.github.skjolber.ndef.wellknown.TextRecord;
+import com.github.skjolber.ndef.wellknown.UriRecord;
+
+import android.nfc.FormatException;
+import android.nfc.NdefRecord;
+
+/**
+ *
+ * Check that {@link NdefIndex} ranges correspond to the records of the message.
+ *
+ * @author Thomas Rorvik Skjolberg (skjolber@gmail.com)
+ *
+ */
+
+public class NdefIndexTest {
+
+	@Test
+	public void testTopLevelRecords() throws Exception {
+		Message message = new Message(NdefEncodeDecodeRoundtripTest.records);
+		byte[] encoded = message.getNdefMessage().toByteArray();
+
+		NdefIndex index = NdefIndex.scan(encoded);
+		assertEquals(message.size(), index.getMessageRecordCount());
+
+		NdefRecord[] records = message.getNdefMessage().getRecords();
+		for(int n = 0; n < records.length; n++) {
+			int i = index.getMessageRecord(n);
+			assertEquals(-1, index.getParent(i));
+			assertEquals(records[n].getTnf(), index.getTnf(i));
+			assertArrayEquals(records[n].getType(), Arrays.copyOfRange(encoded, index.getTypeOffset(i), index.getTypeOffset(i) + index.getTypeLength(i)));
+			assertArrayEquals(records[n].getId(), Arrays.copyOfRange(encoded, index.getIdOffset(i), index.getIdOffset(i) + index.getIdLength(i)));
+			assertArrayEquals(records[n].getPayload(), Arrays.copyOfRange(encoded, index.getPayloadOffset(i), index.getPayloadOffset(i) + index.getPayloadLength(i)));
+
+			assertEquals(message.get(n), index.decode(i));
+		}
+		assertEquals(0, index.getRecordOffset(index.getMessageRecord(0)));
+		assertEquals(encoded.length, index.getRecordEnd(index.getMessageRecord(records.length - 1)));
+
+		assertEquals(message, index.decodeMessageRecords(0, message.size()));
+	}
+
+	@Test
+	public void testNestedRecords() throws Exception {
+		SmartPosterRecord smartPosterRecord = new SmartPosterRecord(new TextRecord("Title"), new UriRecord("http://smartposter.uri"), null);
+
+		Message message = new Message();
+		message.add(new UriRecord("http://first.uri"));
+		message.add(smartPosterRecord);
+		message.add(new UriRecord("http://last.uri"));
+		byte[] encoded = message.getNdefMessage().toByteArray();
+
+		NdefIndex index = NdefIndex.scan(encoded);
+		assertEquals(5, index.size());
+		assertEquals(3, index.getMessageRecordCount());
+
+		int sp = index.getMessageRecord(1);
+		assertEquals(1, sp);
+		assertTrue(index.hasNestedMessage(sp));
+		assertEquals(index.getPayloadOffset(sp), index.getNestedMessageOffset(sp));
+		assertEquals(4, index.getNext(sp));
+		assertEquals(4, index.getMessageRecord(2));
+
+		assertEquals(sp, index.getParent(2));
+		assertEquals(sp, index.getParent(3));
+		SmartPosterRecord decoded = (SmartPosterRecord)index.decode(sp);
+		assertEquals(Message.parseNdefMessage(encoded).get(1), decoded);
+		assertEquals(decoded.getTitle(), index.decode(2));
+		assertEquals(decoded.getUri(), index.decode(3));
+
+		assertFalse(index.hasNestedMessage(0));
+		assertEquals(1, index.getNext(0));
+	}
+
+	@Test
+	public void testChunkedRecord() throws Exception {
+		// mime type record 'a/b' with payload split over three chunks
+		byte[] chunked = new byte[] {
+				(byte)0xB2, 0x03, 0x02, 'a', '/', 'b', 0x01, 0x02, // MB, CF, SR, TNF_MIME_MEDIA
+				(byte)0x36, 0x00, 0x01, 0x03, // CF, SR, TNF_UNCHANGED
+				(byte)0x56, 0x00, 0x02, 0x04, 0x05 // ME, SR, TNF_UNCHANGED
+		};
+
+		NdefIndex index = NdefIndex.scan(chunked);
+		assertEquals(1, index.size());
+		assertTrue(index.isChunked(0));
+		assertEquals(NdefRecord.TNF_MIME_MEDIA, index.getTnf(0));
+		assertEquals(-1, index.getPayloadOffset(0));
+		assertEquals(5, index.getPayloadLength(0));
+		assertEquals(chunked.length, index.getRecordEnd(0));
+
+		assertEquals(new MimeRecord("a/b", new byte[]{1, 2, 3, 4, 5}), index.decode(0));
+	}
+
+	@Test
+	public void testInvalidMessages() throws Exception {
+		byte[] encoded = new Message(NdefEncodeDecodeRoundtripTest.records).getNdefMessage().toByteArray();
+
+		assertThrows(FormatException.class, () -> NdefIndex.scan(Arrays.copyOf(encoded, encoded.length - 1)));
+		assertThrows(FormatException.class, () -> NdefIndex.scan(Arrays.copyOf(encoded, encoded.length + 1)));
+		assertThrows(IndexOutOfBoundsException.class, () -> NdefIndex.scan(encoded).getMessageRecord(NdefEncodeDecodeRoundtripTest.records.length));
+	}
+}
@@ -0,0 +1,136 @@
+/***************************************************************************
+ *
+ * This file is part of the 'NDEF Tools for Android' project at
+ * http://code.google.com/p/ndef-tools-for-android/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ****************************************************************************/
+
+package com.github.skjolber.ndef;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.github.skjolber.ndef.wellknown.SmartPosterRecord;
+import com.github.skjolber.ndef.wellknown.TextRecord;
+import com.github.skjolber.ndef.wellknown.UriRecord;
+
+import android.nfc.FormatException;
+
+/**
+ *
+ * Check that {@link NdefMessageReader} splits back-to-back messages from arrays, buffers and streams.
+ *
+ * @author Thomas Rorvik Skjolberg (skjolber@gmail.com)
+ *
+ */
+
+public class NdefMessageReaderTest {
+
+	private static final Message[] messages = new Message[] {
+		new Message(NdefEncodeDecodeRoundtripTest.records),
+		new Message(new UriRecord("http://first.uri")),
+		new Message(new SmartPosterRecord(new TextRecord("Title"), new UriRecord("http://smartposter.uri"), null))
+	};
+
+	private static byte[] getEncoded(int[] offsets) throws IOException {
+		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		for(int i = 0; i < messages.length; i++) {
+			offsets[i] = bout.size();
+			bout.write(messages[i].getNdefMessage().toByteArray());
+		}
+		return bout.toByteArray();
+	}
+
+	private static void assertMessages(NdefMessageReader reader, int[] offsets) throws Exception {
+		for(int i = 0; i < messages.length; i++) {
+			assertTrue(reader.nextMessage());
+			assertEquals(offsets[i], reader.getMessageOffset());
+			assertEquals(messages[i].getNdefMessage().toByteArray().length, reader.getMessageLength());
+			assertEquals(Message.parseNdefMessage(messages[i].getNdefMessage().toByteArray()), reader.getMessage());
+		}
+		assertNull(reader.read());
+		assertEquals(messages.length, reader.getMessageCount());
+	}
+
+	@Test
+	public void testArray() throws Exception {
+		int[] offsets = new int[messages.length];
+		byte[] encoded = getEncoded(offsets);
+
+		assertMessages(new NdefMessageReader(encoded), offsets);
+
+		// with a prefix
+		byte[] prefixed = new byte[encoded.length + 3];
+		System.arraycopy(encoded, 0, prefixed, 3, encoded.length);
+		assertMessages(new NdefMessageReader(prefixed, 3, encoded.length, NdefDecoder.getDefault()), offsets);
+	}
+
+	@Test
+	public void testByteBuffer() throws Exception {
+		int[] offsets = new int[messages.length];
+		byte[] encoded = getEncoded(offsets);
+
+		ByteBuffer heap = ByteBuffer.wrap(encoded);
+		NdefMessageReader reader = new NdefMessageReader(heap);
+		assertTrue(reader.nextMessage());
+		assertEquals(offsets[1], heap.position());
+
+		ByteBuffer direct = ByteBuffer.allocateDirect(encoded.length + 2);
+		direct.position(2);
+		direct.put(encoded);
+		direct.position(2);
+		assertMessages(new NdefMessageReader(direct), offsets);
+		assertFalse(direct.hasRemaining());
+	}
+
+	@Test
+	public void testStream() throws Exception {
+		int[] offsets = new int[messages.length];
+		byte[] encoded = getEncoded(offsets);
+
+		// stream which returns a few bytes at a time
+		ByteArrayInputStream in = new ByteArrayInputStream(encoded) {
+			@Override
+			public synchronized int read(byte[] b, int off, int len) {
+				return super.read(b, off, Math.min(len, 3));
+			}
+		};
+		assertMessages(new NdefMessageReader(in), offsets);
+	}
+
+	@Test
+	public void testInvalidData() throws Exception {
+		int[] offsets = new int[messages.length];
+		byte[] encoded = getEncoded(offsets);
+
+		NdefMessageReader reader = new NdefMessageReader(Arrays.copyOf(encoded, encoded.length - 1));
+		assertTrue(reader.nextMessage());
+		assertTrue(reader.nextMessage());
+		assertThrows(FormatException.class, () -> reader.nextMessage());
+
+		NdefMessageReader streamReader = new NdefMessageReader(new ByteArrayInputStream(Arrays.copyOf(encoded, encoded.length - 1)));
+		assertTrue(streamReader.nextMessage());
+		assertTrue(streamReader.nextMessage());
+		assertThrows(FormatException.class, () -> streamReader.nextMessage());
+
+		assertThrows(IllegalStateException.class, () -> new NdefMessageReader(encoded).getMessage());
+	}
+}
@@ -0,0 +1,132 @@
+/***************************************************************************
+ *
+ * This file is part of the 'NDEF Tools for Android' project at
+ * http://code.google.com/p/ndef-tools-for-android/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ****************************************************************************/
+
+package com.github.skjolber.ndef;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.github.skjolber.ndef.wellknown.SmartPosterRecord;
+import com.github.skjolber.ndef.wellknown.TextRecord;
+import com.github.skjolber.ndef.wellknown.UriRecord;
+
+import android.nfc.FormatException;
+import android.nfc.NdefMessage;
+import android.nfc.NdefRecord;
+
+/**
+ *
+ * Check that handler callbacks correspond to the records of {@link NdefMessage}.
+ *
+ * @author Thomas Rorvik Skjolberg (skjolber@gmail.com)
+ *
+ */
+
+public class NdefParserTest {
+
+	private static class CollectingHandler extends DefaultNdefHandler {
+
+		private List<NdefRecord> records = new ArrayList<NdefRecord>();
+		private List<String> events = new ArrayList<String>();
+		private int depth = 0;
+
+		@Override
+		public void onMessageStart() {
+			events.add("start");
+		}
+
+		@Override
+		public void onRecord(short tnf, byte[] data, int typeOffset, int typeLength, int idOffset, int idLength, byte[] payload, int payloadOffset, int payloadLength) {
+			if(depth == 0) {
+				records.add(new NdefRecord(tnf, Arrays.copyOfRange(data, typeOffset, typeOffset + typeLength), Arrays.copyOfRange(data, idOffset, idOffset + idLength), Arrays.copyOfRange(payload, payloadOffset, payloadOffset + payloadLength)));
+			}
+			events.add(new String(data, typeOffset, typeLength));
+		}
+
+		@Override
+		public void onNestedMessageStart() {
+			depth++;
+			events.add("(");
+		}
+
+		@Override
+		public void onNestedMessageEnd() {
+			depth--;
+			events.add(")");
+		}
+
+		@Override
+		public void onMessageEnd() {
+			events.add("end");
+		}
+	}
+
+	@Test
+	public void testTopLevelRecordsEqualNdefMessage() throws Exception {
+		byte[] encoded = new Message(NdefEncodeDecodeRoundtripTest.records).getNdefMessage().toByteArray();
+
+		CollectingHandler handler = new CollectingHandler();
+		NdefParser.parse(encoded, handler);
+
+		assertEquals(Arrays.asList(new NdefMessage(encoded).getRecords()), handler.records);
+		assertEquals("start", handler.events.get(0));
+		assertEquals("end", handler.events.get(handler.events.size() - 1));
+		assertEquals(0, handler.depth);
+	}
+
+	@Test
+	public void testNestedMessages() throws Exception {
+		SmartPosterRecord smartPosterRecord = new SmartPosterRecord(new TextRecord("Title"), new UriRecord("http://smartposter.uri"), null);
+
+		Message message = new Message();
+		message.add(new UriRecord("http://first.uri"));
+		message.add(smartPosterRecord);
+
+		CollectingHandler handler = new CollectingHandler();
+		NdefParser.parse(message.getNdefMessage().toByteArray(), handler);
+
+		assertEquals(Arrays.asList("start", "U", "Sp", "(", "T", "U", ")", "end"), handler.events);
+	}
+
+	@Test
+	public void testNestedMessageWithoutFlags() throws Exception {
+		// smart poster with a single nested record, without MB and ME flags
+		byte[] uri = new UriRecord("http://smartposter.uri").toByteArray();
+		uri[0] &= 0x3F;
+
+		byte[] encoded = new Message(new UnsupportedRecord(NdefRecord.TNF_WELL_KNOWN, NdefRecord.RTD_SMART_POSTER, new byte[0], uri)).getNdefMessage().toByteArray();
+
+		CollectingHandler handler = new CollectingHandler();
+		NdefParser.parse(encoded, handler);
+
+		assertEquals(Arrays.asList("start", "Sp", "(", "U", ")", "end"), handler.events);
+	}
+
+	@Test
+	public void testInvalidMessages() throws Exception {
+		byte[] encoded = new Message(NdefEncodeDecodeRoundtripTest.records).getNdefMessage().toByteArray();
+
+		assertThrows(FormatException.class, () -> NdefParser.parse(Arrays.copyOf(encoded, encoded.length - 1), new DefaultNdefHandler()));
+		assertThrows(FormatException.class, () -> NdefParser.parse(Arrays.copyOf(encoded, encoded.length + 1), new DefaultNdefHandler()));
+	}
+}
@@ -0,0 +1,273 @@
+/***************************************************************************
+ *
+ * This file is part of the 'NDEF Tools for Android' project at
+ * http://code.google.com/p/ndef-tools-for-android/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ****************************************************************************/
+
+package com.github.skjolber.ndef;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import android.nfc.FormatException;
+import android.nfc.NdefMessage;
+import android.nfc.NdefRecord;
+
+/**
+ *
+ * Check that reader events correspond to the records of {@link NdefMessage}.
+ *
+ * @author Thomas Rorvik Skjolberg (skjolber@gmail.com)
+ *
+ */
+
+public class NdefReaderTest {
+
+	@Test
+	public void testEventsEqualRecords() throws Exception {
+		byte[] encoded = new Message(NdefEncodeDecodeRoundtripTest.records).getNdefMessage().toByteArray();
+
+		NdefRecord[] records = new NdefMessage(encoded).getRecords();
+
+		NdefReader reader = new NdefReader(encoded);
+		int event = reader.next();
+		for(int i = 0; i < records.length; i++) {
+			assertEquals(NdefReader.RECORD, event);
+			assertEquals(records[i].getTnf(), reader.getTnf());
+			assertEquals(i == 0, reader.isMessageBegin());
+			assertEquals(i == records.length - 1, reader.isMessageEnd());
+
+			byte[] type = new byte[0];
+			byte[] id = new byte[0];
+			byte[] payload = new byte[0];
+
+			while((event = reader.next()) != NdefReader.RECORD && event != NdefReader.END_DOCUMENT) {
+				if(event == NdefReader.TYPE) {
+					type = reader.getType();
+					assertTrue(reader.typeEquals(records[i].getType()));
+				} else if(event == NdefReader.ID) {
+					id = reader.getId();
+				} else if(event == NdefReader.PAYLOAD) {
+					payload = reader.getPayload();
+				}
+			}
+			assertEquals(records[i], new NdefRecord(records[i].getTnf(), type, id, payload));
+		}
+		assertEquals(NdefReader.END_DOCUMENT, event);
+		assertEquals(encoded.length, reader.getOffset());
+	}
+
+	@Test
+	public void testSkipPayloadsOfStream() throws Exception {
+		byte[] encoded = new Message(NdefEncodeDecodeRoundtripTest.records).getNdefMessage().toByteArray();
+		int count = new NdefMessage(encoded).getRecords().length;
+
+		// large payload, more than the buffer size
+		byte[] mime = new Message(new MimeRecord("application/octet-stream", new byte[100000])).getNdefMessage().toByteArray();
+
+		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		bout.write(encoded);
+		bout.write(mime);
+		bout.write(encoded);
+
+		NdefReader reader = new NdefReader(new ByteArrayInputStream(bout.toByteArray()));
+
+		int records = 0;
+		int messages = 0;
+		while(reader.nextRecord()) {
+			records++;
+			if(reader.isMessageEnd()) {
+				messages++;
+			}
+		}
+		assertEquals(3, messages);
+		assertEquals(count * 2 + 1, records);
+		assertEquals(bout.size(), reader.getOffset());
+		reader.close();
+	}
+
+	@Test
+	public void testReadPayloadOfStream() throws Exception {
+		byte[] data = new byte[100000];
+		for(int i = 0; i < data.length; i++) {
+			data[i] = (byte)i;
+		}
+		byte[] mime = new Message(new MimeRecord("application/octet-stream", data)).getNdefMessage().toByteArray();
+
+		NdefReader reader = new NdefReader(new ByteArrayInputStream(mime));
+		assertEquals(NdefReader.RECORD, reader.next());
+		assertEquals(NdefReader.TYPE, reader.next());
+		assertEquals(NdefReader.PAYLOAD, reader.next());
+		assertEquals(data.length, reader.getPayloadLength());
+
+		assertArrayEquals(data, reader.getPayload());
+		assertEquals(-1, reader.readPayload(new byte[1], 0, 1));
+		assertEquals(NdefReader.END_DOCUMENT, reader.next());
+	}
+
+	@Test
+	public void testChunkedRecord() throws Exception {
+		// mime type record 'a/b' with payload split over three chunks
+		byte[] chunked = new byte[] {
+				(byte)0xB2, 0x03, 0x02, 'a', '/', 'b', 0x01, 0x02, // MB, CF, SR, TNF_MIME_MEDIA
+				(byte)0x36, 0x00, 0x01, 0x03, // CF, SR, TNF_UNCHANGED
+				(byte)0x56, 0x00, 0x02, 0x04, 0x05 // ME, SR, TNF_UNCHANGED
+		};
+
+		NdefReader reader = new NdefReader(chunked);
+		assertTrue(reader.nextRecord());
+		assertTrue(reader.isChunked());
+		assertEquals(NdefRecord.TNF_MIME_MEDIA, reader.getTnf());
+		assertTrue(reader.nextRecord());
+		assertTrue(reader.isChunked());
+		assertEquals(NdefRecord.TNF_UNCHANGED, reader.getTnf());
+		assertTrue(reader.nextRecord());
+		assertFalse(reader.isChunked());
+		assertTrue(reader.isMessageEnd());
+		assertFalse(reader.nextRecord());
+	}
+
+	@Test
+	public void testChunkedPayloadInputStream() throws Exception {
+		// mime type record 'a/b' with payload split over four chunks, one of which is empty
+		byte[] chunked = new byte[] {
+				(byte)0xB2, 0x03, 0x02, 'a', '/', 'b', 0x01, 0x02, // MB, CF, SR, TNF_MIME_MEDIA
+				(byte)0x36, 0x00, 0x00, // CF, SR, TNF_UNCHANGED
+				(byte)0x36, 0x00, 0x01, 0x03, // CF, SR, TNF_UNCHANGED
+				(byte)0x56, 0x00, 0x02, 0x04, 0x05 // ME, SR, TNF_UNCHANGED
+		};
+
+		NdefReader reader = new NdefReader(chunked);
+		assertEquals(NdefReader.RECORD, reader.next());
+		assertEquals(NdefReader.TYPE, reader.next());
+		assertEquals(NdefReader.PAYLOAD, reader.next());
+
+		InputStream in = reader.getPayloadInputStream();
+		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		int read;
+		while((read = in.read()) != -1) {
+			bout.write(read);
+		}
+		assertArrayEquals(new byte[]{0x01, 0x02, 0x03, 0x04, 0x05}, bout.toByteArray());
+		assertTrue(reader.isMessageEnd());
+		assertEquals(NdefReader.END_DOCUMENT, reader.next());
+	}
+
+	@Test
+	public void testPayloadInputStreamSingleBytes() throws Exception {
+		byte[] chunked = new byte[] {
+				(byte)0xB2, 0x03, 0x02, 'a', '/', 'b', 0x01, 0x02, // MB, CF, SR, TNF_MIME_MEDIA
+				(byte)0x56, 0x00, 0x02, 0x03, 0x04 // ME, SR, TNF_UNCHANGED
+		};
+
+		// stream source, read byte by byte
+		NdefReader reader = new NdefReader(new ByteArrayInputStream(chunked));
+		assertTrue(reader.nextRecord());
+		assertEquals(NdefReader.TYPE, reader.next());
+		assertEquals(NdefReader.PAYLOAD, reader.next());
+
+		InputStream in = reader.getPayloadInputStream();
+		for(int i = 1; i <= 4; i++) {
+			assertEquals(i, in.read());
+		}
+		assertEquals(-1, in.read());
+		assertEquals(NdefReader.END_DOCUMENT, reader.next());
+
+		// truncated within the last chunk
+		NdefReader truncated = new NdefReader(Arrays.copyOf(chunked, chunked.length - 1));
+		assertTrue(truncated.nextRecord());
+		assertEquals(NdefReader.TYPE, truncated.next());
+		assertEquals(NdefReader.PAYLOAD, truncated.next());
+
+		InputStream truncatedIn = truncated.getPayloadInputStream();
+		for(int i = 1; i <= 3; i++) {
+			assertEquals(i, truncatedIn.read());
+		}
+		IOException e = assertThrows(IOException.class, () -> truncatedIn.read());
+		assertTrue(e.getCause() instanceof FormatException);
+	}
+
+	@Test
+	public void testChunkedPayloadAboveArrayLimit() throws Exception {
+		// 12 chunks of 1 MB, above the 10 MB limit of NdefMessage
+		int chunkSize = 1 << 20;
+		int chunks = 12;
+
+		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		for(int i = 0; i < chunks; i++) {
+			int flags = 0x20; // CF
+			if(i == 0) {
+				flags = 0x80 | 0x20 | NdefRecord.TNF_MIME_MEDIA; // MB, CF
+			} else if(i == chunks - 1) {
+				flags = 0x40 | NdefRecord.TNF_UNCHANGED; // ME
+			} else {
+				flags |= NdefRecord.TNF_UNCHANGED;
+			}
+			bout.write(flags);
+			bout.write(i == 0 ? 3 : 0);
+			bout.write(new byte[]{0x00, 0x10, 0x00, 0x00}); // 1 MB
+			if(i == 0) {
+				bout.write(new byte[]{'a', '/', 'b'});
+			}
+			byte[] payload = new byte[chunkSize];
+			Arrays.fill(payload, (byte)i);
+			bout.write(payload);
+		}
+		byte[] data = bout.toByteArray();
+
+		assertThrows(FormatException.class, () -> new NdefMessage(data));
+
+		NdefReader reader = new NdefReader(new ByteArrayInputStream(data));
+		assertTrue(reader.nextRecord());
+		assertEquals(NdefReader.TYPE, reader.next());
+		assertEquals(NdefReader.PAYLOAD, reader.next());
+
+		InputStream in = reader.getPayloadInputStream();
+		byte[] buffer = new byte[1000];
+		long total = 0;
+		int read;
+		while((read = in.read(buffer)) != -1) {
+			total += read;
+			assertEquals((byte)((total - 1) / chunkSize), buffer[read - 1]);
+		}
+		assertEquals((long)chunkSize * chunks, total);
+		assertEquals(NdefReader.END_DOCUMENT, reader.next());
+	}
+
+	@Test
+	public void testInvalidData() throws Exception {
+		byte[] encoded = new Message(NdefEncodeDecodeRoundtripTest.records).getNdefMessage().toByteArray();
+
+		assertThrows(FormatException.class, () -> {
+			NdefReader reader = new NdefReader(Arrays.copyOf(encoded, encoded.length - 1));
+			while(reader.nextRecord());
+		});
+		assertThrows(FormatException.class, () -> {
+			NdefReader reader = new NdefReader(new ByteArrayInputStream(Arrays.copyOf(encoded, encoded.length - 1)));
+			while(reader.nextRecord());
+		});
+
+		byte[] noMessageBegin = encoded.clone();
+		noMessageBegin[0] &= 0x7F;
+		assertThrows(FormatException.class, () -> new NdefReader(noMessageBegin).next());
+	}
+}
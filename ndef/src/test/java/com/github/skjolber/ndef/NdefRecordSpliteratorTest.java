@@ -0,0 +1,105 @@
+/***************************************************************************
+ *
+ * This file is part of the 'NDEF Tools for Android' project at
+ * http://code.google.com/p/ndef-tools-for-android/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ****************************************************************************/
+
+package com.github.skjolber.ndef;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.github.skjolber.ndef.externaltype.GenericExternalTypeRecord;
+import com.github.skjolber.ndef.wellknown.SmartPosterRecord;
+import com.github.skjolber.ndef.wellknown.TextRecord;
+import com.github.skjolber.ndef.wellknown.UriRecord;
+
+import android.nfc.FormatException;
+
+/**
+ *
+ * Check that streaming gives the same records as decoding, also when split for parallel decoding.
+ *
+ * @author Thomas Rorvik Skjolberg (skjolber@gmail.com)
+ *
+ */
+
+public class NdefRecordSpliteratorTest {
+
+	private static byte[] getEncoded() {
+		Message message = new Message();
+		for(int i = 0; i < 200; i++) {
+			if(i % 3 == 0) {
+				message.add(new MimeRecord("application/octet-stream", new byte[i]));
+			} else if(i % 3 == 1) {
+				message.add(new GenericExternalTypeRecord("example.com", "archive", new byte[]{(byte)i}));
+			} else {
+				message.add(new SmartPosterRecord(new TextRecord("Title " + i), new UriRecord("http://smartposter.uri/" + i), null));
+			}
+		}
+		return message.toByteArray();
+	}
+
+	@Test
+	public void testStream() throws Exception {
+		byte[] encoded = getEncoded();
+		Message message = Message.parseNdefMessage(encoded);
+
+		assertEquals(message, Message.stream(encoded).collect(Collectors.toList()));
+		assertEquals(message, Message.stream(encoded).parallel().collect(Collectors.toList()));
+
+		ByteBuffer buffer = ByteBuffer.allocateDirect(encoded.length);
+		buffer.put(encoded).flip();
+		assertEquals(message, Message.stream(buffer).parallel().collect(Collectors.toList()));
+		assertFalse(buffer.hasRemaining());
+	}
+
+	@Test
+	public void testSplit() throws Exception {
+		byte[] encoded = getEncoded();
+		Message message = Message.parseNdefMessage(encoded);
+
+		NdefRecordSpliterator spliterator = new NdefRecordSpliterator(NdefIndex.scan(encoded));
+		assertEquals(message.size(), spliterator.estimateSize());
+
+		Spliterator<Record> prefix = spliterator.trySplit();
+		assertEquals(message.size(), prefix.estimateSize() + spliterator.estimateSize());
+
+		List<Record> records = new Message();
+		prefix.forEachRemaining(records::add);
+		spliterator.forEachRemaining(records::add);
+		assertEquals(message, records);
+
+		// single record cannot be split
+		NdefRecordSpliterator single = new NdefRecordSpliterator(NdefIndex.scan(encoded), 5, 6);
+		assertNull(single.trySplit());
+		assertTrue(single.tryAdvance(record -> assertEquals(message.get(5), record)));
+		assertFalse(single.tryAdvance(record -> fail()));
+	}
+
+	@Test
+	public void testInvalidData() throws Exception {
+		byte[] encoded = getEncoded();
+		encoded[0] &= 0x7F; // no message begin
+
+		assertThrows(FormatException.class, () -> Message.stream(encoded));
+	}
+}
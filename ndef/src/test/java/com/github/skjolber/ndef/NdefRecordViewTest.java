@@ -0,0 +1,103 @@
+/***************************************************************************
+ *
+ * This file is part of the 'NDEF Tools for Android' project at
+ * http://code.google.com/p/ndef-tools-for-android/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ****************************************************************************/
+
+package com.github.skjolber.ndef;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import android.nfc.FormatException;
+import android.nfc.NdefMessage;
+import android.nfc.NdefRecord;
+import android.nfc.NdefRecordView;
+
+/**
+ *
+ * Check that record views are equal to the corresponding copied records.
+ *
+ * @author Thomas Rorvik Skjolberg (skjolber@gmail.com)
+ *
+ */
+
+public class NdefRecordViewTest {
+
+	@Test
+	public void testViewsEqualRecords() throws Exception {
+		byte[] encoded = new Message(NdefEncodeDecodeRoundtripTest.records).getNdefMessage().toByteArray();
+
+		NdefRecord[] records = new NdefMessage(encoded).getRecords();
+		NdefRecordView[] views = NdefMessage.parseViews(encoded);
+
+		assertEquals(records.length, views.length);
+		for(int i = 0; i < records.length; i++) {
+			assertEquals(records[i], views[i].toNdefRecord());
+			assertEquals(records[i].getPayload().length, views[i].getPayloadLength());
+			assertTrue(views[i].typeEquals(records[i].getType()));
+		}
+	}
+
+	@Test
+	public void testDirectBufferWithTrailingData() throws Exception {
+		byte[] encoded = new Message(NdefEncodeDecodeRoundtripTest.records).getNdefMessage().toByteArray();
+
+		ByteBuffer buffer = ByteBuffer.allocateDirect(encoded.length + 3);
+		buffer.put(encoded);
+		buffer.put(new byte[]{1, 2, 3});
+		buffer.flip();
+
+		NdefRecordView[] views = NdefMessage.parseViews(buffer);
+		assertEquals(3, buffer.remaining());
+
+		NdefRecord[] records = new NdefMessage(encoded).getRecords();
+		for(int i = 0; i < records.length; i++) {
+			assertEquals(records[i], views[i].toNdefRecord());
+
+			ByteBuffer payload = views[i].getPayloadBuffer();
+			assertTrue(payload.isReadOnly());
+			assertEquals(ByteBuffer.wrap(records[i].getPayload()), payload);
+		}
+
+		try {
+			NdefMessage.parseViews(new byte[encoded.length + 1]);
+			fail();
+		} catch(FormatException e) {
+			// pass
+		}
+	}
+
+	@Test
+	public void testChunkedRecord() throws Exception {
+		// mime type record 'a/b' with payload split over three chunks
+		byte[] chunked = new byte[] {
+				(byte)0xB2, 0x03, 0x02, 'a', '/', 'b', 0x01, 0x02, // MB, CF, SR, TNF_MIME_MEDIA
+				(byte)0x36, 0x00, 0x01, 0x03, // CF, SR, TNF_UNCHANGED
+				(byte)0x56, 0x00, 0x02, 0x04, 0x05 // ME, SR, TNF_UNCHANGED
+		};
+
+		NdefRecordView[] views = NdefMessage.parseViews(chunked);
+		assertEquals(1, views.length);
+		assertEquals(NdefRecord.TNF_MIME_MEDIA, views[0].getTnf());
+		assertEquals(5, views[0].getPayloadLength());
+		assertEquals(0x05, views[0].getPayloadByte(4));
+
+		assertEquals(new NdefMessage(chunked).getRecords()[0], views[0].toNdefRecord());
+	}
+}
@@ -0,0 +1,81 @@
+/***************************************************************************
+ *
+ * This file is part of the 'NDEF Tools for Android' project at
+ * http://code.google.com/p/ndef-tools-for-android/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ****************************************************************************/
+
+package com.github.skjolber.ndef;
+
+import java.nio.charset.Charset;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.github.skjolber.ndef.externaltype.GenericExternalTypeRecord;
+
+/**
+ *
+ * Check that repeated values are decoded to the same {@link String} instance.
+ *
+ * @author Thomas Rorvik Skjolberg (skjolber@gmail.com)
+ *
+ */
+
+public class NdefStringPoolTest {
+
+	@Test
+	public void testPool() throws Exception {
+		NdefStringPool pool = new NdefStringPool(100, 16);
+		assertEquals(128, pool.getCapacity());
+
+		byte[] data = "xxtext/plainxx".getBytes(Charset.forName("US-ASCII"));
+		String value = pool.toAsciiString(data, 2, 10);
+		assertEquals("text/plain", value);
+		assertSame(value, pool.toAsciiString(data.clone(), 2, 10));
+		assertSame(value, pool.toUtf8String(data, 2, 10));
+
+		// too long
+		byte[] longValue = "application/vnd.example+json".getBytes(Charset.forName("US-ASCII"));
+		assertEquals("application/vnd.example+json", pool.toAsciiString(longValue, 0, longValue.length));
+		assertNotSame(pool.toAsciiString(longValue, 0, longValue.length), pool.toAsciiString(longValue, 0, longValue.length));
+
+		// not ASCII
+		byte[] utf8 = "bl\u00e5".getBytes(Charset.forName("UTF-8"));
+		assertEquals("bl\u00e5", pool.toUtf8String(utf8, 0, utf8.length));
+		assertEquals(new String(utf8, Charset.forName("US-ASCII")), pool.toAsciiString(utf8, 0, utf8.length));
+
+		assertEquals("", pool.toAsciiString(data, 0, 0));
+
+		pool.clear();
+		assertNotSame(value, pool.toAsciiString(data, 2, 10));
+	}
+
+	@Test
+	public void testDecodedRecords() throws Exception {
+		Message message = new Message();
+		message.add(new MimeRecord("text/plain", new byte[]{1}));
+		message.add(new GenericExternalTypeRecord("example.com", "mytype", new byte[]{2}));
+		byte[] encoded = message.toByteArray();
+
+		Message first = NdefDecoder.getDefault().decode(encoded);
+		Message second = NdefDecoder.getDefault().decode(encoded);
+		assertEquals(first, second);
+
+		assertSame(((MimeRecord)first.get(0)).getMimeType(), ((MimeRecord)second.get(0)).getMimeType());
+		assertSame(((GenericExternalTypeRecord)first.get(1)).getDomain(), ((GenericExternalTypeRecord)second.get(1)).getDomain());
+		assertSame(((GenericExternalTypeRecord)first.get(1)).getType(), ((GenericExternalTypeRecord)second.get(1)).getType());
+	}
+}
@@ -0,0 +1,207 @@
+/***************************************************************************
+ *
+ * This file is part of the 'NDEF Tools for Android' project at
+ * http://code.google.com/p/ndef-tools-for-android/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ****************************************************************************/
+
+package com.github.skjolber.ndef;
+
+import java.nio.charset.Charset;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.github.skjolber.ndef.externaltype.AndroidApplicationRecord;
+import com.github.skjolber.ndef.externaltype.ExternalTypeRecord;
+import com.github.skjolber.ndef.externaltype.ExternalTypeRecord.ExternalTypeRecordParser;
+import com.github.skjolber.ndef.externaltype.GenericExternalTypeRecord;
+import com.github.skjolber.ndef.wellknown.UriRecord;
+
+import android.nfc.FormatException;
+import android.nfc.NdefMessage;
+import android.nfc.NdefRecord;
+
+/**
+ *
+ * Check lookup and registration of record types.
+ *
+ * @author Thomas Rorvik Skjolberg (skjolber@gmail.com)
+ *
+ */
+
+public class RecordParserRegistryTest {
+
+	private static class TestRecord extends MimeRecord {
+
+		public TestRecord(byte[] data) {
+			super("application/x-registry-test", data);
+		}
+	}
+
+	private static class TestRecordParser implements RecordParser {
+		@Override
+		public Record parse(NdefDecoder decoder, byte[] type, int typeOffset, int typeLength, byte[] payload, int payloadOffset, int payloadLength) throws FormatException {
+			byte[] data = new byte[payloadLength];
+			System.arraycopy(payload, payloadOffset, data, 0, payloadLength);
+			return new TestRecord(data);
+		}
+	}
+
+	@Test
+	public void testBuiltInTypes() {
+		RecordParserRegistry registry = RecordParserRegistry.getDefault();
+
+		byte[] type = "xxSpxx".getBytes(Charset.forName("UTF-8"));
+		assertNotNull(registry.get(NdefRecord.TNF_WELL_KNOWN, type, 2, 2));
+		assertNull(registry.get(NdefRecord.TNF_WELL_KNOWN, type, 2, 3));
+		assertNull(registry.get(NdefRecord.TNF_MIME_MEDIA, type, 2, 2));
+
+		// well-known types are case-sensitive
+		assertNotNull(registry.get(NdefRecord.TNF_WELL_KNOWN, new byte[]{'U'}, 0, 1));
+		assertNull(registry.get(NdefRecord.TNF_WELL_KNOWN, new byte[]{'u'}, 0, 1));
+
+		// as are MIME and external types
+		byte[] external = "android.com:pkg".getBytes(Charset.forName("UTF-8"));
+		assertNotNull(registry.get(NdefRecord.TNF_EXTERNAL_TYPE, external, 0, external.length));
+		external = "android.Com:pkg".getBytes(Charset.forName("UTF-8"));
+		assertNull(registry.get(NdefRecord.TNF_EXTERNAL_TYPE, external, 0, external.length));
+	}
+
+	@Test
+	public void testTypeCaseIsPreserved() throws Exception {
+		byte[] type = "android.Com:pkg".getBytes(Charset.forName("UTF-8"));
+		byte[] encoded = new NdefMessage(new NdefRecord[]{new NdefRecord(NdefRecord.TNF_EXTERNAL_TYPE, type, new byte[0], new byte[]{'x'})}).toByteArray();
+
+		Message message = Message.parseNdefMessage(encoded);
+		assertFalse(message.get(0) instanceof AndroidApplicationRecord);
+		assertEquals("android.Com", ((ExternalTypeRecord)message.get(0)).getDomain());
+
+		assertFalse(ExternalTypeRecord.parse(new NdefMessage(encoded).getRecords()[0]) instanceof AndroidApplicationRecord);
+	}
+
+	@Test
+	public void testBuiltInRecords() throws Exception {
+		assertEquals(new UriRecord("http://skjolber.github.io"), Record.parse(new UriRecord("http://skjolber.github.io").getNdefRecord()));
+		assertEquals(new AndroidApplicationRecord("com.skjolberg.nfc"), Record.parse(new AndroidApplicationRecord("com.skjolberg.nfc").getNdefRecord()));
+	}
+
+	@Test
+	public void testCustomMimeType() throws Exception {
+		RecordParserRegistry.getDefault().register(NdefRecord.TNF_MIME_MEDIA, "application/x-registry-test", new TestRecordParser());
+
+		byte[] encoded = new MimeRecord("application/x-registry-test", new byte[]{1, 2, 3}).toByteArray();
+
+		Message message = Message.parseNdefMessage(encoded);
+		assertTrue(message.get(0) instanceof TestRecord);
+		assertArrayEquals(new byte[]{1, 2, 3}, ((TestRecord)message.get(0)).getData());
+
+		assertTrue(Record.parse(new NdefMessage(encoded).getRecords()[0]) instanceof TestRecord);
+
+		// types which differ in case are not matched
+		encoded = new NdefMessage(new NdefRecord[]{new NdefRecord(NdefRecord.TNF_MIME_MEDIA, "application/X-Registry-Test".getBytes(Charset.forName("UTF-8")), new byte[0], new byte[]{1})}).toByteArray();
+		message = Message.parseNdefMessage(encoded);
+		assertFalse(message.get(0) instanceof TestRecord);
+		assertArrayEquals(encoded, message.toByteArray());
+	}
+
+	@Test
+	public void testRegisterReplaces() {
+		RecordParserRegistry registry = new RecordParserRegistry();
+		assertNull(registry.get(NdefRecord.TNF_WELL_KNOWN, new byte[]{'x'}, 0, 1));
+
+		RecordParser first = new TestRecordParser();
+		RecordParser second = new TestRecordParser();
+
+		registry.register(NdefRecord.TNF_WELL_KNOWN, "x", first);
+		RecordParserRegistry copy = new RecordParserRegistry(registry);
+
+		registry.register(NdefRecord.TNF_WELL_KNOWN, "x", second);
+		for(int i = 0; i < 100; i++) {
+			registry.register(NdefRecord.TNF_WELL_KNOWN, "y" + i, first);
+		}
+
+		assertEquals(101, registry.size());
+		assertSame(second, registry.get(NdefRecord.TNF_WELL_KNOWN, new byte[]{'x'}, 0, 1));
+		assertSame(first, copy.get(NdefRecord.TNF_WELL_KNOWN, new byte[]{'x'}, 0, 1));
+		assertEquals(1, copy.size());
+	}
+
+	private static class TestExternalTypeRecordParser implements ExternalTypeRecordParser {
+
+		private final String name;
+
+		public TestExternalTypeRecordParser(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public boolean canParse(String domain, String type) {
+			return true;
+		}
+
+		@Override
+		public ExternalTypeRecord parse(String domain, String type, byte[] payload) {
+			return new GenericExternalTypeRecord(domain, type + "-" + name, payload);
+		}
+	}
+
+	@Test
+	public void testExternalTypes() throws Exception {
+		RecordParserRegistry registry = new RecordParserRegistry();
+		registry.registerExternalType("example.com", "first", new TestExternalTypeRecordParser("first"));
+		registry.registerExternalType("example.com", RecordParserRegistry.WILDCARD, new TestExternalTypeRecordParser("wildcard"));
+		registry.registerExternalType("example.org", "first", new TestExternalTypeRecordParser("other"));
+
+		assertEquals("first-first", parseExternal(registry, "example.com:first").getType());
+		assertEquals("second-wildcard", parseExternal(registry, "example.com:second").getType());
+		assertEquals("first-other", parseExternal(registry, "example.org:first").getType());
+		assertNull(get(registry, "Example.ORG:First"));
+		assertNull(get(registry, "example.org:second"));
+		assertNull(get(registry, "example.com"));
+
+		// empty types are not within the domain wildcard
+		assertNull(get(registry, "example.com:"));
+
+		// mixed case types are registered as given
+		registry.registerExternalType("other.org", "Foo", new TestExternalTypeRecordParser("mixed"));
+		assertEquals("Foo-mixed", parseExternal(registry, "other.org:Foo").getType());
+		assertNull(get(registry, "other.org:foo"));
+
+		assertTrue(registry.toString().contains(NdefRecord.TNF_EXTERNAL_TYPE + ":example.com:*"), registry.toString());
+		assertThrows(IllegalArgumentException.class, () -> registry.register((short)8, "x", new TestRecordParser()));
+	}
+
+	@Test
+	public void testRegisteredExternalTypeParser() throws Exception {
+		ExternalTypeRecord.registerExternalTypeParser("registry.test", "mytype", new TestExternalTypeRecordParser("registered"));
+
+		byte[] encoded = new GenericExternalTypeRecord("registry.test", "mytype", new byte[]{1}).toByteArray();
+
+		ExternalTypeRecord record = (ExternalTypeRecord)Message.parseNdefMessage(encoded).get(0);
+		assertEquals("mytype-registered", record.getType());
+		assertArrayEquals(new byte[]{1}, record.getData());
+	}
+
+	private static RecordParser get(RecordParserRegistry registry, String type) {
+		byte[] bytes = type.getBytes(Charset.forName("UTF-8"));
+		return registry.get(NdefRecord.TNF_EXTERNAL_TYPE, bytes, 0, bytes.length);
+	}
+
+	private static ExternalTypeRecord parseExternal(RecordParserRegistry registry, String type) throws FormatException {
+		byte[] bytes = type.getBytes(Charset.forName("UTF-8"));
+		return (ExternalTypeRecord)get(registry, type).parse(NdefDecoder.getDefault(), bytes, 0, bytes.length, new byte[0], 0, 0);
+	}
+}
@@ -0,0 +1,236 @@
+/***************************************************************************
+ *
+ * This file is part of the 'NDEF Tools for Android' project at
+ * http://code.google.com/p/ndef-tools-for-android/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ****************************************************************************/
+
+package com.github.skjolber.ndef;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.github.skjolber.ndef.DecodeResult.Status;
+import com.github.skjolber.ndef.wellknown.Action;
+import com.github.skjolber.ndef.wellknown.ActionRecord;
+import com.github.skjolber.ndef.wellknown.GcActionRecord;
+import com.github.skjolber.ndef.wellknown.GcTargetRecord;
+import com.github.skjolber.ndef.wellknown.GenericControlRecord;
+import com.github.skjolber.ndef.wellknown.SignatureRecord;
+import com.github.skjolber.ndef.wellknown.SignatureRecord.CertificateFormat;
+import com.github.skjolber.ndef.wellknown.SignatureRecord.SignatureType;
+import com.github.skjolber.ndef.wellknown.TextRecord;
+import com.github.skjolber.ndef.wellknown.handover.AlternativeCarrierRecord;
+import com.github.skjolber.ndef.wellknown.handover.AlternativeCarrierRecord.CarrierPowerState;
+import com.github.skjolber.ndef.wellknown.handover.CollisionResolutionRecord;
+import com.github.skjolber.ndef.wellknown.handover.ErrorRecord;
+import com.github.skjolber.ndef.wellknown.handover.ErrorRecord.ErrorReason;
+import com.github.skjolber.ndef.wellknown.handover.HandoverCarrierRecord;
+import com.github.skjolber.ndef.wellknown.handover.HandoverCarrierRecord.CarrierTypeFormat;
+import com.github.skjolber.ndef.wellknown.handover.HandoverRequestRecord;
+import com.github.skjolber.ndef.wellknown.handover.HandoverSelectRecord;
+
+import android.nfc.FormatException;
+import android.nfc.NdefMessage;
+import android.nfc.NdefRecord;
+
+/**
+ *
+ * Check that record payloads are parsed within their offset and length only, and that truncated payloads are reported
+ * as {@link FormatException}.
+ *
+ * @author Thomas Rorvik Skjolberg (skjolber@gmail.com)
+ *
+ */
+
+public class RecordPayloadTest {
+
+	private interface PayloadParser {
+		Record parse(byte[] payload, int offset, int length) throws FormatException;
+	}
+
+	/**
+	 * Parse the payload of a record surrounded by other bytes, and every truncation of it. Reading outside a truncated
+	 * payload fails with an unchecked exception, so only {@link FormatException} is accepted.
+	 *
+	 * @return the number of truncations which were rejected
+	 */
+
+	private static int assertBounded(Record record, PayloadParser parser) throws Exception {
+		byte[] payload = record.getNdefRecord().getPayload();
+
+		byte[] padded = new byte[4 + payload.length + 4];
+		Arrays.fill(padded, (byte)0x7F);
+		System.arraycopy(payload, 0, padded, 4, payload.length);
+		assertEquals(record, parser.parse(padded, 4, payload.length));
+
+		int rejected = 0;
+		for(int length = 0; length < payload.length; length++) {
+			try {
+				parser.parse(Arrays.copyOf(payload, length), 0, length);
+			} catch(FormatException e) {
+				rejected++;
+			}
+		}
+		return rejected;
+	}
+
+	@Test
+	public void testCollisionResolutionRecord() throws Exception {
+		assertEquals(2, assertBounded(new CollisionResolutionRecord(0x1234), CollisionResolutionRecord::parsePayload));
+
+		// next record header must not be read as random number
+		byte[] encoded = new byte[]{(byte)0x91, 0x02, 0x00, 'c', 'r', 0x51, 0x01, 0x02, 'U', 0x03, 'a'};
+		assertThrows(FormatException.class, () -> Message.parseNdefMessage(encoded));
+		assertThrows(IllegalArgumentException.class, () -> CollisionResolutionRecord.parseNdefRecord(new NdefMessage(encoded).getRecords()[0]));
+
+		DecodeResult result = NdefDecoder.getDefault().tryDecode(encoded);
+		assertEquals(Status.INVALID_RECORD, result.getStatus());
+		assertEquals(3, result.getOffset());
+	}
+
+	@Test
+	public void testActionRecord() throws Exception {
+		assertEquals(1, assertBounded(new ActionRecord(Action.SAVE_FOR_LATER), ActionRecord::parsePayload));
+	}
+
+	@Test
+	public void testErrorRecord() throws Exception {
+		assertEquals(2, assertBounded(new ErrorRecord(ErrorReason.TemporaryMemoryConstraints, Short.valueOf((short)100)), ErrorRecord::parsePayload));
+		assertEquals(5, assertBounded(new ErrorRecord(ErrorReason.PermanenteMemoryConstraints, Long.valueOf(100000)), ErrorRecord::parsePayload));
+		assertEquals(2, assertBounded(new ErrorRecord(ErrorReason.CarrierSpecificConstraints, Short.valueOf((short)10)), ErrorRecord::parsePayload));
+	}
+
+	@Test
+	public void testGcActionRecord() throws Exception {
+		assertEquals(2, assertBounded(new GcActionRecord(Action.OPEN_FOR_EDITING), GcActionRecord::parsePayload));
+	}
+
+	@Test
+	public void testTextRecord() throws Exception {
+		// status byte and language code
+		assertEquals(3, assertBounded(new TextRecord("text", Locale.ENGLISH), TextRecord::parsePayload));
+
+		// language code longer than the payload
+		assertThrows(FormatException.class, () -> TextRecord.parsePayload(new byte[]{0x1F, 'e', 'n', 'x'}, 0, 4));
+		NdefRecord truncated = new NdefRecord(NdefRecord.TNF_WELL_KNOWN, NdefRecord.RTD_TEXT, new byte[0], new byte[]{0x02, 'e'});
+		assertThrows(IllegalArgumentException.class, () -> TextRecord.parseNdefRecord(truncated));
+	}
+
+	@Test
+	public void testSignatureRecord() throws Exception {
+		SignatureRecord record = new SignatureRecord(SignatureType.ECDSA, new byte[]{1, 2, 3}, CertificateFormat.X_509, "http://a.b");
+		record.add(new byte[]{4, 5});
+		record.add(new byte[]{6});
+
+		// every field has a size or is fixed-length
+		assertEquals(record.getNdefRecord().getPayload().length, assertBounded(record, SignatureRecord::parsePayload));
+
+		assertEquals(2, assertBounded(new SignatureRecord(SignatureType.NOT_PRESENT), SignatureRecord::parsePayload));
+
+		// signature size beyond the payload
+		byte[] payload = new byte[]{0x01, 0x04, (byte)0xFF, (byte)0xFF, 0x00};
+		assertThrows(FormatException.class, () -> SignatureRecord.parsePayload(payload, 0, payload.length));
+	}
+
+	@Test
+	public void testAlternativeCarrierRecord() throws Exception {
+		AlternativeCarrierRecord record = new AlternativeCarrierRecord(CarrierPowerState.Active, "0");
+		record.addAuxiliaryDataReference("a");
+		record.addAuxiliaryDataReference("bc");
+
+		int length = record.getNdefRecord().getPayload().length;
+		// the reserved end byte is not checked
+		assertEquals(length - 1, assertBounded(record, AlternativeCarrierRecord::parsePayload));
+
+		// data reference lengths are unsigned
+		byte[] payload = new byte[]{0x01, (byte)0xC8, '0', 0x00, 0x00};
+		assertThrows(FormatException.class, () -> AlternativeCarrierRecord.parsePayload(payload, 0, payload.length));
+
+		byte[] auxiliary = new byte[]{0x01, 0x01, '0', (byte)0x80, 0x01, 'a', 0x00};
+		assertThrows(FormatException.class, () -> AlternativeCarrierRecord.parsePayload(auxiliary, 0, auxiliary.length));
+	}
+
+	@Test
+	public void testHandoverCarrierRecord() throws Exception {
+		HandoverCarrierRecord record = new HandoverCarrierRecord(CarrierTypeFormat.Media, "a/b", new byte[]{1, 2});
+
+		// carrier type format, carrier type length and carrier type
+		assertEquals(5, assertBounded(record, HandoverCarrierRecord::parsePayload));
+
+		byte[] payload = new byte[]{0x02, (byte)0xF0, 'a', '/', 'b'};
+		assertThrows(FormatException.class, () -> HandoverCarrierRecord.parsePayload(payload, 0, payload.length));
+	}
+
+	@Test
+	public void testEmbeddedRecord() throws Exception {
+		// target and action hold a single record
+		assertThrows(FormatException.class, () -> GcTargetRecord.parsePayload(new byte[0], 0, 0));
+		assertThrows(FormatException.class, () -> GcActionRecord.parsePayload(new byte[]{0x00}, 0, 1));
+
+		byte[] encoded = new Message(new ActionRecord(Action.SAVE_FOR_LATER), new ActionRecord(Action.OPEN_FOR_EDITING)).getNdefMessage().toByteArray();
+		assertThrows(FormatException.class, () -> GcTargetRecord.parsePayload(encoded, 0, encoded.length));
+	}
+
+	@Test
+	public void testUnknownValues() throws Exception {
+		byte[] action = new byte[]{0x07};
+		assertFalse(ActionRecord.isValidPayload(action, 0, action.length));
+		assertThrows(FormatException.class, () -> ActionRecord.parsePayload(action, 0, action.length));
+		assertThrows(IllegalArgumentException.class, () -> ActionRecord.parseNdefRecord(new NdefRecord(NdefRecord.TNF_WELL_KNOWN, ActionRecord.type, new byte[0], action)));
+		assertNull(Action.findActionByValue((byte)0x07));
+
+		byte[] error = new byte[]{0x07, 0x01};
+		assertFalse(ErrorRecord.isValidPayload(error, 0, error.length));
+		assertNull(ErrorReason.findErrorReason((byte)0x07));
+
+		byte[] alternativeCarrier = new byte[]{0x07, 0x01, '0', 0x00};
+		assertFalse(AlternativeCarrierRecord.isValidPayload(alternativeCarrier, 0, alternativeCarrier.length));
+		assertNull(CarrierPowerState.findCarrierPowerState((byte)0x07));
+
+		byte[] signature = new byte[]{0x01, 0x7F};
+		assertFalse(SignatureRecord.isValidPayload(signature, 0, signature.length));
+		assertNull(SignatureType.findSignatureType(0x7F));
+		assertNull(CertificateFormat.findCertificateFormat(0x07));
+
+		// well-known carrier type format with a carrier type record of another tnf
+		byte[] handoverCarrier = new Message(new MimeRecord("a/b", new byte[0])).getNdefMessage().toByteArray();
+		byte[] payload = new byte[2 + handoverCarrier.length];
+		payload[0] = NdefRecord.TNF_WELL_KNOWN;
+		payload[1] = (byte)handoverCarrier.length;
+		System.arraycopy(handoverCarrier, 0, payload, 2, handoverCarrier.length);
+		assertFalse(HandoverCarrierRecord.isValidPayload(payload, 0, payload.length));
+		assertNull(CarrierTypeFormat.findCarrierTypeFormat((short)0x07));
+
+		payload[0] = NdefRecord.TNF_MIME_MEDIA;
+		assertTrue(HandoverCarrierRecord.isValidPayload(payload, 0, payload.length));
+	}
+
+	@Test
+	public void testVersionAndConfigurationByte() throws Exception {
+		byte[] payload = new byte[]{0x12};
+
+		assertThrows(FormatException.class, () -> HandoverSelectRecord.parsePayload(payload, 0, 0));
+		assertThrows(FormatException.class, () -> HandoverRequestRecord.parsePayload(payload, 0, 0));
+		assertThrows(FormatException.class, () -> GenericControlRecord.parsePayload(payload, 0, 0));
+
+		HandoverSelectRecord record = HandoverSelectRecord.parsePayload(payload, 0, 1);
+		assertEquals(1, record.getMajorVersion());
+		assertEquals(2, record.getMinorVersion());
+	}
+}
@@ -0,0 +1,99 @@
+/***************************************************************************
+ *
+ * This file is part of the 'NDEF Tools for Android' project at
+ * http://code.google.com/p/ndef-tools-for-android/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ****************************************************************************/
+
+package com.github.skjolber.ndef;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.github.skjolber.ndef.externaltype.AndroidApplicationRecord;
+import com.github.skjolber.ndef.externaltype.GenericExternalTypeRecord;
+import com.github.skjolber.ndef.wellknown.TextRecord;
+import com.github.skjolber.ndef.wellknown.UriRecord;
+
+import android.nfc.NdefRecord;
+
+/**
+ *
+ * Check that only selected records are decoded.
+ *
+ * @author Thomas Rorvik Skjolberg (skjolber@gmail.com)
+ *
+ */
+
+public class RecordTypeSelectorTest {
+
+	@Test
+	public void testSelectTypes() throws Exception {
+		Message message = new Message();
+		message.add(new TextRecord("text"));
+		message.add(new UriRecord("http://skjolber.github.io"));
+		message.add(new MimeRecord("application/octet-stream", new byte[1024]));
+		message.add(new AndroidApplicationRecord("com.skjolberg.nfc"));
+		message.add(new GenericExternalTypeRecord("example.com", "type", new byte[]{0x01}));
+
+		byte[] encoded = message.getNdefMessage().toByteArray();
+
+		RecordTypeSelector selector = new RecordTypeSelector().addWellKnown(NdefRecord.RTD_URI).addAndroidApplication();
+
+		Message selected = Message.parseNdefMessage(encoded, selector);
+		assertEquals(2, selected.size());
+		assertEquals(message.get(1), selected.get(0));
+		assertEquals(message.get(3), selected.get(1));
+
+		selector.add(NdefRecord.TNF_MIME_MEDIA);
+		assertEquals(3, Message.parseNdefMessage(encoded, selector).size());
+
+		assertEquals(0, Message.parseNdefMessage(encoded, new RecordTypeSelector()).size());
+	}
+
+	@Test
+	public void testSelectMatchesTypeCase() throws Exception {
+		byte[] encoded = new Message(new GenericExternalTypeRecord("example.com", "type", new byte[]{0x01})).getNdefMessage().toByteArray();
+
+		assertEquals(1, Message.parseNdefMessage(encoded, new RecordTypeSelector().add(NdefRecord.TNF_EXTERNAL_TYPE, "example.com:type")).size());
+		assertEquals(0, Message.parseNdefMessage(encoded, new RecordTypeSelector().add(NdefRecord.TNF_EXTERNAL_TYPE, "Example.com:TYPE")).size());
+	}
+
+	@Test
+	public void testManyTypes() throws Exception {
+		RecordTypeSelector selector = new RecordTypeSelector();
+		for(int i = 0; i < 100; i++) {
+			selector.add(NdefRecord.TNF_MIME_MEDIA, "application/x-" + i);
+		}
+		// duplicates are ignored
+		selector.add(NdefRecord.TNF_MIME_MEDIA, "application/x-0");
+
+		for(int i = 0; i < 100; i++) {
+			byte[] type = ("xxapplication/x-" + i).getBytes("UTF-8");
+			assertTrue(selector.select(NdefRecord.TNF_MIME_MEDIA, type, 2, type.length - 2));
+			assertFalse(selector.select(NdefRecord.TNF_EXTERNAL_TYPE, type, 2, type.length - 2));
+		}
+		byte[] type = "application/x-100".getBytes("UTF-8");
+		assertFalse(selector.select(NdefRecord.TNF_MIME_MEDIA, type, 0, type.length));
+	}
+
+	@Test
+	public void testInvalidTnf() {
+		RecordTypeSelector selector = new RecordTypeSelector();
+		assertThrows(IllegalArgumentException.class, () -> selector.add((short)8));
+		assertThrows(IllegalArgumentException.class, () -> selector.add((short)-1));
+		assertThrows(IllegalArgumentException.class, () -> selector.add((short)8, "x"));
+	}
+}